@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service which methods are intercepted by the aspects under benchmark. Each method is annotated with both
+ * {@link Timed @Timed} and {@link Counted @Counted}, so the aspects a proxy is built with decide what is measured.
+ *
+ * @author Roman Puchkovskiy
+ */
+public class BenchmarkService {
+    static final RuntimeException EXCEPTION = new BenchmarkException();
+
+    @Timed
+    @Counted
+    public Mono<String> monoSuccess() {
+        return Mono.just("ok");
+    }
+
+    @Timed
+    @Counted
+    public Mono<String> monoError() {
+        return Mono.error(EXCEPTION);
+    }
+
+    @Timed
+    @Counted
+    public Mono<String> monoNever() {
+        return Mono.never();
+    }
+
+    @Timed
+    @Counted
+    public Flux<Integer> flux(int size) {
+        return Flux.range(0, size);
+    }
+
+    @Timed(longTask = true)
+    public Mono<String> monoSuccessLongTask() {
+        return Mono.just("ok");
+    }
+
+    @Timed(longTask = true)
+    public Flux<Integer> fluxLongTask(int size) {
+        return Flux.range(0, size);
+    }
+
+    /**
+     * Exception without a stack trace, so that error benchmarks do not measure stack trace filling.
+     */
+    private static class BenchmarkException extends RuntimeException {
+        BenchmarkException() {
+            super("Oops", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+
+/**
+ * Subscriber feeding all the signals to a {@link Blackhole}. It either requests everything or cancels
+ * the subscription right away.
+ *
+ * @author Roman Puchkovskiy
+ */
+@SuppressWarnings("ReactiveStreamsSubscriberImplementation")
+class BlackholeSubscriber implements CoreSubscriber<Object> {
+    private final Blackhole blackhole;
+    private final boolean cancelOnSubscribe;
+
+    BlackholeSubscriber(Blackhole blackhole, boolean cancelOnSubscribe) {
+        this.blackhole = blackhole;
+        this.cancelOnSubscribe = cancelOnSubscribe;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (cancelOnSubscribe) {
+            s.cancel();
+        } else {
+            s.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(Object o) {
+        blackhole.consume(o);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        blackhole.consume(t);
+    }
+
+    @Override
+    public void onComplete() {
+        blackhole.consume(true);
+    }
+}
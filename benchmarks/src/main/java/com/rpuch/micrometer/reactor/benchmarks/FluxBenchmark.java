@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the aspects add to a single {@link Flux} subscription of a given size (including the proxied
+ * method invocation), compared to a bare {@link Flux} and to Reactor's own {@code metrics()} operator.
+ *
+ * @author Roman Puchkovskiy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FluxBenchmark {
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    @Benchmark
+    public void bare(Services services, Blackhole blackhole) {
+        services.bare.flux(size).subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void reactorMetrics(Services services, Blackhole blackhole) {
+        services.bare.flux(size).name("flux").metrics()
+                .subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timed(Services services, Blackhole blackhole) {
+        services.timed.flux(size).subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void counted(Services services, Blackhole blackhole) {
+        services.counted.flux(size).subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedAndCounted(Services services, Blackhole blackhole) {
+        services.timedAndCounted.flux(size).subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedLongTask(Services services, Blackhole blackhole) {
+        services.timed.fluxLongTask(size).subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+}
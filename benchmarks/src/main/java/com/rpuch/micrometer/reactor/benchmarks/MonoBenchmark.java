@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the aspects add to a single {@link Mono} subscription (including the proxied method
+ * invocation), compared to a bare {@link Mono} and to Reactor's own {@code metrics()} operator.
+ *
+ * @author Roman Puchkovskiy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonoBenchmark {
+
+    @Benchmark
+    public void bareSuccess(Services services, Blackhole blackhole) {
+        services.bare.monoSuccess().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void reactorMetricsSuccess(Services services, Blackhole blackhole) {
+        services.bare.monoSuccess().name("monoSuccess").metrics()
+                .subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedSuccess(Services services, Blackhole blackhole) {
+        services.timed.monoSuccess().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void countedSuccess(Services services, Blackhole blackhole) {
+        services.counted.monoSuccess().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedAndCountedSuccess(Services services, Blackhole blackhole) {
+        services.timedAndCounted.monoSuccess().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedLongTaskSuccess(Services services, Blackhole blackhole) {
+        services.timed.monoSuccessLongTask().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void bareError(Services services, Blackhole blackhole) {
+        services.bare.monoError().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void reactorMetricsError(Services services, Blackhole blackhole) {
+        services.bare.monoError().name("monoError").metrics()
+                .subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedError(Services services, Blackhole blackhole) {
+        services.timed.monoError().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void countedError(Services services, Blackhole blackhole) {
+        services.counted.monoError().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void timedAndCountedError(Services services, Blackhole blackhole) {
+        services.timedAndCounted.monoError().subscribe(new BlackholeSubscriber(blackhole, false));
+    }
+
+    @Benchmark
+    public void bareCancel(Services services, Blackhole blackhole) {
+        services.bare.monoNever().subscribe(new BlackholeSubscriber(blackhole, true));
+    }
+
+    @Benchmark
+    public void reactorMetricsCancel(Services services, Blackhole blackhole) {
+        services.bare.monoNever().name("monoNever").metrics()
+                .subscribe(new BlackholeSubscriber(blackhole, true));
+    }
+
+    @Benchmark
+    public void timedCancel(Services services, Blackhole blackhole) {
+        services.timed.monoNever().subscribe(new BlackholeSubscriber(blackhole, true));
+    }
+
+    @Benchmark
+    public void countedCancel(Services services, Blackhole blackhole) {
+        services.counted.monoNever().subscribe(new BlackholeSubscriber(blackhole, true));
+    }
+
+    @Benchmark
+    public void timedAndCountedCancel(Services services, Blackhole blackhole) {
+        services.timedAndCounted.monoNever().subscribe(new BlackholeSubscriber(blackhole, true));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import com.rpuch.micrometer.reactor.aop.ReactorCountedAspect;
+import com.rpuch.micrometer.reactor.aop.ReactorTimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.framework.AopProxy;
+import org.springframework.aop.framework.DefaultAopProxyFactory;
+import reactor.util.Metrics;
+
+/**
+ * Services to benchmark: a bare one and proxies intercepted by the aspects. All meters go to the same registry,
+ * which is also used by Reactor's own {@code metrics()} operator.
+ *
+ * @author Roman Puchkovskiy
+ */
+@State(Scope.Benchmark)
+public class Services {
+    MeterRegistry registry;
+
+    BenchmarkService bare;
+    BenchmarkService timed;
+    BenchmarkService counted;
+    BenchmarkService timedAndCounted;
+
+    @Setup
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        Metrics.MicrometerConfiguration.useRegistry(registry);
+
+        bare = new BenchmarkService();
+        timed = wrapInAspects(new ReactorTimedAspect(registry));
+        counted = wrapInAspects(new ReactorCountedAspect(registry));
+        timedAndCounted = wrapInAspects(new ReactorTimedAspect(registry), new ReactorCountedAspect(registry));
+    }
+
+    private static BenchmarkService wrapInAspects(Object... aspects) {
+        AspectJProxyFactory aspectJProxyFactory = new AspectJProxyFactory(new BenchmarkService());
+        for (Object aspect : aspects) {
+            aspectJProxyFactory.addAspect(aspect);
+        }
+
+        AopProxy aopProxy = new DefaultAopProxyFactory().createAopProxy(aspectJProxyFactory);
+        return (BenchmarkService) aopProxy.getProxy();
+    }
+}
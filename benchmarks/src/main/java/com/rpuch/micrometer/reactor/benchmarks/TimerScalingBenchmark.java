@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.benchmarks;
+
+import com.rpuch.micrometer.reactor.StripedTimer;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how recording to a regular {@link Timer} and to a {@link StripedTimer} scales when many threads record
+ * to the same timer at once. Run {@link #main(String[])} to measure with 1 to 64 threads.
+ *
+ * @author Roman Puchkovskiy
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerScalingBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Timer timer = registry.timer("regular");
+    private final Timer histogramTimer = Timer.builder("histogram")
+            .publishPercentileHistogram()
+            .register(registry);
+    private final StripedTimer stripedTimer = StripedTimer.register(registry, "striped", null, Tags.empty());
+
+    @Benchmark
+    public void regularTimer() {
+        timer.record(1000, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void regularTimerWithHistogram() {
+        histogramTimer.record(1000, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void stripedTimer() {
+        stripedTimer.record(1000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(TimerScalingBenchmark.class.getName())
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-timer-scaling-" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
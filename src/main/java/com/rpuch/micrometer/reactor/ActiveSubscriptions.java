@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tracks the subscriptions that are currently active (subscribed and neither terminated nor cancelled):
+ * <ul>
+ *     <li>{@code <name>.active}: a gauge of the active subscriptions;</li>
+ *     <li>{@code <name>.active.max}: a gauge of the most subscriptions active at once since the previous time
+ *     it was read, so it resets on each publish step. For this reason, it should only be published to a single
+ *     registry.</li>
+ * </ul>
+ * Unlike a {@link io.micrometer.core.instrument.LongTaskTimer}, nothing is tracked per subscription: the count
+ * is kept in striped cells, each subscription being counted in the stripe of the thread that subscribed, so
+ * concurrent subscriptions do not contend on it. Each stripe also keeps the peak of its own count, so that
+ * subscribing never reads the other stripes; the high watermark is the sum of these peaks. It is exact when the
+ * stripes peak together (in particular when a single thread subscribes), and overestimates the peak otherwise.
+ * The gauges are bound to this object, so a single {@code ActiveSubscriptions}
+ * should be used for the same meter names and tags.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class ActiveSubscriptions {
+    /**
+     * Suffix of the name of the gauge of active subscriptions.
+     */
+    public static final String ACTIVE_SUFFIX = ".active";
+    /**
+     * Suffix of the name of the high-watermark gauge.
+     */
+    public static final String MAX_SUFFIX = ".active.max";
+
+    private static final int ACTIVE = 0;
+    private static final int PEAK = 1;
+
+    private final StripedCells cells = new StripedCells(2);
+
+    private ActiveSubscriptions(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        Gauge.builder(metricName + ACTIVE_SUFFIX, this, ActiveSubscriptions::active)
+                .description("Active subscriptions")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder(metricName + MAX_SUFFIX, this, ActiveSubscriptions::pollHighWatermark)
+                .description("Most subscriptions active at once during the step")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauges.
+     *
+     * @param registry   where to register the gauges
+     * @param metricName name the gauge names are derived from by adding suffixes
+     * @param tags       tags of the gauges
+     * @return registered gauges
+     */
+    public static ActiveSubscriptions register(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        return new ActiveSubscriptions(registry, metricName, tags);
+    }
+
+    /**
+     * Tracks the subscriptions to the given {@link Mono}.
+     *
+     * @param mono mono to track
+     * @param <T>  value type
+     * @return tracked mono
+     */
+    public <T> Mono<T> track(Mono<T> mono) {
+        return SignalObservingMono.observe(mono, ActiveSubscriptionSubscriber::new);
+    }
+
+    /**
+     * Tracks the subscriptions to the given {@link Flux}.
+     *
+     * @param flux flux to track
+     * @param <T>  element type
+     * @return tracked flux
+     */
+    public <T> Flux<T> track(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, ActiveSubscriptionSubscriber::new);
+    }
+
+    private double active() {
+        return cells.sum(ACTIVE);
+    }
+
+    private double pollHighWatermark() {
+        // the next step starts with the subscriptions that are still active
+        return cells.pollSum(PEAK, ACTIVE);
+    }
+
+    private int subscribed() {
+        int stripe = cells.stripe();
+        cells.add(stripe, ACTIVE, 1);
+        // only this stripe is read, so a thread subscribing elsewhere does not contend with this one
+        cells.max(stripe, PEAK, cells.get(stripe, ACTIVE));
+        return stripe;
+    }
+
+    private class ActiveSubscriptionSubscriber<T> extends SignalObservingSubscriber<T> {
+        /**
+         * Stripe the subscription is counted in, so that it is uncounted from the same stripe whatever thread
+         * terminates it, keeping the count of each stripe and thus its peak meaningful.
+         */
+        private int stripe;
+
+        ActiveSubscriptionSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnSubscribe() {
+            stripe = subscribed();
+        }
+
+        @Override
+        void hookOnTerminate() {
+            cells.add(stripe, ACTIVE, -1);
+        }
+    }
+}
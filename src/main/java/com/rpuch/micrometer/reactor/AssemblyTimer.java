@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the assembly of a reactive pipeline: the synchronous work a method does before it returns its
+ * publisher, like building a query or reading a cache. This work runs on the subscribing thread, which may be
+ * an event loop, and it is not visible in a timer of the subscription as something separate from waiting.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class AssemblyTimer {
+    /**
+     * Suffix of the name of the timer.
+     */
+    public static final String SUFFIX = ".assembly";
+
+    private final Timer timer;
+
+    private AssemblyTimer(Timer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * Registers the timer.
+     *
+     * @param registry   where to register the timer
+     * @param metricName name the timer name is derived from by adding {@link #SUFFIX}
+     * @param tags       tags of the timer
+     * @return registered timer
+     */
+    public static AssemblyTimer register(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        return new AssemblyTimer(
+                Timer.builder(metricName + SUFFIX)
+                        .description("Time spent in the synchronous part of the invocation, before the publisher"
+                                + " is returned")
+                        .tags(tags)
+                        .register(registry));
+    }
+
+    /**
+     * Records the duration of an assembly.
+     *
+     * @param durationNanos duration of the assembly in nanoseconds
+     */
+    public void record(long durationNanos) {
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
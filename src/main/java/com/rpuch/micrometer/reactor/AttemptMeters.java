@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Meters the logical calls that retries split into several subscriptions. A retry operator resubscribes to its
+ * source, so the timer of a metered source measures each attempt separately; the {@code retry()} is applied by
+ * the caller, so the source cannot tell the attempts of one call from distinct calls. The boundary of a logical
+ * call therefore has to be marked downstream of the retry with {@link ReactorMetrics#logicalCall()}:
+ * <pre>
+ * service.findUser(id)
+ *         .retry(3)
+ *         .transform(ReactorMetrics.logicalCall());
+ * </pre>
+ * Each subscription to a publisher tracked by {@link #track(Mono)} or {@link #track(Flux)} within that boundary
+ * is then counted as an attempt of the logical call, and when the logical call terminates, it is recorded to:
+ * <ul>
+ *     <li>{@code <name>.attempts}: a distribution summary of attempts per logical call, so its count is
+ *     the number of logical calls and its total is the number of attempts;</li>
+ *     <li>{@code <name>.logical}: a timer of logical calls, from the start of the first attempt to the end of
+ *     the call, including the delays between attempts, tagged by the outcome of the call like
+ *     {@link OutcomeTimers}.</li>
+ * </ul>
+ * Subscriptions outside of a logical call boundary are not recorded here. If several tracked publishers are
+ * subscribed within one boundary, the call is attributed to the first one.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class AttemptMeters {
+    /**
+     * Suffix of the name of the distribution summary of attempts per logical call.
+     */
+    public static final String ATTEMPTS_SUFFIX = ".attempts";
+    /**
+     * Suffix of the name of the timer of logical calls.
+     */
+    public static final String LOGICAL_SUFFIX = ".logical";
+
+    private final MeterRegistry registry;
+    final DistributionSummary attempts;
+    final OutcomeTimers logicalTimers;
+
+    private AttemptMeters(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.attempts = DistributionSummary.builder(metricName + ATTEMPTS_SUFFIX)
+                .description("Attempts per logical call")
+                .tags(tags)
+                .register(registry);
+        Tags timerTags = Tags.of(tags);
+        this.logicalTimers = OutcomeTimers.create(registry.config().clock(),
+                exceptionTag -> Timer.builder(metricName + LOGICAL_SUFFIX)
+                        .description("Logical calls including retries")
+                        .tags(timerTags.and(ReactorMetrics.EXCEPTION_TAG, exceptionTag))
+                        .register(registry));
+    }
+
+    /**
+     * Registers the meters.
+     *
+     * @param registry   where to register the meters
+     * @param metricName name the meter names are derived from by adding suffixes
+     * @param tags       tags of the meters
+     * @return registered meters
+     */
+    public static AttemptMeters register(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        return new AttemptMeters(registry, metricName, tags);
+    }
+
+    /**
+     * Counts the subscriptions to the given {@link Mono} as attempts of the enclosing logical calls.
+     *
+     * @param mono mono to track
+     * @param <T>  value type
+     * @return tracked mono
+     */
+    public <T> Mono<T> track(Mono<T> mono) {
+        return SignalObservingMono.observe(mono, AttemptSubscriber::new);
+    }
+
+    /**
+     * Counts the subscriptions to the given {@link Flux} as attempts of the enclosing logical calls.
+     *
+     * @param flux flux to track
+     * @param <T>  element type
+     * @return tracked flux
+     */
+    public <T> Flux<T> track(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, AttemptSubscriber::new);
+    }
+
+    private class AttemptSubscriber<T> extends SignalObservingSubscriber<T> {
+        AttemptSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnSubscribe() {
+            LogicalCall call = actual.currentContext().getOrDefault(LogicalCall.class, null);
+            if (call != null) {
+                call.attempt(AttemptMeters.this, registry.config().clock().monotonicTime());
+            }
+        }
+    }
+}
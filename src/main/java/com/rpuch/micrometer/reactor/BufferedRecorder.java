@@ -0,0 +1,287 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Moves meter updates off the threads emitting terminal signals: recordings are appended to a lock-free ring
+ * buffer owned by the current thread, and a background thread drains the buffers in batches, applying the
+ * recordings to their meters. This is worth it when updating a meter is expensive (for example, when a timer
+ * publishes a percentile histogram) and the recording threads are event loop threads.
+ * <p>
+ * Each buffer has a fixed capacity, so memory is bounded by the capacity times the number of recording threads.
+ * When a buffer is full, the recording is dropped and counted in the {@code micrometer.reactor.recordings.dropped}
+ * counter. Buffers of threads that have died are discarded once drained. {@link #close()} drains the buffers one
+ * last time; recordings made after that are applied synchronously (recordings racing with {@code close()} itself
+ * may be lost).
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class BufferedRecorder implements AutoCloseable {
+    /**
+     * Name of the counter of the recordings dropped because a buffer was full.
+     */
+    public static final String DROPPED_METRIC_NAME = "micrometer.reactor.recordings.dropped";
+
+    private final int bufferCapacity;
+    private final Queue<RingBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<RingBuffer> currentThreadBuffer = ThreadLocal.withInitial(this::newBuffer);
+    private final Counter dropped;
+    private final ScheduledExecutorService drainer;
+    private volatile boolean closed;
+
+    private BufferedRecorder(Builder builder) {
+        this.bufferCapacity = builder.bufferCapacity;
+
+        this.dropped = Counter.builder(DROPPED_METRIC_NAME)
+                .description("Recordings dropped because a recording buffer was full")
+                .register(builder.registry);
+
+        drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "micrometer-reactor-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = builder.drainInterval.toNanos();
+        drainer.scheduleWithFixedDelay(this::drainQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts building a {@code BufferedRecorder}.
+     *
+     * @param registry where to register the counter of dropped recordings
+     * @return builder
+     */
+    public static Builder builder(MeterRegistry registry) {
+        return new Builder(registry);
+    }
+
+    /**
+     * Records the given duration to the timer asynchronously.
+     *
+     * @param timer timer to record to
+     * @param nanos duration in nanoseconds
+     */
+    public void record(Timer timer, long nanos) {
+        if (closed) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        append(timer, nanos);
+    }
+
+    /**
+     * Increments the counter asynchronously.
+     *
+     * @param counter counter to increment
+     * @param amount  amount to add
+     */
+    public void increment(Counter counter, double amount) {
+        if (closed) {
+            counter.increment(amount);
+            return;
+        }
+        append(counter, Double.doubleToRawLongBits(amount));
+    }
+
+    private void append(Object meter, long value) {
+        if (!currentThreadBuffer.get().offer(meter, value)) {
+            dropped.increment();
+        }
+    }
+
+    private RingBuffer newBuffer() {
+        RingBuffer buffer = new RingBuffer(bufferCapacity, Thread.currentThread());
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Applies all the recordings buffered so far. Called periodically by the background thread.
+     */
+    public void flush() {
+        synchronized (buffers) {
+            Iterator<RingBuffer> iterator = buffers.iterator();
+            while (iterator.hasNext()) {
+                RingBuffer buffer = iterator.next();
+                buffer.drain();
+                if (buffer.isOwnerDead()) {
+                    // the owner cannot append anymore, so nothing is lost
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // ignoring on purpose, the next drain will proceed
+        }
+    }
+
+    /**
+     * Stops the background thread and applies all the buffered recordings. Recordings made later are applied
+     * synchronously.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Single producer (the owner thread), single consumer (the draining thread, under the lock) ring buffer of
+     * (meter, value) recordings. The meter is either a {@link Timer} (and the value is in nanoseconds) or
+     * a {@link Counter} (and the value holds the bits of a double amount).
+     */
+    private static class RingBuffer {
+        private static final AtomicLongFieldUpdater<RingBuffer> HEAD =
+                AtomicLongFieldUpdater.newUpdater(RingBuffer.class, "head");
+        private static final AtomicLongFieldUpdater<RingBuffer> TAIL =
+                AtomicLongFieldUpdater.newUpdater(RingBuffer.class, "tail");
+
+        private final Object[] meters;
+        private final long[] values;
+        private final int mask;
+        private final WeakReference<Thread> owner;
+
+        private volatile long head;
+        private volatile long tail;
+
+        RingBuffer(int capacity, Thread owner) {
+            this.meters = new Object[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean offer(Object meter, long value) {
+            long currentTail = tail;
+            if (currentTail - head == meters.length) {
+                return false;
+            }
+            int index = (int) currentTail & mask;
+            meters[index] = meter;
+            values[index] = value;
+            TAIL.lazySet(this, currentTail + 1);
+            return true;
+        }
+
+        void drain() {
+            long currentHead = head;
+            long currentTail = tail;
+            for (long position = currentHead; position < currentTail; position++) {
+                int index = (int) position & mask;
+                apply(meters[index], values[index]);
+                // do not keep meters reachable from the buffer
+                meters[index] = null;
+            }
+            HEAD.lazySet(this, currentTail);
+        }
+
+        private static void apply(@Nullable Object meter, long value) {
+            try {
+                if (meter instanceof Timer) {
+                    ((Timer) meter).record(value, TimeUnit.NANOSECONDS);
+                } else if (meter instanceof Counter) {
+                    ((Counter) meter).increment(Double.longBitsToDouble(value));
+                }
+            } catch (RuntimeException e) {
+                // ignoring on purpose, like synchronous recording does
+            }
+        }
+
+        boolean isOwnerDead() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    /**
+     * Builder of {@link BufferedRecorder}.
+     */
+    public static class Builder {
+        private final MeterRegistry registry;
+        private int bufferCapacity = 1024;
+        private Duration drainInterval = Duration.ofMillis(100);
+
+        private Builder(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        /**
+         * Sets the capacity of each per-thread buffer, rounded up to a power of two. Defaults to 1024.
+         *
+         * @param bufferCapacity how many recordings a buffer holds
+         * @return this builder
+         */
+        public Builder bufferCapacity(int bufferCapacity) {
+            if (bufferCapacity < 1 || bufferCapacity > 1 << 30) {
+                throw new IllegalArgumentException("bufferCapacity must be between 1 and 2^30, but it is "
+                        + bufferCapacity);
+            }
+            this.bufferCapacity = bufferCapacity == 1 ? 1 : Integer.highestOneBit(bufferCapacity - 1) << 1;
+            return this;
+        }
+
+        /**
+         * Sets how often the buffers are drained. Defaults to 100 milliseconds.
+         *
+         * @param drainInterval interval between drains
+         * @return this builder
+         */
+        public Builder drainInterval(Duration drainInterval) {
+            if (drainInterval.isNegative() || drainInterval.isZero()) {
+                throw new IllegalArgumentException("drainInterval must be positive, but it is " + drainInterval);
+            }
+            this.drainInterval = drainInterval;
+            return this;
+        }
+
+        /**
+         * Builds the recorder and starts its background thread.
+         *
+         * @return the recorder
+         */
+        public BufferedRecorder build() {
+            return new BufferedRecorder(this);
+        }
+    }
+}
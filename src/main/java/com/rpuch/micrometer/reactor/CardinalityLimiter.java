@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of variable tag combinations registered under each metric name and fixed tags. Tags of a
+ * meter are split into fixed tags, which only depend on the metered code (like {@code class} and {@code method}),
+ * and variable tags, which depend on the invocation (like {@code exception} or tags derived from method
+ * arguments). Fixed tags are bounded by the code, so each set of them gets its own limit: methods sharing a
+ * metric name do not use up each other's budget. The first {@code maxTagCombinations} variable tag combinations
+ * seen for a name and fixed tags are admitted; past that, the variable tags of new combinations get the
+ * {@link #OVERFLOW_TAG_VALUE} value, so that they all collapse into a single overflow meter, and each rejected
+ * combination is counted once in the {@link #REJECTED_METRIC_NAME} counter tagged with the metric name, however
+ * many times it is seen.
+ * <p>
+ * Checking an admitted combination is two lookups in concurrent maps. Rejected combinations are remembered up to
+ * the same limit, so memory is bounded by twice the limit times the number of metric names and fixed tags; past
+ * that, a rejected combination that is not remembered is counted each time it is seen.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class CardinalityLimiter {
+    /**
+     * Value given to the variable tags of combinations over the limit.
+     */
+    public static final String OVERFLOW_TAG_VALUE = "other";
+
+    /**
+     * Name of the counter of tag combinations collapsed into the overflow meter. It counts distinct rejected
+     * combinations, not recordings to the overflow meter: a combination is counted when it is first rejected,
+     * whether or not the caller caches the meter it gets for it.
+     */
+    public static final String REJECTED_METRIC_NAME = "micrometer.reactor.meters.rejected";
+
+    private final MeterRegistry registry;
+    private final int maxTagCombinations;
+    private final ConcurrentMap<String, NameLimit> limits = new ConcurrentHashMap<>();
+
+    private CardinalityLimiter(MeterRegistry registry, int maxTagCombinations) {
+        this.registry = registry;
+        this.maxTagCombinations = maxTagCombinations;
+    }
+
+    /**
+     * Creates a limiter admitting at most the given number of variable tag combinations per metric name and
+     * fixed tags.
+     *
+     * @param registry           where to register the counter of rejected combinations
+     * @param maxTagCombinations maximum number of variable tag combinations per metric name and fixed tags
+     * @return limiter
+     */
+    public static CardinalityLimiter create(MeterRegistry registry, int maxTagCombinations) {
+        if (maxTagCombinations <= 0) {
+            throw new IllegalArgumentException("maxTagCombinations must be positive, but it is "
+                    + maxTagCombinations);
+        }
+        return new CardinalityLimiter(registry, maxTagCombinations);
+    }
+
+    /**
+     * Returns the tags to register a meter with: the fixed and variable tags combined if the combination is
+     * admitted, or the fixed tags and the variable tag keys with the {@link #OVERFLOW_TAG_VALUE} value otherwise.
+     *
+     * @param name         metric name
+     * @param fixedTags    tags that only depend on the metered code
+     * @param variableTags tags that depend on the invocation; they win over fixed tags with the same key
+     * @return tags to use
+     */
+    public Tags limit(String name, Tags fixedTags, Iterable<Tag> variableTags) {
+        Tags tags = fixedTags.and(variableTags);
+
+        NameLimit nameLimit = limits.get(name);
+        if (nameLimit == null) {
+            nameLimit = limits.computeIfAbsent(name, NameLimit::new);
+        }
+        CombinationLimit limit = nameLimit.of(fixedTags);
+        if (limit.admit(tags)) {
+            return tags;
+        }
+
+        if (limit.rememberRejected(tags)) {
+            nameLimit.rejected().increment();
+        }
+        return fixedTags.and(overflow(variableTags));
+    }
+
+    private static List<Tag> overflow(Iterable<Tag> variableTags) {
+        List<Tag> overflow = new ArrayList<>();
+        for (Tag tag : variableTags) {
+            overflow.add(Tag.of(tag.getKey(), OVERFLOW_TAG_VALUE));
+        }
+        return overflow;
+    }
+
+    /**
+     * Limits of the fixed tags seen under one metric name, which share its counter of rejected combinations.
+     */
+    private class NameLimit {
+        private final String name;
+        private final ConcurrentMap<Tags, CombinationLimit> byFixedTags = new ConcurrentHashMap<>();
+        @Nullable
+        private volatile Counter rejected;
+
+        NameLimit(String name) {
+            this.name = name;
+        }
+
+        CombinationLimit of(Tags fixedTags) {
+            CombinationLimit limit = byFixedTags.get(fixedTags);
+            if (limit == null) {
+                limit = byFixedTags.computeIfAbsent(fixedTags, key -> new CombinationLimit());
+            }
+            return limit;
+        }
+
+        Counter rejected() {
+            Counter counter = rejected;
+            if (counter == null) {
+                counter = Counter.builder(REJECTED_METRIC_NAME)
+                        .description("Tag combinations collapsed into the overflow meter because the number of "
+                                + "tag combinations of a metric reached its limit")
+                        .tag("name", name)
+                        .register(registry);
+                rejected = counter;
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Combinations admitted and rejected under one metric name and fixed tags. As the fixed tags are the same for
+     * all of them, whole combinations are used as keys.
+     */
+    private class CombinationLimit {
+        private final ConcurrentMap<Tags, Boolean> admitted = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final ConcurrentMap<Tags, Boolean> rejectedCombinations = new ConcurrentHashMap<>();
+        private final AtomicInteger rejectedSize = new AtomicInteger();
+
+        boolean admit(Tags tags) {
+            if (admitted.containsKey(tags)) {
+                return true;
+            }
+            // reserve a slot before adding, so that racing threads cannot exceed the limit
+            if (size.incrementAndGet() > maxTagCombinations) {
+                size.decrementAndGet();
+                return admitted.containsKey(tags);
+            }
+            if (admitted.putIfAbsent(tags, Boolean.TRUE) != null) {
+                size.decrementAndGet();
+            }
+            return true;
+        }
+
+        /**
+         * Remembers a rejected combination, returning whether it should be counted: {@code true} if it is new,
+         * or if too many rejected combinations are remembered to tell.
+         */
+        boolean rememberRejected(Tags tags) {
+            if (rejectedCombinations.containsKey(tags)) {
+                return false;
+            }
+            if (rejectedSize.incrementAndGet() > maxTagCombinations) {
+                rejectedSize.decrementAndGet();
+                return !rejectedCombinations.containsKey(tags);
+            }
+            if (rejectedCombinations.putIfAbsent(tags, Boolean.TRUE) != null) {
+                rejectedSize.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Derives tags from values of a Reactor {@link ContextView}, like a tenant or a route put into the context
+ * upstream. Each configured context key gives a tag which value is the string representation of the context
+ * value, or {@link #MISSING_VALUE} if the context has no such key.
+ * <p>
+ * Resolved {@link Tags} are interned: as long as the same context values are seen, the same {@link Tags} instance
+ * is returned and nothing is allocated. At most {@code maxCached} combinations are kept; past that, tags are
+ * resolved on each call.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class ContextTags {
+    /**
+     * Tag value used when the context has no value for a key.
+     */
+    public static final String MISSING_VALUE = "none";
+
+    private static final Object MISSING = new Object();
+
+    private final String[] tagKeys;
+    private final Object[] contextKeys;
+    private final int maxCached;
+
+    /**
+     * Cached tags: a tree with a level per context key, keyed by the context values, with {@link Tags}
+     * as leaves.
+     */
+    private final ConcurrentMap<Object, Object> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger cached = new AtomicInteger();
+
+    private ContextTags(Builder builder) {
+        this.tagKeys = builder.tagKeys.toArray(new String[0]);
+        this.contextKeys = builder.contextKeys.toArray();
+        this.maxCached = builder.maxCached;
+    }
+
+    /**
+     * Creates {@code ContextTags} producing a tag for each of the given context keys, the tag key being
+     * the context key, and caching up to 1000 tag combinations.
+     *
+     * @param keys context keys
+     * @return context tags
+     */
+    public static ContextTags of(String... keys) {
+        Builder builder = builder();
+        for (String key : keys) {
+            builder.tag(key, key);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Starts building {@code ContextTags}.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns tags for the given context.
+     *
+     * @param context context to take the tag values from
+     * @return tags
+     */
+    @SuppressWarnings("unchecked")
+    public Tags tags(ContextView context) {
+        if (contextKeys.length == 0) {
+            return Tags.empty();
+        }
+
+        ConcurrentMap<Object, Object> level = cache;
+        int last = contextKeys.length - 1;
+        for (int i = 0; i < last; i++) {
+            Object value = contextValue(context, i);
+            Object next = level.get(value);
+            if (next == null) {
+                if (cached.get() >= maxCached) {
+                    return resolve(context);
+                }
+                next = level.computeIfAbsent(value, v -> new ConcurrentHashMap<>());
+            }
+            level = (ConcurrentMap<Object, Object>) next;
+        }
+
+        Object value = contextValue(context, last);
+        Tags tags = (Tags) level.get(value);
+        if (tags == null) {
+            if (cached.get() >= maxCached) {
+                return resolve(context);
+            }
+            tags = (Tags) level.computeIfAbsent(value, v -> {
+                cached.incrementAndGet();
+                return resolve(context);
+            });
+        }
+        return tags;
+    }
+
+    /**
+     * Returns how many tag combinations may be cached.
+     *
+     * @return maximum number of cached combinations
+     */
+    public int maxCached() {
+        return maxCached;
+    }
+
+    private Object contextValue(ContextView context, int index) {
+        return context.getOrDefault(contextKeys[index], MISSING);
+    }
+
+    private Tags resolve(ContextView context) {
+        List<Tag> tags = new ArrayList<>(tagKeys.length);
+        for (int i = 0; i < tagKeys.length; i++) {
+            Object value = contextValue(context, i);
+            tags.add(Tag.of(tagKeys[i], value == MISSING ? MISSING_VALUE : String.valueOf(value)));
+        }
+        return Tags.of(tags);
+    }
+
+    /**
+     * Builder of {@link ContextTags}.
+     */
+    public static class Builder {
+        private final List<String> tagKeys = new ArrayList<>();
+        private final List<Object> contextKeys = new ArrayList<>();
+        private int maxCached = 1000;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a tag taking its value from the context.
+         *
+         * @param tagKey     tag key
+         * @param contextKey context key
+         * @return this builder
+         */
+        public Builder tag(String tagKey, Object contextKey) {
+            tagKeys.add(tagKey);
+            contextKeys.add(contextKey);
+            return this;
+        }
+
+        /**
+         * Sets how many tag combinations may be cached. Defaults to 1000.
+         *
+         * @param maxCached maximum number of cached combinations
+         * @return this builder
+         */
+        public Builder maxCached(int maxCached) {
+            if (maxCached < 0) {
+                throw new IllegalArgumentException("maxCached must not be negative, but it is " + maxCached);
+            }
+            this.maxCached = maxCached;
+            return this;
+        }
+
+        public ContextTags build() {
+            return new ContextTags(this);
+        }
+    }
+}
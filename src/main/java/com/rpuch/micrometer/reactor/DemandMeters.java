@@ -0,0 +1,198 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meters the demand ({@code request(n)} calls) of {@link Flux} subscriptions, to tell streams held back by
+ * their consumers from streams held back by their producers:
+ * <ul>
+ *     <li>{@code <name>.requested}: a counter of requested elements, not counting unbounded requests;</li>
+ *     <li>{@code <name>.requests.unbounded}: a counter of subscriptions that requested an unbounded amount;</li>
+ *     <li>{@code <name>.demand.outstanding}: a gauge of demand not yet satisfied, summed over the active
+ *     bounded subscriptions;</li>
+ *     <li>{@code <name>.demand.zero}: a timer of the periods during which a subscription has no outstanding
+ *     demand, so its producer may not emit.</li>
+ * </ul>
+ * The gauge is bound to this object, so a single {@code DemandMeters} should be used for the same meter names
+ * and tags.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class DemandMeters {
+    /**
+     * Suffix of the name of the counter of requested elements.
+     */
+    public static final String REQUESTED_SUFFIX = ".requested";
+    /**
+     * Suffix of the name of the counter of unbounded requests.
+     */
+    public static final String UNBOUNDED_SUFFIX = ".requests.unbounded";
+    /**
+     * Suffix of the name of the outstanding demand gauge.
+     */
+    public static final String OUTSTANDING_SUFFIX = ".demand.outstanding";
+    /**
+     * Suffix of the name of the timer of periods without demand.
+     */
+    public static final String ZERO_DEMAND_SUFFIX = ".demand.zero";
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<DemandMeteringSubscriber> OUTSTANDING =
+            AtomicLongFieldUpdater.newUpdater(DemandMeteringSubscriber.class, "outstanding");
+
+    private final Counter requested;
+    private final Counter unboundedRequests;
+    private final Timer zeroDemand;
+    private final LongAdder outstandingDemand = new LongAdder();
+    private final Clock clock;
+
+    private DemandMeters(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        this.requested = Counter.builder(metricName + REQUESTED_SUFFIX)
+                .description("Requested elements, not counting unbounded requests")
+                .tags(tags)
+                .register(registry);
+        this.unboundedRequests = Counter.builder(metricName + UNBOUNDED_SUFFIX)
+                .description("Subscriptions that requested an unbounded amount of elements")
+                .tags(tags)
+                .register(registry);
+        this.zeroDemand = Timer.builder(metricName + ZERO_DEMAND_SUFFIX)
+                .description("Periods during which a subscription has no outstanding demand")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(metricName + OUTSTANDING_SUFFIX, outstandingDemand, LongAdder::sum)
+                .description("Requested elements not yet emitted by active bounded subscriptions")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+        this.clock = registry.config().clock();
+    }
+
+    /**
+     * Registers the demand meters.
+     *
+     * @param registry   where to register the meters
+     * @param metricName name the meter names are derived from by adding suffixes
+     * @param tags       tags of the meters
+     * @return registered meters
+     */
+    public static DemandMeters register(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        return new DemandMeters(registry, metricName, tags);
+    }
+
+    /**
+     * Meters the demand of each subscription to the given {@link Flux}.
+     *
+     * @param flux flux to meter
+     * @param <T>  element type
+     * @return metered flux
+     */
+    public <T> Flux<T> meter(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, DemandMeteringSubscriber::new);
+    }
+
+    private class DemandMeteringSubscriber<T> extends SignalObservingSubscriber<T> {
+        /**
+         * Demand not yet satisfied; {@link Long#MAX_VALUE} if unbounded or terminated.
+         */
+        volatile long outstanding;
+
+        /**
+         * When the outstanding demand last became zero.
+         */
+        private volatile long zeroDemandSince = clock.monotonicTime();
+
+        DemandMeteringSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnRequest(long n) {
+            if (n <= 0) {
+                // upstream will signal the error
+                return;
+            }
+            for (;;) {
+                long current = outstanding;
+                if (current == Long.MAX_VALUE) {
+                    return;
+                }
+                long updated = Operators.addCap(current, n);
+                if (OUTSTANDING.compareAndSet(this, current, updated)) {
+                    if (updated == Long.MAX_VALUE) {
+                        unboundedRequests.increment();
+                        outstandingDemand.add(-current);
+                    } else {
+                        requested.increment(n);
+                        outstandingDemand.add(n);
+                    }
+                    if (current == 0) {
+                        recordZeroDemand();
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void hookOnNext(T t) {
+            for (;;) {
+                long current = outstanding;
+                if (current == Long.MAX_VALUE || current == 0) {
+                    return;
+                }
+                if (current == 1) {
+                    // written before the demand becomes zero, so that a request seeing zero sees it too
+                    zeroDemandSince = clock.monotonicTime();
+                }
+                if (OUTSTANDING.compareAndSet(this, current, current - 1)) {
+                    outstandingDemand.decrement();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void hookOnTerminate() {
+            long current = OUTSTANDING.getAndSet(this, Long.MAX_VALUE);
+            if (current != Long.MAX_VALUE) {
+                outstandingDemand.add(-current);
+                if (current == 0) {
+                    recordZeroDemand();
+                }
+            }
+        }
+
+        private void recordZeroDemand() {
+            zeroDemand.record(clock.monotonicTime() - zeroDemandSince, TimeUnit.NANOSECONDS);
+        }
+    }
+}
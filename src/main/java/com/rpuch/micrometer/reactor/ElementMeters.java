@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters the elements of {@link Flux} subscriptions: how many elements each subscription emits (a distribution
+ * summary), the gaps between consecutive elements (a timer) and the emitted elements (a counter, which rate
+ * is the element rate).
+ * <p>
+ * The work done per element is a few operations on primitive fields of the subscriber. Only the gaps need
+ * the clock; to make this cheaper, only each {@code gapsOneIn}-th gap may be measured. The counter is
+ * incremented in batches, and its last batch is added when the subscription terminates.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class ElementMeters {
+    /**
+     * Suffix of the name of the summary of elements emitted per subscription.
+     */
+    public static final String ELEMENTS_SUFFIX = ".elements";
+    /**
+     * Suffix of the name of the timer of gaps between elements.
+     */
+    public static final String GAP_SUFFIX = ".element.gap";
+    /**
+     * Suffix of the name of the counter of emitted elements.
+     */
+    public static final String EMITTED_SUFFIX = ".elements.emitted";
+
+    private static final int EMITTED_BATCH_MASK = 63;
+
+    private final DistributionSummary elementsPerSubscription;
+    private final Timer gaps;
+    private final Counter emitted;
+    private final Clock clock;
+    private final int gapsOneIn;
+
+    private ElementMeters(DistributionSummary elementsPerSubscription, Timer gaps, Counter emitted, Clock clock,
+            int gapsOneIn) {
+        this.elementsPerSubscription = elementsPerSubscription;
+        this.gaps = gaps;
+        this.emitted = emitted;
+        this.clock = clock;
+        this.gapsOneIn = gapsOneIn;
+    }
+
+    /**
+     * Registers the element meters.
+     *
+     * @param registry   where to register the meters
+     * @param metricName name the meter names are derived from by adding suffixes
+     * @param tags       tags of the meters
+     * @param gapsOneIn  which share of gaps to measure: {@code 1} means all of them, {@code n} means
+     *                   each {@code n}-th one
+     * @return registered meters
+     */
+    public static ElementMeters register(MeterRegistry registry, String metricName, Iterable<Tag> tags,
+            int gapsOneIn) {
+        if (gapsOneIn < 1) {
+            throw new IllegalArgumentException("gapsOneIn must be positive, but it is " + gapsOneIn);
+        }
+        return new ElementMeters(
+                DistributionSummary.builder(metricName + ELEMENTS_SUFFIX)
+                        .description("Elements emitted per subscription")
+                        .tags(tags)
+                        .register(registry),
+                Timer.builder(metricName + GAP_SUFFIX)
+                        .description("Time between consecutive elements")
+                        .tags(tags)
+                        .register(registry),
+                Counter.builder(metricName + EMITTED_SUFFIX)
+                        .description("Emitted elements")
+                        .tags(tags)
+                        .register(registry),
+                registry.config().clock(), gapsOneIn);
+    }
+
+    /**
+     * Meters elements of each subscription to the given {@link Flux}.
+     *
+     * @param flux flux to meter
+     * @param <T>  element type
+     * @return metered flux
+     */
+    public <T> Flux<T> meter(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, ElementMeteringSubscriber::new);
+    }
+
+    private class ElementMeteringSubscriber<T> extends SignalObservingSubscriber<T> {
+        private long count;
+        private int untilMeasuredGap = gapsOneIn;
+        private long previousElementTime;
+
+        ElementMeteringSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnNext(T t) {
+            long current = ++count;
+            if ((current & EMITTED_BATCH_MASK) == 0) {
+                emitted.increment(EMITTED_BATCH_MASK + 1);
+            }
+
+            if (--untilMeasuredGap <= 1) {
+                long now = clock.monotonicTime();
+                if (untilMeasuredGap == 0) {
+                    if (current > 1) {
+                        gaps.record(now - previousElementTime, TimeUnit.NANOSECONDS);
+                    }
+                    untilMeasuredGap = gapsOneIn;
+                }
+                previousElementTime = now;
+            }
+        }
+
+        @Override
+        void hookOnTerminate() {
+            // on cancellation, this may run on another thread than onNext() and miss the latest elements
+            long total = count;
+            elementsPerSubscription.record(total);
+            long notFlushed = total & EMITTED_BATCH_MASK;
+            if (notFlushed > 0) {
+                emitted.increment(notFlushed);
+            }
+        }
+    }
+}
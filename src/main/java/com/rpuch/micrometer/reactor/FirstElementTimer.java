@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times subscriptions until their first element, or until completion if there are no elements: the latency
+ * a consumer of a stream actually feels. Subscriptions failing or cancelled before the first element are not
+ * recorded, as they tell nothing about it.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class FirstElementTimer {
+    /**
+     * Suffix of the name of the timer.
+     */
+    public static final String SUFFIX = ".first.element";
+
+    private final Timer timer;
+    private final Clock clock;
+
+    private FirstElementTimer(Timer timer, Clock clock) {
+        this.timer = timer;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers the timer.
+     *
+     * @param registry   where to register the timer
+     * @param metricName name the timer name is derived from by adding {@link #SUFFIX}
+     * @param tags       tags of the timer
+     * @return registered timer
+     */
+    public static FirstElementTimer register(MeterRegistry registry, String metricName, Iterable<Tag> tags) {
+        return new FirstElementTimer(
+                Timer.builder(metricName + SUFFIX)
+                        .description("Time from subscription to the first element or completion")
+                        .tags(tags)
+                        .register(registry),
+                registry.config().clock());
+    }
+
+    /**
+     * Times each subscription to the given {@link Mono} until its value or completion.
+     *
+     * @param mono mono to time
+     * @param <T>  value type
+     * @return timed mono
+     */
+    public <T> Mono<T> time(Mono<T> mono) {
+        return SignalObservingMono.observe(mono, FirstElementTimingSubscriber::new);
+    }
+
+    /**
+     * Times each subscription to the given {@link Flux} until its first element or completion.
+     *
+     * @param flux flux to time
+     * @param <T>  element type
+     * @return timed flux
+     */
+    public <T> Flux<T> time(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, FirstElementTimingSubscriber::new);
+    }
+
+    private class FirstElementTimingSubscriber<T> extends SignalObservingSubscriber<T> {
+        private final long startTime = clock.monotonicTime();
+        private boolean recorded;
+
+        FirstElementTimingSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnNext(T t) {
+            if (!recorded) {
+                record();
+            }
+        }
+
+        @Override
+        void hookOnComplete() {
+            if (!recorded) {
+                record();
+            }
+        }
+
+        private void record() {
+            recorded = true;
+            timer.record(clock.monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.Nullable;
+
+/**
+ * State of one subscription to a logical call boundary, put in the context so that the attempts upstream of
+ * a retry can find it. It is the {@link MeteringListener} of the boundary: when the logical call terminates, it
+ * records the attempts and the duration to the {@link AttemptMeters} of its first attempt.
+ *
+ * @author Roman Puchkovskiy
+ * @see ReactorMetrics#logicalCall()
+ */
+final class LogicalCall implements MeteringListener {
+    @Nullable
+    private AttemptMeters meters;
+    private long firstAttemptStartTime;
+    private int attempts;
+
+    synchronized void attempt(AttemptMeters attemptMeters, long startTime) {
+        if (meters == null) {
+            meters = attemptMeters;
+            firstAttemptStartTime = startTime;
+        }
+        if (meters == attemptMeters) {
+            attempts++;
+        }
+    }
+
+    @Override
+    public long startTime() {
+        // the logical call starts with its first attempt, measured with the clock of its meters
+        return 0;
+    }
+
+    @Override
+    public void onSuccess(long startTime) {
+        AttemptMeters meters = recordAttempts();
+        if (meters != null) {
+            meters.logicalTimers.onSuccess(firstAttemptStartTime());
+        }
+    }
+
+    @Override
+    public void onError(long startTime, Throwable error) {
+        AttemptMeters meters = recordAttempts();
+        if (meters != null) {
+            meters.logicalTimers.onError(firstAttemptStartTime(), error);
+        }
+    }
+
+    @Override
+    public void onCancel(long startTime) {
+        AttemptMeters meters = recordAttempts();
+        if (meters != null) {
+            meters.logicalTimers.onCancel(firstAttemptStartTime());
+        }
+    }
+
+    @Nullable
+    private synchronized AttemptMeters recordAttempts() {
+        if (meters != null) {
+            try {
+                meters.attempts.record(attempts);
+            } catch (Exception e) {
+                // ignoring on purpose: metering must not break the pipeline
+            }
+        }
+        return meters;
+    }
+
+    private synchronized long firstAttemptStartTime() {
+        return firstAttemptStartTime;
+    }
+}
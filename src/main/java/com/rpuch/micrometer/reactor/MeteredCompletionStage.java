@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Reports the completion of a {@link CompletionStage} to a {@link MeteringListener}. Unlike a publisher,
+ * a completion stage runs whether it is subscribed or not, so the start time is taken by the caller before
+ * the stage is created, and the stage is observed rather than wrapped: the caller keeps using the original
+ * stage.
+ * <p>
+ * A stage completed with a {@link CancellationException} (like a cancelled
+ * {@link java.util.concurrent.CompletableFuture}) is reported as cancelled, and the {@link CompletionException}
+ * wrapping errors of dependent stages is unwrapped.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class MeteredCompletionStage {
+    private MeteredCompletionStage() {
+    }
+
+    /**
+     * Reports the completion of the given stage to the listener.
+     *
+     * @param stage     stage to observe
+     * @param listener  listener to report to
+     * @param startTime value returned by {@link MeteringListener#startTime()} before the stage was created
+     * @param <S>       stage type
+     * @return the given stage
+     */
+    public static <S extends CompletionStage<?>> S observe(S stage, MeteringListener listener, long startTime) {
+        stage.whenComplete((value, error) -> {
+            if (error == null) {
+                listener.onSuccess(startTime);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof CancellationException) {
+                listener.onCancel(startTime);
+            } else {
+                listener.onError(startTime, cause);
+            }
+        });
+        return stage;
+    }
+}
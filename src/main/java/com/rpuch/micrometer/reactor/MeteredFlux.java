@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link Flux} reporting each subscription to a {@link MeteringListener}: the listener learns when the
+ * subscription starts and when it completes, fails or is cancelled.
+ * <p>
+ * Unlike a chain of {@code doOnXxx()} operators, this adds a single subscriber to the pipeline, and that
+ * subscriber keeps the start time in a primitive field, so nothing else is allocated per subscription.
+ * If the source supports fusion, fusion is negotiated through the metering subscriber.
+ *
+ * @param <T> element type
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class MeteredFlux<T> extends Flux<T> implements Scannable {
+    @Nullable
+    private final Flux<? extends T> source;
+    @Nullable
+    private final Supplier<? extends Flux<? extends T>> sourceSupplier;
+    private final MeteringListener listener;
+
+    /**
+     * Meters subscriptions to the given {@link Flux}.
+     *
+     * @param source   the {@link Flux} to meter
+     * @param listener listener to report to
+     * @param <T>      element type
+     * @return metered {@link Flux}
+     */
+    public static <T> Flux<T> wrap(Flux<? extends T> source, MeteringListener listener) {
+        return onAssembly(new MeteredFlux<>(source, null, listener));
+    }
+
+    /**
+     * Like {@link Flux#defer(Supplier)}, obtains the source lazily on each subscription, and meters the
+     * subscription. The start time is taken before the supplier is invoked, so the time spent in the supplier
+     * is included. If the supplier throws, the error is passed downstream, but nothing is reported to the
+     * listener.
+     *
+     * @param sourceSupplier supplier of the {@link Flux} to meter
+     * @param listener       listener to report to
+     * @param <T>            element type
+     * @return metered {@link Flux}
+     */
+    public static <T> Flux<T> defer(Supplier<? extends Flux<? extends T>> sourceSupplier,
+            MeteringListener listener) {
+        return onAssembly(new MeteredFlux<>(null, sourceSupplier, listener));
+    }
+
+    private MeteredFlux(@Nullable Flux<? extends T> source,
+            @Nullable Supplier<? extends Flux<? extends T>> sourceSupplier, MeteringListener listener) {
+        this.source = source;
+        this.sourceSupplier = sourceSupplier;
+        this.listener = listener;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        MeteredSubscriber.subscribe(actual, listener, source, sourceSupplier, false);
+    }
+
+    @Override
+    @Nullable
+    public Object scanUnsafe(Attr key) {
+        return MeteredSubscriber.scanPublisher(key, source);
+    }
+}
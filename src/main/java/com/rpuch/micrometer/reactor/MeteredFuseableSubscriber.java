@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Operators;
+import io.micrometer.core.lang.Nullable;
+
+/**
+ * {@link MeteredSubscriber} used when the source supports fusion: the fusion is negotiated with the source
+ * directly, and the terminal signals are also detected in {@link #poll()} and {@link #isEmpty()}, as a source
+ * in {@link Fuseable#SYNC} mode never calls {@code onComplete()}.
+ *
+ * @author Roman Puchkovskiy
+ */
+class MeteredFuseableSubscriber<T> extends MeteredSubscriber<T> implements Fuseable.QueueSubscription<T> {
+    @Nullable
+    private Fuseable.QueueSubscription<T> qs;
+    private int sourceMode;
+
+    MeteredFuseableSubscriber(CoreSubscriber<? super T> actual, MeteringListener listener, long startTime,
+            boolean mono) {
+        super(actual, listener, startTime, mono);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(this.s, s)) {
+            this.qs = Operators.as(s);
+            this.s = s;
+            actual.onSubscribe(this);
+        }
+    }
+
+    @Override
+    public int requestFusion(int requestedMode) {
+        if (qs == null) {
+            return Fuseable.NONE;
+        }
+        int mode = qs.requestFusion(requestedMode);
+        sourceMode = mode;
+        return mode;
+    }
+
+    @Override
+    @Nullable
+    public T poll() {
+        try {
+            T value = qs.poll();
+            if (value != null) {
+                if (mono) {
+                    terminateWithSuccess();
+                }
+            } else if (sourceMode == Fuseable.SYNC) {
+                terminateWithSuccess();
+            }
+            return value;
+        } catch (Throwable e) {
+            terminateWithError(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        boolean empty = qs.isEmpty();
+        if (empty && sourceMode == Fuseable.SYNC) {
+            terminateWithSuccess();
+        }
+        return empty;
+    }
+
+    @Override
+    public int size() {
+        return qs.size();
+    }
+
+    @Override
+    public void clear() {
+        qs.clear();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ParallelFlux} reporting each subscription to a {@link MeteringListener} as a whole, across all rails:
+ * the subscription succeeds when every rail completes, fails when a rail fails and is cancelled when a rail is
+ * cancelled before that.
+ * <p>
+ * As the parallelism of a {@code ParallelFlux} must be known when it is assembled, there is no {@code defer()}
+ * variant: the source must already exist. The rails are not fuseable through this operator.
+ *
+ * @param <T> element type
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class MeteredParallelFlux<T> extends ParallelFlux<T> implements Scannable {
+    private static final int ACTIVE = 0;
+    private static final int TERMINATED = 1;
+    private static final int CANCELLED = 2;
+
+    private final ParallelFlux<? extends T> source;
+    private final MeteringListener listener;
+
+    /**
+     * Meters subscriptions to the given {@link ParallelFlux}.
+     *
+     * @param source   the {@link ParallelFlux} to meter
+     * @param listener listener to report to
+     * @param <T>      element type
+     * @return metered {@link ParallelFlux}
+     */
+    public static <T> ParallelFlux<T> wrap(ParallelFlux<? extends T> source, MeteringListener listener) {
+        return onAssembly(new MeteredParallelFlux<>(source, listener));
+    }
+
+    private MeteredParallelFlux(ParallelFlux<? extends T> source, MeteringListener listener) {
+        this.source = source;
+        this.listener = listener;
+    }
+
+    @Override
+    public int parallelism() {
+        return source.parallelism();
+    }
+
+    @Override
+    public int getPrefetch() {
+        return source.getPrefetch();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void subscribe(CoreSubscriber<? super T>[] subscribers) {
+        if (!validate(subscribers)) {
+            return;
+        }
+
+        ParallelSubscription subscription = new ParallelSubscription(listener, listener.startTime(),
+                subscribers.length);
+        CoreSubscriber<T>[] rails = new CoreSubscriber[subscribers.length];
+        for (int i = 0; i < subscribers.length; i++) {
+            rails[i] = new RailSubscriber<>(subscribers[i], subscription);
+        }
+        source.subscribe(rails);
+    }
+
+    @Override
+    @Nullable
+    public Object scanUnsafe(Attr key) {
+        if (key == Attr.PARENT) {
+            return source;
+        }
+        if (key == Attr.PREFETCH) {
+            return getPrefetch();
+        }
+        if (key == Attr.RUN_STYLE) {
+            return Attr.RunStyle.SYNC;
+        }
+        return null;
+    }
+
+    /**
+     * State of a subscription shared by its rails; reports exactly one terminal signal to the listener.
+     */
+    private static final class ParallelSubscription {
+        private final MeteringListener listener;
+        private final long startTime;
+        private final AtomicInteger activeRails;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+
+        ParallelSubscription(MeteringListener listener, long startTime, int rails) {
+            this.listener = listener;
+            this.startTime = startTime;
+            this.activeRails = new AtomicInteger(rails);
+        }
+
+        void railCompleted() {
+            if (activeRails.decrementAndGet() == 0 && state.compareAndSet(ACTIVE, TERMINATED)) {
+                listener.onSuccess(startTime);
+            }
+        }
+
+        void railFailed(Throwable error) {
+            if (state.compareAndSet(ACTIVE, TERMINATED)) {
+                listener.onError(startTime, error);
+            }
+        }
+
+        void railCancelled() {
+            if (state.compareAndSet(ACTIVE, CANCELLED)) {
+                listener.onCancel(startTime);
+            }
+        }
+    }
+
+    private static final class RailSubscriber<T> extends SignalObservingSubscriber<T> {
+        private final ParallelSubscription subscription;
+
+        RailSubscriber(CoreSubscriber<? super T> actual, ParallelSubscription subscription) {
+            super(actual);
+            this.subscription = subscription;
+        }
+
+        @Override
+        void hookOnComplete() {
+            subscription.railCompleted();
+        }
+
+        @Override
+        void hookOnError(Throwable t) {
+            subscription.railFailed(t);
+        }
+
+        @Override
+        void hookOnCancel() {
+            subscription.railCancelled();
+        }
+    }
+}
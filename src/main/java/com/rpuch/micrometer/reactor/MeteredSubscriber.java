@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CorePublisher;
+import reactor.core.CoreSubscriber;
+import reactor.core.Fuseable;
+import reactor.core.Scannable;
+import reactor.core.publisher.Operators;
+import io.micrometer.core.lang.Nullable;
+import reactor.util.context.Context;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * The only subscriber {@link MeteredMono} and {@link MeteredFlux} add to a pipeline. It keeps the subscription
+ * start time in a primitive field and reports exactly one terminal signal to its {@link MeteringListener}.
+ *
+ * @author Roman Puchkovskiy
+ */
+class MeteredSubscriber<T> implements CoreSubscriber<T>, Subscription, Scannable {
+    private static final int ACTIVE = 0;
+    private static final int TERMINATED = 1;
+    private static final int CANCELLED = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<MeteredSubscriber> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(MeteredSubscriber.class, "state");
+
+    final CoreSubscriber<? super T> actual;
+    final MeteringListener listener;
+    final long startTime;
+    final boolean mono;
+
+    @Nullable
+    Subscription s;
+
+    private volatile int state;
+
+    MeteredSubscriber(CoreSubscriber<? super T> actual, MeteringListener listener, long startTime, boolean mono) {
+        this.actual = actual;
+        this.listener = listener;
+        this.startTime = startTime;
+        this.mono = mono;
+    }
+
+    static <T> MeteredSubscriber<T> create(CoreSubscriber<? super T> actual, MeteringListener listener,
+            long startTime, Publisher<?> source, boolean mono) {
+        if (source instanceof Fuseable) {
+            return new MeteredFuseableSubscriber<>(actual, listener, startTime, mono);
+        }
+        return new MeteredSubscriber<>(actual, listener, startTime, mono);
+    }
+
+    /**
+     * Subscribes to the source on behalf of {@link MeteredMono} or {@link MeteredFlux}: takes the start time,
+     * obtains the source from the supplier if it is not given, and subscribes the metering subscriber to it.
+     */
+    static <T> void subscribe(CoreSubscriber<? super T> actual, MeteringListener listener,
+            @Nullable CorePublisher<? extends T> source,
+            @Nullable Supplier<? extends CorePublisher<? extends T>> sourceSupplier, boolean mono) {
+        long startTime = listener.startTime();
+
+        if (source == null) {
+            try {
+                source = Objects.requireNonNull(sourceSupplier.get(), "The sourceSupplier returned a null value");
+            } catch (Throwable e) {
+                Operators.error(actual, Operators.onOperatorError(e, actual.currentContext()));
+                return;
+            }
+        }
+
+        source.subscribe(create(actual, listener, startTime, source, mono));
+    }
+
+    /**
+     * Scans {@link MeteredMono} or {@link MeteredFlux} with the given source.
+     */
+    @Nullable
+    static Object scanPublisher(Attr key, @Nullable Object source) {
+        if (key == Attr.PARENT) {
+            return source;
+        }
+        if (key == Attr.RUN_STYLE) {
+            return Attr.RunStyle.SYNC;
+        }
+        return null;
+    }
+
+    @Override
+    public Context currentContext() {
+        return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(this.s, s)) {
+            this.s = s;
+            actual.onSubscribe(this);
+        }
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (mono) {
+            terminateWithSuccess();
+        }
+        actual.onNext(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        terminateWithError(t);
+        actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        terminateWithSuccess();
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        s.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        if (STATE.compareAndSet(this, ACTIVE, CANCELLED)) {
+            listener.onCancel(startTime);
+        }
+        s.cancel();
+    }
+
+    final void terminateWithSuccess() {
+        if (STATE.compareAndSet(this, ACTIVE, TERMINATED)) {
+            listener.onSuccess(startTime);
+        }
+    }
+
+    final void terminateWithError(Throwable t) {
+        if (STATE.compareAndSet(this, ACTIVE, TERMINATED)) {
+            listener.onError(startTime, t);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Object scanUnsafe(Attr key) {
+        if (key == Attr.PARENT) {
+            return s;
+        }
+        if (key == Attr.ACTUAL) {
+            return actual;
+        }
+        if (key == Attr.TERMINATED) {
+            return state == TERMINATED;
+        }
+        if (key == Attr.CANCELLED) {
+            return state == CANCELLED;
+        }
+        if (key == Attr.RUN_STYLE) {
+            return Attr.RunStyle.SYNC;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Receives the terminal signals of a subscription to a {@link MeteredMono}, a {@link MeteredFlux} or
+ * a {@link MeteredParallelFlux}.
+ * A single listener instance may be shared by many subscriptions (possibly running concurrently),
+ * so implementations must be thread-safe and should keep no per-subscription state: everything a listener
+ * needs about the subscription is passed to it as primitive arguments.
+ * <p>
+ * For each subscription, exactly one of {@link #onSuccess(long)}, {@link #onError(long, Throwable)} and
+ * {@link #onCancel(long)} is called, unless the source publisher could not be obtained at all.
+ *
+ * @author Roman Puchkovskiy
+ * @see MeteredMono
+ * @see MeteredFlux
+ * @see MeteredParallelFlux
+ */
+public interface MeteringListener {
+    /**
+     * Returns the start time of a new subscription (usually, a monotonic time in nanoseconds). The returned value
+     * is then passed to the terminal callbacks. It is called before the source is obtained, so it must not have
+     * side effects.
+     *
+     * @return subscription start time
+     */
+    long startTime();
+
+    /**
+     * Called when a {@link Mono} emits its value or completes empty, or when a {@link Flux} completes
+     * (for a {@link MeteredParallelFlux}, when all of its rails complete).
+     *
+     * @param startTime value returned by {@link #startTime()} for this subscription
+     */
+    void onSuccess(long startTime);
+
+    /**
+     * Called when the source signals an error.
+     *
+     * @param startTime value returned by {@link #startTime()} for this subscription
+     * @param error     the error
+     */
+    void onError(long startTime, Throwable error);
+
+    /**
+     * Called when the subscription is cancelled before a terminal signal.
+     *
+     * @param startTime value returned by {@link #startTime()} for this subscription
+     */
+    void onCancel(long startTime);
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Counters of one metric split by the outcome of the counted subscriptions, which is told by the values of
+ * the {@code result} tag ({@value #SUCCESS_RESULT}, {@value #FAILURE_RESULT} or {@value #CANCELLATION_RESULT})
+ * and of the {@code exception} tag (the simple name of the exception class for a failure, and
+ * {@value #NO_EXCEPTION_TAG_VALUE} otherwise).
+ * <p>
+ * Each counter is created on its first use and kept: the success and cancellation counters in fields, the
+ * failure ones in a map keyed by the exception class. As a {@link MeteringListener}, it counts each subscription
+ * with the counter matching its outcome, so a single instance can meter any number of subscriptions without
+ * allocating anything per subscription.
+ *
+ * @author Roman Puchkovskiy
+ * @see ReactorMetrics#counted(io.micrometer.core.instrument.MeterRegistry, String, Iterable)
+ */
+@NonNullApi
+public final class OutcomeCounters implements MeteringListener {
+    /**
+     * Value of the exception tag of successful and cancelled subscriptions.
+     */
+    public static final String NO_EXCEPTION_TAG_VALUE = "none";
+    /**
+     * Value of the result tag of successful subscriptions.
+     */
+    public static final String SUCCESS_RESULT = "success";
+    /**
+     * Value of the result tag of failed subscriptions.
+     */
+    public static final String FAILURE_RESULT = "failure";
+    /**
+     * Value of the result tag of cancelled subscriptions.
+     */
+    public static final String CANCELLATION_RESULT = "cancellation";
+
+    private final BiFunction<String, String, Counter> counterFactory;
+
+    @Nullable
+    private volatile Counter successCounter;
+    @Nullable
+    private volatile Counter cancellationCounter;
+    private final ConcurrentMap<Class<? extends Throwable>, Counter> failureCounters = new ConcurrentHashMap<>();
+
+    private OutcomeCounters(BiFunction<String, String, Counter> counterFactory) {
+        this.counterFactory = counterFactory;
+    }
+
+    /**
+     * Creates counters resolved on first use.
+     *
+     * @param counterFactory creates (or looks up) the counter for an exception tag value and a result tag value
+     * @return counters
+     */
+    public static OutcomeCounters create(BiFunction<String, String, Counter> counterFactory) {
+        return new OutcomeCounters(counterFactory);
+    }
+
+    /**
+     * Returns the counter of successful subscriptions, creating it if needed.
+     *
+     * @return counter
+     */
+    public Counter success() {
+        Counter counter = successCounter;
+        if (counter == null) {
+            counter = counterFactory.apply(NO_EXCEPTION_TAG_VALUE, SUCCESS_RESULT);
+            successCounter = counter;
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the counter of cancelled subscriptions, creating it if needed.
+     *
+     * @return counter
+     */
+    public Counter cancellation() {
+        Counter counter = cancellationCounter;
+        if (counter == null) {
+            counter = counterFactory.apply(NO_EXCEPTION_TAG_VALUE, CANCELLATION_RESULT);
+            cancellationCounter = counter;
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the counter of subscriptions failed with the given exception class, creating it if needed.
+     *
+     * @param exceptionClass class of the error
+     * @return counter
+     */
+    public Counter failure(Class<? extends Throwable> exceptionClass) {
+        Counter counter = failureCounters.get(exceptionClass);
+        if (counter == null) {
+            counter = failureCounters.computeIfAbsent(exceptionClass,
+                    key -> counterFactory.apply(key.getSimpleName(), FAILURE_RESULT));
+        }
+        return counter;
+    }
+
+    @Override
+    public long startTime() {
+        // counting does not need time
+        return 0;
+    }
+
+    @Override
+    public void onSuccess(long startTime) {
+        try {
+            success().increment();
+        } catch (Exception e) {
+            // ignoring on purpose: metering must not break the pipeline
+        }
+    }
+
+    @Override
+    public void onError(long startTime, Throwable error) {
+        try {
+            failure(error.getClass()).increment();
+        } catch (Exception e) {
+            // ignoring on purpose: metering must not break the pipeline
+        }
+    }
+
+    @Override
+    public void onCancel(long startTime) {
+        try {
+            cancellation().increment();
+        } catch (Exception e) {
+            // ignoring on purpose: metering must not break the pipeline
+        }
+    }
+}
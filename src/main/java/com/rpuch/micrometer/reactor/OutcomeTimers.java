@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Timers of one metric split by the outcome of the timed subscriptions, which is told by the value of
+ * the {@code exception} tag: {@value #NO_EXCEPTION_TAG_VALUE} for a success, {@value #CANCELLATION_TAG_VALUE}
+ * for a cancellation, and the simple name of the exception (or of its cause, if it has one) for a failure.
+ * <p>
+ * Each timer is created on its first use and kept: the success and cancellation timers in fields, the failure
+ * ones in a map keyed by the exception tag value. As a {@link MeteringListener}, it records the duration of each
+ * subscription to the timer matching its outcome, so a single instance can meter any number of subscriptions
+ * without allocating anything per subscription.
+ *
+ * @author Roman Puchkovskiy
+ * @see ReactorMetrics#timed(io.micrometer.core.instrument.MeterRegistry, String, Iterable)
+ */
+@NonNullApi
+public final class OutcomeTimers implements MeteringListener {
+    /**
+     * Value of the exception tag of successful subscriptions.
+     */
+    public static final String NO_EXCEPTION_TAG_VALUE = "none";
+    /**
+     * Value of the exception tag of cancelled subscriptions.
+     */
+    public static final String CANCELLATION_TAG_VALUE = "cancellation";
+
+    private final Clock clock;
+    private final Function<String, Timer> timerFactory;
+
+    @Nullable
+    private volatile Timer successTimer;
+    @Nullable
+    private volatile Timer cancellationTimer;
+    private final ConcurrentMap<String, Timer> failureTimers = new ConcurrentHashMap<>();
+
+    private OutcomeTimers(Clock clock, Function<String, Timer> timerFactory) {
+        this.clock = clock;
+        this.timerFactory = timerFactory;
+    }
+
+    /**
+     * Creates timers resolved on first use.
+     *
+     * @param clock        clock to measure durations with
+     * @param timerFactory creates (or looks up) the timer for an exception tag value
+     * @return timers
+     */
+    public static OutcomeTimers create(Clock clock, Function<String, Timer> timerFactory) {
+        return new OutcomeTimers(clock, timerFactory);
+    }
+
+    /**
+     * Returns the timer for the given exception tag value, creating it if it is not known yet.
+     *
+     * @param exceptionTag exception tag value
+     * @return timer
+     */
+    public Timer timer(String exceptionTag) {
+        switch (exceptionTag) {
+            case NO_EXCEPTION_TAG_VALUE:
+                Timer success = successTimer;
+                if (success == null) {
+                    success = timerFactory.apply(exceptionTag);
+                    successTimer = success;
+                }
+                return success;
+            case CANCELLATION_TAG_VALUE:
+                Timer cancellation = cancellationTimer;
+                if (cancellation == null) {
+                    cancellation = timerFactory.apply(exceptionTag);
+                    cancellationTimer = cancellation;
+                }
+                return cancellation;
+            default:
+                Timer failure = failureTimers.get(exceptionTag);
+                if (failure == null) {
+                    failure = failureTimers.computeIfAbsent(exceptionTag, timerFactory);
+                }
+                return failure;
+        }
+    }
+
+    /**
+     * Returns the exception tag value of a failure: the simple name of the class of its cause if it has one,
+     * and of the class of the error itself otherwise.
+     *
+     * @param error the error
+     * @return exception tag value
+     */
+    public static String exceptionTag(Throwable error) {
+        Throwable cause = error.getCause();
+        return cause != null ? cause.getClass().getSimpleName() : error.getClass().getSimpleName();
+    }
+
+    @Override
+    public long startTime() {
+        return clock.monotonicTime();
+    }
+
+    @Override
+    public void onSuccess(long startTime) {
+        record(NO_EXCEPTION_TAG_VALUE, startTime);
+    }
+
+    @Override
+    public void onError(long startTime, Throwable error) {
+        record(exceptionTag(error), startTime);
+    }
+
+    @Override
+    public void onCancel(long startTime) {
+        record(CANCELLATION_TAG_VALUE, startTime);
+    }
+
+    private void record(String exceptionTag, long startTime) {
+        try {
+            timer(exceptionTag).record(clock.monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            // ignoring on purpose: metering must not break the pipeline
+        }
+    }
+}
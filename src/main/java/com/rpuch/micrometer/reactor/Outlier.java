@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A subscription captured by an {@link OutlierRecorder} because it took longer than its threshold.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class Outlier {
+    private final String method;
+    private final long durationNanos;
+    private final SignalType signal;
+    @Nullable
+    private final String error;
+    private final String thread;
+    private final Instant timestamp;
+    private final Map<Object, Object> context;
+    @Nullable
+    private final StackTraceElement[] assemblyTrace;
+
+    /**
+     * Creates a capture.
+     *
+     * @param method        the metered method (or pipeline)
+     * @param durationNanos duration of the subscription in nanoseconds
+     * @param signal        how the subscription ended: {@link SignalType#ON_COMPLETE},
+     *                      {@link SignalType#ON_ERROR} or {@link SignalType#CANCEL}
+     * @param error         class name of the error, if the subscription failed
+     * @param thread        name of the thread that ended the subscription
+     * @param timestamp     when the subscription ended
+     * @param context       the captured context values
+     * @param assemblyTrace where the subscription was set up, if captured
+     */
+    public Outlier(String method, long durationNanos, SignalType signal, @Nullable String error, String thread,
+            Instant timestamp, Map<Object, Object> context, @Nullable StackTraceElement[] assemblyTrace) {
+        this.method = method;
+        this.durationNanos = durationNanos;
+        this.signal = signal;
+        this.error = error;
+        this.thread = thread;
+        this.timestamp = timestamp;
+        this.context = Collections.unmodifiableMap(context);
+        this.assemblyTrace = assemblyTrace;
+    }
+
+    /**
+     * Returns the metered method (or pipeline).
+     *
+     * @return method
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * Returns how long the subscription took.
+     *
+     * @return duration
+     */
+    public Duration duration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    /**
+     * Returns how the subscription ended: {@link SignalType#ON_COMPLETE}, {@link SignalType#ON_ERROR} or
+     * {@link SignalType#CANCEL}.
+     *
+     * @return terminal signal
+     */
+    public SignalType signal() {
+        return signal;
+    }
+
+    /**
+     * Returns the class name of the error the subscription failed with.
+     *
+     * @return error class name, or {@code null} if the subscription did not fail
+     */
+    @Nullable
+    public String error() {
+        return error;
+    }
+
+    /**
+     * Returns the name of the thread that ended the subscription.
+     *
+     * @return thread name
+     */
+    public String thread() {
+        return thread;
+    }
+
+    /**
+     * Returns when the subscription ended.
+     *
+     * @return end time
+     */
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the values of the context keys configured on the recorder that were present in the context of
+     * the subscription.
+     *
+     * @return context values by keys
+     */
+    public Map<Object, Object> context() {
+        return context;
+    }
+
+    /**
+     * Returns the stack trace of the place where the subscription was set up, if the recorder captures it.
+     *
+     * @return assembly trace, or an empty list
+     */
+    public List<StackTraceElement> assemblyTrace() {
+        return assemblyTrace == null ? Collections.emptyList() : Collections.unmodifiableList(
+                Arrays.asList(assemblyTrace));
+    }
+
+    @Override
+    public String toString() {
+        return "Outlier{" + method + " took " + duration() + ", " + signal + (error != null ? " " + error : "")
+                + " on " + thread + " at " + timestamp + ", context=" + context + '}';
+    }
+}
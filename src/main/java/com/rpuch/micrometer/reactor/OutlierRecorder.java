@@ -0,0 +1,328 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Captures the subscriptions that take longer than a threshold, so that the calls behind a worse latency
+ * percentile can be looked at. Captures go to a fixed-size ring buffer (the newest ones overwrite the oldest ones),
+ * written without locks and read with {@link #outliers()}.
+ * <p>
+ * Each metered method gets a {@link Threshold} of its own. The threshold is either fixed, or adaptive: it starts at
+ * a minimum, doubles at the end of each second with more captures than the target rate, and halves (down to
+ * the minimum) at the end of each second without captures, so each method produces about the target rate of
+ * captures whatever its latency. Checking a subscription that is not an outlier costs a comparison, plus another one
+ * of the time for an adaptive threshold.
+ * <p>
+ * A capture may include values of selected context keys and the stack trace of the place where the subscription was
+ * set up. The latter means taking a stack trace for every subscription, so it is only meant for debugging.
+ *
+ * @author Roman Puchkovskiy
+ * @see Outlier
+ */
+@NonNullApi
+public final class OutlierRecorder {
+    private static final long ADJUSTMENT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long thresholdNanos;
+    private final boolean adaptive;
+    private final int targetPerSecond;
+    private final Object[] contextKeys;
+    private final boolean captureAssemblyTrace;
+
+    private final AtomicReferenceArray<Outlier> buffer;
+    private final int mask;
+    private final AtomicLong written = new AtomicLong();
+
+    private OutlierRecorder(Builder builder) {
+        this.thresholdNanos = builder.threshold.toNanos();
+        this.adaptive = builder.adaptive;
+        this.targetPerSecond = builder.targetPerSecond;
+        this.contextKeys = builder.contextKeys.toArray();
+        this.captureAssemblyTrace = builder.captureAssemblyTrace;
+        int capacity = builder.capacity == 1 ? 1 : Integer.highestOneBit(builder.capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Starts building an {@code OutlierRecorder}.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates the threshold of a metered method.
+     *
+     * @return new threshold
+     */
+    public Threshold newThreshold() {
+        return new Threshold();
+    }
+
+    /**
+     * Whether the stack trace of the place where a subscription is set up should be taken, so that it can be
+     * passed to {@link #record(Outlier)}.
+     *
+     * @return {@code true} if assembly traces are captured
+     */
+    public boolean capturesAssemblyTrace() {
+        return captureAssemblyTrace;
+    }
+
+    /**
+     * Whether outliers include context values, so the context of subscriptions should be kept.
+     *
+     * @return {@code true} if context keys are configured
+     */
+    public boolean capturesContext() {
+        return contextKeys.length > 0;
+    }
+
+    /**
+     * Picks the values of the configured context keys from the given context.
+     *
+     * @param context context of the subscription, or {@code null} if it is not known
+     * @return context values by keys
+     */
+    public Map<Object, Object> contextValues(@Nullable ContextView context) {
+        if (context == null || contextKeys.length == 0) {
+            return Collections.emptyMap();
+        }
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object key : contextKeys) {
+            Object value = context.getOrDefault(key, null);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds a capture to the ring buffer, overwriting the oldest one if the buffer is full.
+     *
+     * @param outlier the capture
+     */
+    public void record(Outlier outlier) {
+        long index = written.getAndIncrement();
+        buffer.set((int) index & mask, outlier);
+    }
+
+    /**
+     * Returns the captures currently in the ring buffer, the oldest first. Captures written concurrently with
+     * this call may be missing or out of order.
+     *
+     * @return captures
+     */
+    public List<Outlier> outliers() {
+        long end = written.get();
+        long start = Math.max(0, end - buffer.length());
+        List<Outlier> outliers = new ArrayList<>((int) (end - start));
+        for (long index = start; index < end; index++) {
+            Outlier outlier = buffer.get((int) index & mask);
+            if (outlier != null) {
+                outliers.add(outlier);
+            }
+        }
+        return outliers;
+    }
+
+    /**
+     * Returns the number of captures made so far, including the ones overwritten since.
+     *
+     * @return number of captures
+     */
+    public long captured() {
+        return written.get();
+    }
+
+    /**
+     * The threshold of a single metered method.
+     */
+    public final class Threshold {
+        private volatile long currentNanos = thresholdNanos;
+        private volatile long nextAdjustment = Long.MIN_VALUE;
+        private final AtomicInteger capturedSinceAdjustment = new AtomicInteger();
+
+        private Threshold() {
+        }
+
+        /**
+         * Tells whether a subscription is an outlier.
+         *
+         * @param durationNanos duration of the subscription in nanoseconds
+         * @param nowNanos      current monotonic time in nanoseconds
+         * @return {@code true} if it should be captured
+         */
+        public boolean isExceeded(long durationNanos, long nowNanos) {
+            if (durationNanos > currentNanos) {
+                if (adaptive) {
+                    capturedSinceAdjustment.incrementAndGet();
+                    maybeAdjust(nowNanos);
+                }
+                return true;
+            }
+            if (adaptive && nowNanos - nextAdjustment > 0) {
+                maybeAdjust(nowNanos);
+            }
+            return false;
+        }
+
+        /**
+         * Returns the current threshold.
+         *
+         * @return threshold
+         */
+        public Duration current() {
+            return Duration.ofNanos(currentNanos);
+        }
+
+        private synchronized void maybeAdjust(long nowNanos) {
+            long next = nextAdjustment;
+            if (next == Long.MIN_VALUE) {
+                nextAdjustment = nowNanos + ADJUSTMENT_PERIOD_NANOS;
+                return;
+            }
+            if (nowNanos - next <= 0) {
+                return;
+            }
+            int captured = capturedSinceAdjustment.getAndSet(0);
+            long current = currentNanos;
+            if (captured > targetPerSecond && current < Long.MAX_VALUE / 2) {
+                currentNanos = current * 2;
+            } else if (captured == 0) {
+                currentNanos = Math.max(thresholdNanos, current / 2);
+            }
+            nextAdjustment = nowNanos + ADJUSTMENT_PERIOD_NANOS;
+        }
+    }
+
+    /**
+     * Builder of {@link OutlierRecorder}.
+     */
+    public static class Builder {
+        private Duration threshold = Duration.ofSeconds(1);
+        private boolean adaptive;
+        private int targetPerSecond = 1;
+        private int capacity = 256;
+        private final List<Object> contextKeys = new ArrayList<>();
+        private boolean captureAssemblyTrace;
+
+        private Builder() {
+        }
+
+        /**
+         * Captures the subscriptions taking longer than the given threshold. Defaults to one second.
+         *
+         * @param threshold fixed threshold
+         * @return this builder
+         */
+        public Builder threshold(Duration threshold) {
+            if (threshold.isNegative()) {
+                throw new IllegalArgumentException("threshold must not be negative, but it is " + threshold);
+            }
+            this.threshold = threshold;
+            this.adaptive = false;
+            return this;
+        }
+
+        /**
+         * Makes the threshold of each method adapt to its latency, so that about the given number of its
+         * subscriptions is captured per second.
+         *
+         * @param minimum         the threshold never goes below it
+         * @param targetPerSecond how many captures per second and method to aim at
+         * @return this builder
+         */
+        public Builder adaptiveThreshold(Duration minimum, int targetPerSecond) {
+            if (minimum.isNegative() || minimum.isZero()) {
+                throw new IllegalArgumentException("minimum must be positive, but it is " + minimum);
+            }
+            if (targetPerSecond < 1) {
+                throw new IllegalArgumentException("targetPerSecond must be positive, but it is " + targetPerSecond);
+            }
+            this.threshold = minimum;
+            this.adaptive = true;
+            this.targetPerSecond = targetPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets how many captures the ring buffer holds; rounded up to a power of two. Defaults to 256.
+         *
+         * @param capacity ring buffer capacity
+         * @return this builder
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 1 || capacity > 1 << 20) {
+                throw new IllegalArgumentException("capacity must be between 1 and 2^20, but it is " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Adds context keys which values are included in the captures.
+         *
+         * @param keys context keys
+         * @return this builder
+         */
+        public Builder contextKeys(Object... keys) {
+            contextKeys.addAll(Arrays.asList(keys));
+            return this;
+        }
+
+        /**
+         * Makes the captures include the stack trace of the place where the subscription was set up. This takes
+         * a stack trace for every subscription, so it is only meant for debugging. Disabled by default.
+         *
+         * @param captureAssemblyTrace whether to capture assembly traces
+         * @return this builder
+         */
+        public Builder captureAssemblyTrace(boolean captureAssemblyTrace) {
+            this.captureAssemblyTrace = captureAssemblyTrace;
+            return this;
+        }
+
+        /**
+         * Builds the recorder.
+         *
+         * @return new recorder
+         */
+        public OutlierRecorder build() {
+            return new OutlierRecorder(this);
+        }
+    }
+}
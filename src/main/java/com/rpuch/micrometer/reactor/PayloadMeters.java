@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+
+/**
+ * Meters the payload of {@link Flux} subscriptions emitting chunks of data, like {@code byte[]},
+ * {@link java.nio.ByteBuffer} or {@link CharSequence}: the bytes emitted per subscription (a distribution summary)
+ * and the emitted bytes (a counter, which rate is the throughput). The size of each element is told by
+ * a {@link PayloadSize}.
+ * <p>
+ * The bytes are summed in a primitive field of the subscriber, so nothing is allocated per element. The counter is
+ * incremented in batches of elements, and its last batch is added when the subscription terminates.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class PayloadMeters {
+    /**
+     * Suffix of the name of the summary of bytes emitted per subscription.
+     */
+    public static final String PAYLOAD_SUFFIX = ".payload";
+    /**
+     * Suffix of the name of the counter of emitted bytes.
+     */
+    public static final String BYTES_SUFFIX = ".payload.bytes";
+
+    private static final int BATCH_MASK = 63;
+
+    private final DistributionSummary bytesPerSubscription;
+    private final Counter emittedBytes;
+    private final PayloadSize payloadSize;
+
+    private PayloadMeters(DistributionSummary bytesPerSubscription, Counter emittedBytes, PayloadSize payloadSize) {
+        this.bytesPerSubscription = bytesPerSubscription;
+        this.emittedBytes = emittedBytes;
+        this.payloadSize = payloadSize;
+    }
+
+    /**
+     * Registers the payload meters.
+     *
+     * @param registry    where to register the meters
+     * @param metricName  name the meter names are derived from by adding suffixes
+     * @param tags        tags of the meters
+     * @param payloadSize tells the size of the elements
+     * @return registered meters
+     */
+    public static PayloadMeters register(MeterRegistry registry, String metricName, Iterable<Tag> tags,
+            PayloadSize payloadSize) {
+        return new PayloadMeters(
+                DistributionSummary.builder(metricName + PAYLOAD_SUFFIX)
+                        .description("Bytes emitted per subscription")
+                        .baseUnit(BaseUnits.BYTES)
+                        .tags(tags)
+                        .register(registry),
+                Counter.builder(metricName + BYTES_SUFFIX)
+                        .description("Emitted bytes")
+                        .baseUnit(BaseUnits.BYTES)
+                        .tags(tags)
+                        .register(registry),
+                payloadSize);
+    }
+
+    /**
+     * Meters the payload of each subscription to the given {@link Flux}.
+     *
+     * @param flux flux to meter
+     * @param <T>  element type
+     * @return metered flux
+     */
+    public <T> Flux<T> meter(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, PayloadMeteringSubscriber::new);
+    }
+
+    private class PayloadMeteringSubscriber<T> extends SignalObservingSubscriber<T> {
+        private long count;
+        private long bytes;
+        private long notFlushedBytes;
+
+        PayloadMeteringSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnNext(T t) {
+            long size;
+            try {
+                size = payloadSize.of(t);
+            } catch (Exception e) {
+                // ignoring on purpose: a failing extractor must not break the pipeline, the element counts as empty
+                size = 0;
+            }
+            bytes += size;
+            notFlushedBytes += size;
+            if ((++count & BATCH_MASK) == 0) {
+                flushEmittedBytes();
+            }
+        }
+
+        @Override
+        void hookOnTerminate() {
+            // on cancellation, this may run on another thread than onNext() and miss the latest elements
+            try {
+                bytesPerSubscription.record(bytes);
+            } catch (Exception e) {
+                // ignoring on purpose: metering must not break the pipeline
+            }
+            if (notFlushedBytes > 0) {
+                flushEmittedBytes();
+            }
+        }
+
+        private void flushEmittedBytes() {
+            try {
+                emittedBytes.increment(notFlushedBytes);
+            } catch (Exception e) {
+                // ignoring on purpose: metering must not break the pipeline
+            }
+            notFlushedBytes = 0;
+        }
+    }
+}
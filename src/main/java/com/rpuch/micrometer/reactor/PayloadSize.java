@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tells the size of the elements metered by {@link PayloadMeters}. It holds size extractors for element types;
+ * the extractor of each concrete element class is resolved once (the extractor of the last added type the class
+ * is assignable to) and cached in a {@link ClassValue}, so sizing an element is a lookup and a call. Elements of
+ * types without an extractor have a size of {@code 0}.
+ * <p>
+ * The {@link #defaults() default} sizes are:
+ * <ul>
+ *     <li>{@code byte[]}: its length;</li>
+ *     <li>{@link ByteBuffer}: its remaining bytes;</li>
+ *     <li>{@link CharSequence}: its size in UTF-8, counted without encoding it.</li>
+ * </ul>
+ * Instances are immutable: {@link #with(Class, ToLongFunction)} returns a new instance.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class PayloadSize {
+    private static final PayloadSize DEFAULTS = new PayloadSize(Collections.emptyList())
+            .with(byte[].class, bytes -> bytes.length)
+            .with(ByteBuffer.class, ByteBuffer::remaining)
+            .with(CharSequence.class, PayloadSize::utf8Length);
+
+    private final List<TypeSize<?>> typeSizes;
+
+    private final ClassValue<ToLongFunction<Object>> sizesByClass = new ClassValue<ToLongFunction<Object>>() {
+        @Override
+        protected ToLongFunction<Object> computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    private PayloadSize(List<TypeSize<?>> typeSizes) {
+        this.typeSizes = typeSizes;
+    }
+
+    /**
+     * Returns the sizes of {@code byte[]}, {@link ByteBuffer} and {@link CharSequence} elements.
+     *
+     * @return default sizes
+     */
+    public static PayloadSize defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these sizes that also knows the size of elements of the given type. The new type takes
+     * precedence over the types known before.
+     *
+     * @param type type of the elements
+     * @param size returns the size of an element in bytes
+     * @param <E>  type of the elements
+     * @return new sizes
+     */
+    public <E> PayloadSize with(Class<E> type, ToLongFunction<? super E> size) {
+        List<TypeSize<?>> newTypeSizes = new ArrayList<>(typeSizes.size() + 1);
+        newTypeSizes.add(new TypeSize<>(type, size));
+        newTypeSizes.addAll(typeSizes);
+        return new PayloadSize(newTypeSizes);
+    }
+
+    /**
+     * Returns the size of the given element.
+     *
+     * @param element the element
+     * @return its size in bytes, or {@code 0} if its type is unknown
+     */
+    public long of(Object element) {
+        return sizesByClass.get(element.getClass()).applyAsLong(element);
+    }
+
+    private static long utf8Length(CharSequence chars) {
+        int length = chars.length();
+        long size = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = chars.charAt(i);
+            if (ch < 0x80) {
+                size++;
+            } else if (ch < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                // an unpaired surrogate is encoded as '?', like String.getBytes() does
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    private ToLongFunction<Object> resolve(Class<?> type) {
+        for (TypeSize<?> typeSize : typeSizes) {
+            if (typeSize.type.isAssignableFrom(type)) {
+                return typeSize::of;
+            }
+        }
+        return element -> 0;
+    }
+
+    private static final class TypeSize<E> {
+        final Class<E> type;
+        final ToLongFunction<? super E> size;
+
+        TypeSize(Class<E> type, ToLongFunction<? super E> size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        long of(Object element) {
+            return size.applyAsLong(type.cast(element));
+        }
+    }
+}
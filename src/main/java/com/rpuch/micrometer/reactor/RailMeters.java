@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters each rail of {@link ParallelFlux} subscriptions separately: the elements emitted by a rail (a counter)
+ * and the time from subscription to the termination of a rail (a timer). The meters are tagged with the index
+ * of their rail, so comparing them shows how balanced the rails are, and rails that take long although they emit
+ * as many elements as the others hint at a saturated scheduler.
+ * <p>
+ * Elements are counted in a primitive field of the rail subscriber, and the meters are updated once per rail,
+ * when it terminates.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class RailMeters {
+    /**
+     * Suffix of the name of the counter of elements emitted by a rail.
+     */
+    public static final String ELEMENTS_SUFFIX = ".rail.elements";
+    /**
+     * Suffix of the name of the timer of rail durations.
+     */
+    public static final String DURATION_SUFFIX = ".rail.duration";
+    /**
+     * Key of the tag holding the rail index.
+     */
+    public static final String RAIL_TAG = "rail";
+
+    private final Counter[] elements;
+    private final Timer[] durations;
+    private final Clock clock;
+
+    private RailMeters(Counter[] elements, Timer[] durations, Clock clock) {
+        this.elements = elements;
+        this.durations = durations;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers the meters of each rail.
+     *
+     * @param registry    where to register the meters
+     * @param metricName  name the meter names are derived from by adding suffixes
+     * @param tags        tags of the meters, the rail tag is added to them
+     * @param parallelism number of rails
+     * @return registered meters
+     */
+    public static RailMeters register(MeterRegistry registry, String metricName, Iterable<Tag> tags,
+            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, but it is " + parallelism);
+        }
+        Counter[] elements = new Counter[parallelism];
+        Timer[] durations = new Timer[parallelism];
+        for (int rail = 0; rail < parallelism; rail++) {
+            Tags railTags = Tags.of(tags).and(RAIL_TAG, Integer.toString(rail));
+            elements[rail] = Counter.builder(metricName + ELEMENTS_SUFFIX)
+                    .description("Elements emitted by a rail")
+                    .tags(railTags)
+                    .register(registry);
+            durations[rail] = Timer.builder(metricName + DURATION_SUFFIX)
+                    .description("Time from subscription to termination of a rail")
+                    .tags(railTags)
+                    .register(registry);
+        }
+        return new RailMeters(elements, durations, registry.config().clock());
+    }
+
+    /**
+     * Returns the number of rails these meters are registered for.
+     *
+     * @return number of rails
+     */
+    public int parallelism() {
+        return elements.length;
+    }
+
+    /**
+     * Meters the rails of each subscription to the given {@link ParallelFlux}.
+     *
+     * @param source parallel flux to meter, must have the parallelism these meters are registered for
+     * @param <T>    element type
+     * @return metered parallel flux
+     */
+    public <T> ParallelFlux<T> meter(ParallelFlux<T> source) {
+        if (source.parallelism() != parallelism()) {
+            throw new IllegalArgumentException("Meters are registered for " + parallelism()
+                    + " rails, but the source has " + source.parallelism());
+        }
+        return new RailMeteredParallelFlux<>(source);
+    }
+
+    private final class RailMeteredParallelFlux<T> extends ParallelFlux<T> implements Scannable {
+        private final ParallelFlux<T> source;
+
+        RailMeteredParallelFlux(ParallelFlux<T> source) {
+            this.source = source;
+        }
+
+        @Override
+        public int parallelism() {
+            return source.parallelism();
+        }
+
+        @Override
+        public int getPrefetch() {
+            return source.getPrefetch();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void subscribe(CoreSubscriber<? super T>[] subscribers) {
+            if (!validate(subscribers)) {
+                return;
+            }
+
+            CoreSubscriber<T>[] rails = new CoreSubscriber[subscribers.length];
+            for (int i = 0; i < subscribers.length; i++) {
+                rails[i] = new RailSubscriber<>(subscribers[i], i);
+            }
+            source.subscribe(rails);
+        }
+
+        @Override
+        @Nullable
+        public Object scanUnsafe(Attr key) {
+            if (key == Attr.PARENT) {
+                return source;
+            }
+            if (key == Attr.PREFETCH) {
+                return getPrefetch();
+            }
+            if (key == Attr.RUN_STYLE) {
+                return Attr.RunStyle.SYNC;
+            }
+            return null;
+        }
+    }
+
+    private class RailSubscriber<T> extends SignalObservingSubscriber<T> {
+        private final int rail;
+        private long startTime;
+        private long count;
+
+        RailSubscriber(CoreSubscriber<? super T> actual, int rail) {
+            super(actual);
+            this.rail = rail;
+        }
+
+        @Override
+        void hookOnSubscribe() {
+            startTime = clock.monotonicTime();
+        }
+
+        @Override
+        void hookOnNext(T t) {
+            count++;
+        }
+
+        @Override
+        void hookOnTerminate() {
+            durations[rail].record(clock.monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+            // on cancellation, this may run on another thread than onNext() and miss the latest elements
+            long total = count;
+            if (total > 0) {
+                elements[rail].increment(total);
+            }
+        }
+    }
+}
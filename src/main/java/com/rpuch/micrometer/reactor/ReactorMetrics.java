@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.NonNullApi;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+
+/**
+ * Transformers metering {@link Mono} and {@link Flux} pipelines the way {@code ReactorTimedAspect} and
+ * {@code ReactorCountedAspect} meter annotated methods, but without AOP: the meters are resolved when
+ * the transformer is created, so it is meant to be created once and reused.
+ * <pre>
+ * private final Function&lt;Publisher&lt;User&gt;, Publisher&lt;User&gt;&gt; timed =
+ *         ReactorMetrics.timed(registry, "user.lookup", Tags.of("source", "db"));
+ *
+ * Mono&lt;User&gt; findUser(String id) {
+ *     return repository.findById(id).transform(timed);
+ * }
+ * </pre>
+ * A transformer applied to a {@link Mono} returns a {@link Mono}, and applied to any other {@link Publisher},
+ * a {@link Flux}.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class ReactorMetrics {
+    /**
+     * Key of the tag holding the exception class name (or a placeholder if there was no exception).
+     */
+    public static final String EXCEPTION_TAG = "exception";
+    /**
+     * Key of the tag holding the result of a counted subscription.
+     */
+    public static final String RESULT_TAG = "result";
+
+    private ReactorMetrics() {
+    }
+
+    /**
+     * Returns a transformer timing each subscription with a timer tagged by the outcome of the subscription,
+     * see {@link OutcomeTimers}. The success and cancellation timers are registered right away.
+     *
+     * @param registry where to register the timers
+     * @param name     name of the timers
+     * @param tags     tags of the timers, the exception tag is added to them
+     * @param <T>      element type
+     * @return transformer
+     */
+    public static <T> Function<Publisher<T>, Publisher<T>> timed(MeterRegistry registry, String name,
+            Iterable<Tag> tags) {
+        Tags fixedTags = Tags.of(tags);
+        OutcomeTimers timers = OutcomeTimers.create(registry.config().clock(),
+                exceptionTag -> Timer.builder(name)
+                        .tags(fixedTags.and(EXCEPTION_TAG, exceptionTag))
+                        .register(registry));
+        timers.timer(OutcomeTimers.NO_EXCEPTION_TAG_VALUE);
+        timers.timer(OutcomeTimers.CANCELLATION_TAG_VALUE);
+        return metered(timers);
+    }
+
+    /**
+     * Returns a transformer counting subscriptions with counters tagged by the outcome of each subscription,
+     * see {@link OutcomeCounters}. The success and cancellation counters are registered right away.
+     *
+     * @param registry where to register the counters
+     * @param name     name of the counters
+     * @param tags     tags of the counters, the result and exception tags are added to them
+     * @param <T>      element type
+     * @return transformer
+     */
+    public static <T> Function<Publisher<T>, Publisher<T>> counted(MeterRegistry registry, String name,
+            Iterable<Tag> tags) {
+        Tags fixedTags = Tags.of(tags);
+        OutcomeCounters counters = OutcomeCounters.create((exceptionTag, result) -> Counter.builder(name)
+                .tags(fixedTags.and(RESULT_TAG, result).and(EXCEPTION_TAG, exceptionTag))
+                .register(registry));
+        counters.success();
+        counters.cancellation();
+        return metered(counters);
+    }
+
+    /**
+     * Returns a transformer marking the boundary of a logical call, to be applied downstream of the retries of
+     * the call: each subscription to the transformed publisher is a logical call, and each subscription within it
+     * to a publisher tracked by {@link AttemptMeters} is counted as one of its attempts.
+     *
+     * @param <T> element type
+     * @return transformer
+     * @see AttemptMeters
+     */
+    public static <T> Function<Publisher<T>, Publisher<T>> logicalCall() {
+        return source -> {
+            if (source instanceof Mono) {
+                Mono<T> mono = (Mono<T>) source;
+                return Mono.defer(() -> {
+                    LogicalCall call = new LogicalCall();
+                    return MeteredMono.wrap(mono.contextWrite(Context.of(LogicalCall.class, call)), call);
+                });
+            }
+            Flux<T> flux = Flux.from(source);
+            return Flux.defer(() -> {
+                LogicalCall call = new LogicalCall();
+                return MeteredFlux.wrap(flux.contextWrite(Context.of(LogicalCall.class, call)), call);
+            });
+        };
+    }
+
+    /**
+     * Returns a transformer reporting each subscription to the given listener, through {@link MeteredMono} for
+     * a {@link Mono} and through {@link MeteredFlux} for any other {@link Publisher}.
+     *
+     * @param listener listener to report to
+     * @param <T>      element type
+     * @return transformer
+     */
+    public static <T> Function<Publisher<T>, Publisher<T>> metered(MeteringListener listener) {
+        return source -> {
+            if (source instanceof Mono) {
+                return MeteredMono.wrap((Mono<T>) source, listener);
+            }
+            return MeteredFlux.wrap(Flux.from(source), listener);
+        };
+    }
+}
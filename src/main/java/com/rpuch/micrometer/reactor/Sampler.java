@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+/**
+ * Decides whether an invocation should be metered. A sampler is created per metered method
+ * by {@link Sampling#newSampler(io.micrometer.core.instrument.Clock)} and must be thread-safe.
+ *
+ * @author Roman Puchkovskiy
+ * @see Sampling
+ */
+@FunctionalInterface
+public interface Sampler {
+    /**
+     * Decides whether the current invocation should be metered.
+     *
+     * @return {@code 0} if the invocation should not be metered; otherwise, the number of invocations
+     * the metered one stands for (to scale counts by)
+     */
+    double sample();
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.lang.NonNullApi;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling policy: describes which share of invocations of a method is metered. Sampling is meant for very hot
+ * methods, where metering each invocation costs noticeable CPU. Custom policies may be implemented by extending
+ * this class.
+ *
+ * @author Roman Puchkovskiy
+ * @see Sampler
+ * @see com.rpuch.micrometer.reactor.annotation.Sampled
+ */
+@NonNullApi
+public abstract class Sampling {
+    private static final Sampling ALWAYS = new Sampling() {
+        @Override
+        public Sampler newSampler(Clock clock) {
+            return () -> 1;
+        }
+    };
+
+    protected Sampling() {
+    }
+
+    /**
+     * Returns a policy metering every invocation.
+     *
+     * @return sampling policy
+     */
+    public static Sampling always() {
+        return ALWAYS;
+    }
+
+    /**
+     * Returns a policy metering each invocation with probability {@code 1/n}.
+     *
+     * @param n how many invocations one metered invocation stands for on average
+     * @return sampling policy
+     */
+    public static Sampling oneIn(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive, but it is " + n);
+        }
+        if (n == 1) {
+            return always();
+        }
+        return new Sampling() {
+            @Override
+            public Sampler newSampler(Clock clock) {
+                return () -> ThreadLocalRandom.current().nextInt(n) == 0 ? n : 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a policy metering invocations with a probability adapted each second, so that about
+     * {@code maxPerSecond} invocations are metered per second. While a method is invoked less often than that,
+     * each invocation is metered.
+     *
+     * @param maxPerSecond target number of metered invocations per second
+     * @return sampling policy
+     */
+    public static Sampling adaptive(double maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new IllegalArgumentException("maxPerSecond must be positive, but it is " + maxPerSecond);
+        }
+        return new Sampling() {
+            @Override
+            public Sampler newSampler(Clock clock) {
+                return new AdaptiveSampler(clock, maxPerSecond);
+            }
+        };
+    }
+
+    /**
+     * Creates a sampler for a single method.
+     *
+     * @param clock clock to use to measure invocation rates
+     * @return new sampler
+     */
+    public abstract Sampler newSampler(Clock clock);
+
+    /**
+     * Counts invocations during one-second windows and, at the end of each window, sets the sampling
+     * probability for the next one so that it meters about {@code maxPerSecond} invocations.
+     */
+    private static class AdaptiveSampler implements Sampler {
+        private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final Clock clock;
+        private final double maxPerSecond;
+        private final LongAdder invocations = new LongAdder();
+        private final AtomicLong windowEnd;
+        private volatile double probability = 1;
+
+        AdaptiveSampler(Clock clock, double maxPerSecond) {
+            this.clock = clock;
+            this.maxPerSecond = maxPerSecond;
+            this.windowEnd = new AtomicLong(clock.monotonicTime() + WINDOW_NANOS);
+        }
+
+        @Override
+        public double sample() {
+            long now = clock.monotonicTime();
+            long end = windowEnd.get();
+            if (now >= end && windowEnd.compareAndSet(end, now + WINDOW_NANOS)) {
+                adaptProbability(now - end + WINDOW_NANOS);
+            }
+
+            invocations.increment();
+
+            double currentProbability = probability;
+            if (currentProbability >= 1) {
+                return 1;
+            }
+            return ThreadLocalRandom.current().nextDouble() < currentProbability ? 1 / currentProbability : 0;
+        }
+
+        private void adaptProbability(long windowNanos) {
+            double perSecond = invocations.sumThenReset() * (double) WINDOW_NANOS / windowNanos;
+            probability = perSecond <= maxPerSecond ? 1 : maxPerSecond / perSecond;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+
+import java.util.function.Function;
+
+/**
+ * A {@link Flux} adding a {@link SignalObservingSubscriber} to each subscription. It is not fuseable, so fusion
+ * is not negotiated across it.
+ *
+ * @param <T> element type
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+final class SignalObservingFlux<T> extends FluxOperator<T, T> {
+    private final Function<CoreSubscriber<? super T>, SignalObservingSubscriber<T>> subscriberFactory;
+
+    static <T> Flux<T> observe(Flux<? extends T> source,
+            Function<CoreSubscriber<? super T>, SignalObservingSubscriber<T>> subscriberFactory) {
+        return onAssembly(new SignalObservingFlux<>(source, subscriberFactory));
+    }
+
+    private SignalObservingFlux(Flux<? extends T> source,
+            Function<CoreSubscriber<? super T>, SignalObservingSubscriber<T>> subscriberFactory) {
+        super(source);
+        this.subscriberFactory = subscriberFactory;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        source.subscribe(subscriberFactory.apply(actual));
+    }
+}
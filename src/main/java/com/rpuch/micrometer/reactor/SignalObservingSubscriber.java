@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.lang.Nullable;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Base of the subscribers that observe signals of a subscription without changing them: it forwards everything
+ * and calls hooks, {@link #hookOnTerminate()} being called exactly once, on completion, error or cancellation.
+ * Fusion is not supported, so a subscriber of this kind should only be added when its metrics are wanted.
+ *
+ * @param <T> element type
+ * @author Roman Puchkovskiy
+ */
+abstract class SignalObservingSubscriber<T> implements CoreSubscriber<T>, Subscription, Scannable {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SignalObservingSubscriber> DONE =
+            AtomicIntegerFieldUpdater.newUpdater(SignalObservingSubscriber.class, "done");
+
+    final CoreSubscriber<? super T> actual;
+
+    @Nullable
+    Subscription s;
+
+    private volatile int done;
+
+    SignalObservingSubscriber(CoreSubscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    /**
+     * Called when the subscription is established, before the downstream learns about it.
+     */
+    void hookOnSubscribe() {
+    }
+
+    /**
+     * Called on each element, before it is passed downstream.
+     *
+     * @param t the element
+     */
+    void hookOnNext(T t) {
+    }
+
+    /**
+     * Called on each request, before it is passed upstream.
+     *
+     * @param n requested amount
+     */
+    void hookOnRequest(long n) {
+    }
+
+    /**
+     * Called on completion, before {@link #hookOnTerminate()}, unless the subscription has been cancelled.
+     */
+    void hookOnComplete() {
+    }
+
+    /**
+     * Called on error, before {@link #hookOnTerminate()}, unless the subscription has been cancelled.
+     *
+     * @param t the error
+     */
+    void hookOnError(Throwable t) {
+    }
+
+    /**
+     * Called on cancellation, before {@link #hookOnTerminate()}, unless the subscription has terminated.
+     */
+    void hookOnCancel() {
+    }
+
+    /**
+     * Called exactly once, when the subscription completes, fails or is cancelled.
+     */
+    void hookOnTerminate() {
+    }
+
+    @Override
+    public Context currentContext() {
+        return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(this.s, s)) {
+            this.s = s;
+            hookOnSubscribe();
+            actual.onSubscribe(this);
+        }
+    }
+
+    @Override
+    public void onNext(T t) {
+        hookOnNext(t);
+        actual.onNext(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (DONE.compareAndSet(this, 0, 1)) {
+            hookOnError(t);
+            hookOnTerminate();
+        }
+        actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        if (DONE.compareAndSet(this, 0, 1)) {
+            hookOnComplete();
+            hookOnTerminate();
+        }
+        actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+        hookOnRequest(n);
+        s.request(n);
+    }
+
+    @Override
+    public void cancel() {
+        if (DONE.compareAndSet(this, 0, 1)) {
+            hookOnCancel();
+            hookOnTerminate();
+        }
+        s.cancel();
+    }
+
+    @Override
+    @Nullable
+    public Object scanUnsafe(Attr key) {
+        if (key == Attr.PARENT) {
+            return s;
+        }
+        if (key == Attr.ACTUAL) {
+            return actual;
+        }
+        if (key == Attr.TERMINATED || key == Attr.CANCELLED) {
+            return done == 1;
+        }
+        if (key == Attr.RUN_STYLE) {
+            return Attr.RunStyle.SYNC;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped {@code long} cells shared by the striped meters: each stripe (selected by the current thread) holds a few
+ * fields in cache lines of its own, so that threads updating the cells at once rarely contend, and the fields are
+ * only combined across the stripes when read.
+ *
+ * @author Roman Puchkovskiy
+ */
+final class StripedCells {
+    /**
+     * Longs between the starts of neighbouring stripes: two cache lines, as CPUs often prefetch lines in pairs.
+     */
+    private static final int STRIDE = 16;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells;
+
+    /**
+     * Creates the cells.
+     *
+     * @param fields number of fields per stripe
+     */
+    StripedCells(int fields) {
+        if (fields < 1 || fields > STRIDE) {
+            throw new IllegalArgumentException("fields must be between 1 and " + STRIDE + ", but it is " + fields);
+        }
+        // one more stride in front keeps the first stripe away from the array header
+        cells = new AtomicLongArray((STRIPES + 1) * STRIDE);
+    }
+
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // at least twice the processors, so that threads with neighbouring ids rarely share a stripe
+        return Math.min(Integer.highestOneBit(processors * 2 - 1) << 1, 1 << 10);
+    }
+
+    /**
+     * Returns the stripe of the current thread, to be passed to the update methods.
+     *
+     * @return stripe
+     */
+    int stripe() {
+        return (((int) Thread.currentThread().getId() & (STRIPES - 1)) + 1) * STRIDE;
+    }
+
+    /**
+     * Adds to a field of a stripe.
+     *
+     * @param stripe stripe returned by {@link #stripe()}
+     * @param field  field index
+     * @param delta  value to add
+     */
+    void add(int stripe, int field, long delta) {
+        cells.addAndGet(stripe + field, delta);
+    }
+
+    /**
+     * Returns a field of a stripe.
+     *
+     * @param stripe stripe returned by {@link #stripe()}
+     * @param field  field index
+     * @return value
+     */
+    long get(int stripe, int field) {
+        return cells.get(stripe + field);
+    }
+
+    /**
+     * Raises a field of a stripe to the given value if it is lower.
+     *
+     * @param stripe stripe returned by {@link #stripe()}
+     * @param field  field index
+     * @param value  candidate value
+     */
+    void max(int stripe, int field, long value) {
+        int index = stripe + field;
+        long max = cells.get(index);
+        while (value > max && !cells.compareAndSet(index, max, value)) {
+            max = cells.get(index);
+        }
+    }
+
+    /**
+     * Returns the sum of a field over all the stripes.
+     *
+     * @param field field index
+     * @return sum
+     */
+    long sum(int field) {
+        long sum = 0;
+        for (int index = STRIDE + field; index < cells.length(); index += STRIDE) {
+            sum += cells.get(index);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of a field over all the stripes, lowering the field in each of them to the value another
+     * field of the stripe has then. Meant for fields holding the peaks of other fields.
+     *
+     * @param field      field index
+     * @param floorField index of the field to lower the field to
+     * @return sum
+     */
+    long pollSum(int field, int floorField) {
+        long sum = 0;
+        for (int stripe = STRIDE; stripe < cells.length(); stripe += STRIDE) {
+            sum += cells.getAndSet(stripe + field, 0);
+            // raising rather than setting keeps a peak reached meanwhile
+            max(stripe, field, cells.get(stripe + floorField));
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the maximum of a field over all the stripes, resetting the field to {@code 0} in each of them.
+     *
+     * @param field field index
+     * @return maximum, or {@code 0} if nothing was recorded since the last call
+     */
+    long pollMax(int field) {
+        long max = 0;
+        for (int index = STRIDE + field; index < cells.length(); index += STRIDE) {
+            max = Math.max(max, cells.getAndSet(index, 0));
+        }
+        return max;
+    }
+}
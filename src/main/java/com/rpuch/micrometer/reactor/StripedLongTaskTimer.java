@@ -0,0 +1,254 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cheaper alternative to a {@link io.micrometer.core.instrument.LongTaskTimer} for methods with very many
+ * concurrent subscriptions. A long task timer keeps each active task in a shared concurrent structure; this one
+ * only adds the task to a stripe (selected by the current thread) holding the number of active tasks and the sum
+ * of their start times, from which the total duration of the active tasks is derived when the meters are read.
+ * The age of the oldest task is estimated from a sample of the tasks: one in {@link #DEFAULT_SAMPLE_ONE_IN} (and
+ * any task started while none is sampled) is kept in a set until it ends.
+ * <p>
+ * It is published as:
+ * <ul>
+ *     <li>{@code <name>.active.tasks}: a gauge of the active tasks;</li>
+ *     <li>{@code <name>.active.duration}: a time gauge of the total duration of the active tasks;</li>
+ *     <li>{@code <name>.active.oldest}: a time gauge of the age of the oldest sampled task.</li>
+ * </ul>
+ * Start times are kept with a microsecond precision. The meters are bound to this object, so a single
+ * {@code StripedLongTaskTimer} should be used for the same name and tags.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class StripedLongTaskTimer {
+    /**
+     * Suffix of the name of the gauge of active tasks.
+     */
+    public static final String ACTIVE_TASKS_SUFFIX = ".active.tasks";
+    /**
+     * Suffix of the name of the time gauge of the total duration of active tasks.
+     */
+    public static final String DURATION_SUFFIX = ".active.duration";
+    /**
+     * Suffix of the name of the time gauge of the age of the oldest sampled task.
+     */
+    public static final String OLDEST_SUFFIX = ".active.oldest";
+    /**
+     * Default share of the tasks sampled for the age of the oldest task.
+     */
+    public static final int DEFAULT_SAMPLE_ONE_IN = 64;
+
+    private static final int ACTIVE = 0;
+    private static final int START_SUM = 1;
+
+    /**
+     * Active tasks and sums of their start times. A task may end on another thread than the one it started on,
+     * so a single stripe may go negative; only the sums are meaningful.
+     */
+    private final StripedCells cells = new StripedCells(2);
+    private final Set<SampledTask> sampledTasks = ConcurrentHashMap.newKeySet();
+    private final Clock clock;
+    private final int sampleOneIn;
+
+    private StripedLongTaskTimer(MeterRegistry registry, String name, @Nullable String description,
+            Iterable<Tag> tags, int sampleOneIn) {
+        this.clock = registry.config().clock();
+        this.sampleOneIn = sampleOneIn;
+
+        // the strong reference of this gauge keeps this object reachable for the time gauges too
+        Gauge.builder(name + ACTIVE_TASKS_SUFFIX, this, StripedLongTaskTimer::activeTasks)
+                .description(description)
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+        TimeGauge.builder(name + DURATION_SUFFIX, this, TimeUnit.MICROSECONDS, StripedLongTaskTimer::durationMicros)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        TimeGauge.builder(name + OLDEST_SUFFIX, this, TimeUnit.MICROSECONDS,
+                        StripedLongTaskTimer::oldestTaskAgeMicros)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * Registers a striped long task timer sampling one in {@link #DEFAULT_SAMPLE_ONE_IN} tasks for the age of
+     * the oldest one.
+     *
+     * @param registry    where to register the meters
+     * @param name        name the meter names are derived from by adding suffixes
+     * @param description description of the meters
+     * @param tags        tags of the meters
+     * @return registered timer
+     */
+    public static StripedLongTaskTimer register(MeterRegistry registry, String name, @Nullable String description,
+            Iterable<Tag> tags) {
+        return register(registry, name, description, tags, DEFAULT_SAMPLE_ONE_IN);
+    }
+
+    /**
+     * Registers a striped long task timer.
+     *
+     * @param registry    where to register the meters
+     * @param name        name the meter names are derived from by adding suffixes
+     * @param description description of the meters
+     * @param tags        tags of the meters
+     * @param sampleOneIn one in how many tasks is sampled for the age of the oldest one; must be positive
+     * @return registered timer
+     */
+    public static StripedLongTaskTimer register(MeterRegistry registry, String name, @Nullable String description,
+            Iterable<Tag> tags, int sampleOneIn) {
+        if (sampleOneIn < 1) {
+            throw new IllegalArgumentException("sampleOneIn must be positive, but it is " + sampleOneIn);
+        }
+        return new StripedLongTaskTimer(registry, name, description, tags, sampleOneIn);
+    }
+
+    /**
+     * Tracks each subscription to the given {@link Mono} as a task, from subscription to termination
+     * or cancellation.
+     *
+     * @param mono mono to track
+     * @param <T>  value type
+     * @return tracked mono
+     */
+    public <T> Mono<T> track(Mono<T> mono) {
+        return SignalObservingMono.observe(mono, TaskSubscriber::new);
+    }
+
+    /**
+     * Tracks each subscription to the given {@link Flux} as a task, from subscription to termination
+     * or cancellation.
+     *
+     * @param flux flux to track
+     * @param <T>  element type
+     * @return tracked flux
+     */
+    public <T> Flux<T> track(Flux<T> flux) {
+        return SignalObservingFlux.observe(flux, TaskSubscriber::new);
+    }
+
+    /**
+     * Returns the number of active tasks.
+     *
+     * @return active tasks
+     */
+    public long activeTasks() {
+        return cells.sum(ACTIVE);
+    }
+
+    /**
+     * Returns the total duration of the active tasks.
+     *
+     * @param unit time unit of the result
+     * @return total duration
+     */
+    public double duration(TimeUnit unit) {
+        return durationMicros() / unit.toMicros(1);
+    }
+
+    /**
+     * Returns the age of the oldest sampled task, or {@code 0} if no task is active.
+     *
+     * @param unit time unit of the result
+     * @return age of the oldest sampled task
+     */
+    public double oldestTaskAge(TimeUnit unit) {
+        return oldestTaskAgeMicros() / unit.toMicros(1);
+    }
+
+    private double durationMicros() {
+        long active = cells.sum(ACTIVE);
+        long startSum = cells.sum(START_SUM);
+        // even if the sum of start times overflows, the difference is right as long as it fits in a long
+        return Math.max(0, active * nowMicros() - startSum);
+    }
+
+    private double oldestTaskAgeMicros() {
+        long now = nowMicros();
+        long oldest = 0;
+        for (SampledTask task : sampledTasks) {
+            oldest = Math.max(oldest, now - task.startMicros);
+        }
+        return oldest;
+    }
+
+    private long nowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(clock.monotonicTime());
+    }
+
+    private class TaskSubscriber<T> extends SignalObservingSubscriber<T> {
+        private long startMicros;
+        @Nullable
+        private SampledTask sampledTask;
+
+        TaskSubscriber(CoreSubscriber<? super T> actual) {
+            super(actual);
+        }
+
+        @Override
+        void hookOnSubscribe() {
+            startMicros = nowMicros();
+            int stripe = cells.stripe();
+            cells.add(stripe, ACTIVE, 1);
+            cells.add(stripe, START_SUM, startMicros);
+            if (sampledTasks.isEmpty() || ThreadLocalRandom.current().nextInt(sampleOneIn) == 0) {
+                sampledTask = new SampledTask(startMicros);
+                sampledTasks.add(sampledTask);
+            }
+        }
+
+        @Override
+        void hookOnTerminate() {
+            int stripe = cells.stripe();
+            cells.add(stripe, ACTIVE, -1);
+            cells.add(stripe, START_SUM, -startMicros);
+            if (sampledTask != null) {
+                sampledTasks.remove(sampledTask);
+            }
+        }
+    }
+
+    /**
+     * A task sampled for the age of the oldest task; compared by identity.
+     */
+    private static final class SampledTask {
+        final long startMicros;
+
+        SampledTask(long startMicros) {
+            this.startMicros = startMicros;
+        }
+    }
+}
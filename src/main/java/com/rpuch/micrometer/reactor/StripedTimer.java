@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.noop.NoopMeter;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer for the hottest methods, which threads do not contend on: each stripe (selected by the recording
+ * thread) keeps its own count, total time and max in a cache line of its own, and the stripes are only merged
+ * when the registry reads the meters.
+ * <p>
+ * It is published as a single meter of type {@link Meter.Type#TIMER} with the count, total time and max
+ * statistics of a regular timer, the times being in the base time unit of the registry. The max covers the time
+ * since it was last read, so it resets on each publish step, and the timer should only be published to a single
+ * registry. Percentiles and histograms are not supported, as keeping them per stripe would multiply their memory.
+ * The base time unit of a registry is found out when the first striped timer is registered to it, by briefly
+ * registering a time gauge with the id of that timer.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class StripedTimer {
+    /**
+     * Base time units of the registries the striped timers have been registered to.
+     */
+    private static final Map<MeterRegistry, TimeUnit> BASE_TIME_UNITS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+
+    private final StripedCells cells = new StripedCells(3);
+
+    private StripedTimer(MeterRegistry registry, String name, @Nullable String description, Iterable<Tag> tags) {
+        TimeUnit baseTimeUnit = baseTimeUnit(registry, name, tags);
+        Meter.builder(name, Meter.Type.TIMER, Arrays.asList(
+                new Measurement(() -> (double) count(), Statistic.COUNT),
+                new Measurement(() -> totalTime(baseTimeUnit), Statistic.TOTAL_TIME),
+                new Measurement(() -> pollMaxNanos() / baseTimeUnit.toNanos(1), Statistic.MAX)))
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static TimeUnit baseTimeUnit(MeterRegistry registry, String name, Iterable<Tag> tags) {
+        TimeUnit baseTimeUnit = BASE_TIME_UNITS.get(registry);
+        if (baseTimeUnit != null) {
+            return baseTimeUnit;
+        }
+        // custom meters report times in the base time unit, which registries only expose through their time
+        // meters; the probe has the id of the timer, so it goes through the same meter filters, and it is
+        // removed before the timer is registered
+        TimeGauge probe = TimeGauge.builder(name, registry, TimeUnit.NANOSECONDS, r -> 0)
+                .tags(tags)
+                .register(registry);
+        registry.remove(probe);
+        baseTimeUnit = probe.baseTimeUnit();
+        if (!(probe instanceof NoopMeter)) {
+            // a denied probe does not tell the unit, but the timer is denied too
+            BASE_TIME_UNITS.put(registry, baseTimeUnit);
+        }
+        return baseTimeUnit;
+    }
+
+    /**
+     * Registers a striped timer. The meters are bound to the returned object, so a single {@code StripedTimer}
+     * should be used for the same name and tags.
+     *
+     * @param registry    where to register the meters
+     * @param name        timer name
+     * @param description timer description
+     * @param tags        timer tags
+     * @return registered timer
+     */
+    public static StripedTimer register(MeterRegistry registry, String name, @Nullable String description,
+            Iterable<Tag> tags) {
+        return new StripedTimer(registry, name, description, tags);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        int stripe = cells.stripe();
+        cells.add(stripe, COUNT, 1);
+        cells.add(stripe, TOTAL, nanos);
+        cells.max(stripe, MAX, nanos);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return count
+     */
+    public long count() {
+        return cells.sum(COUNT);
+    }
+
+    private double totalTimeNanos() {
+        return cells.sum(TOTAL);
+    }
+
+    /**
+     * Returns the total recorded time.
+     *
+     * @param unit time unit of the result
+     * @return total time
+     */
+    public double totalTime(TimeUnit unit) {
+        return totalTimeNanos() / unit.toNanos(1);
+    }
+
+    private double pollMaxNanos() {
+        return cells.pollMax(MAX);
+    }
+}
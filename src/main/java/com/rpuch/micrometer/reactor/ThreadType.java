@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.NonNullApi;
+import reactor.core.scheduler.NonBlocking;
+
+/**
+ * The kind of thread a signal is emitted on. Latency often differs a lot between an event loop, an elastic
+ * scheduler and a foreign thread pool, so telling them apart helps to find scheduler hops that add latency.
+ * <p>
+ * The kind of a thread is worked out the first time it is asked for on that thread, and kept in
+ * a {@link ThreadLocal}, so asking again costs a thread local lookup. Renaming a thread afterwards does not
+ * change its kind.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public enum ThreadType {
+    /**
+     * A thread marked with Reactor's {@link NonBlocking} interface, like the threads of
+     * the {@code parallel} and {@code single} schedulers and the Reactor Netty event loops.
+     */
+    NON_BLOCKING("non-blocking"),
+    /**
+     * A thread of an {@code elastic} or {@code boundedElastic} scheduler with the default thread names.
+     */
+    ELASTIC("elastic"),
+    /**
+     * Any other thread.
+     */
+    OTHER("other");
+
+    /**
+     * Name of the tag telling the kind of thread.
+     */
+    public static final String TAG = "thread.type";
+
+    private static final ThreadLocal<ThreadType> CURRENT = ThreadLocal.withInitial(
+            () -> of(Thread.currentThread()));
+
+    private final String tagValue;
+    private final Tags tags;
+
+    ThreadType(String tagValue) {
+        this.tagValue = tagValue;
+        this.tags = Tags.of(TAG, tagValue);
+    }
+
+    /**
+     * Returns the kind of the current thread.
+     *
+     * @return kind of the current thread
+     */
+    public static ThreadType current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Works out the kind of the given thread.
+     *
+     * @param thread the thread
+     * @return kind of the thread
+     */
+    public static ThreadType of(Thread thread) {
+        if (thread instanceof NonBlocking) {
+            return NON_BLOCKING;
+        }
+        String name = thread.getName();
+        if (name.startsWith("boundedElastic-") || name.startsWith("elastic-")) {
+            return ELASTIC;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Returns the value of the {@link #TAG} tag for this kind.
+     *
+     * @return tag value
+     */
+    public String tagValue() {
+        return tagValue;
+    }
+
+    /**
+     * Returns the {@link #TAG} tag for this kind.
+     *
+     * @return tags holding the single tag
+     */
+    public Tags tags() {
+        return tags;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.lang.NonNullApi;
+
+import java.util.function.Function;
+
+/**
+ * {@link OutcomeTimers} split by the {@link ThreadType} of the thread emitting the terminal signal of
+ * a subscription. As a {@link MeteringListener}, it records each subscription to the timers of the kind of
+ * the current thread, so, like {@link OutcomeTimers}, a single instance meters any number of subscriptions
+ * without allocating anything per subscription.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+public final class ThreadTypeTimers implements MeteringListener {
+    private final Clock clock;
+    private final OutcomeTimers[] timersByType;
+
+    private ThreadTypeTimers(Clock clock, Function<ThreadType, OutcomeTimers> timersFactory) {
+        this.clock = clock;
+        ThreadType[] types = ThreadType.values();
+        timersByType = new OutcomeTimers[types.length];
+        for (ThreadType type : types) {
+            timersByType[type.ordinal()] = timersFactory.apply(type);
+        }
+    }
+
+    /**
+     * Creates the timers. The factory is invoked once per {@link ThreadType} right away, and it is expected to
+     * return {@link OutcomeTimers} whose timers are tagged with {@link ThreadType#tags()} of the given type.
+     *
+     * @param clock         clock to measure durations with
+     * @param timersFactory creates the timers of a kind of thread
+     * @return timers
+     */
+    public static ThreadTypeTimers create(Clock clock, Function<ThreadType, OutcomeTimers> timersFactory) {
+        return new ThreadTypeTimers(clock, timersFactory);
+    }
+
+    /**
+     * Returns the timers of the given kind of thread.
+     *
+     * @param type kind of thread
+     * @return timers
+     */
+    public OutcomeTimers timers(ThreadType type) {
+        return timersByType[type.ordinal()];
+    }
+
+    @Override
+    public long startTime() {
+        return clock.monotonicTime();
+    }
+
+    @Override
+    public void onSuccess(long startTime) {
+        timers(ThreadType.current()).onSuccess(startTime);
+    }
+
+    @Override
+    public void onError(long startTime, Throwable error) {
+        timers(ThreadType.current()).onError(startTime, error);
+    }
+
+    @Override
+    public void onCancel(long startTime) {
+        timers(ThreadType.current()).onCancel(startTime);
+    }
+}
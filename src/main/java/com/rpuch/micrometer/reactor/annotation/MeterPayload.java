@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Meters the payload of a {@code @Timed} method returning a {@code Flux} of data chunks: bytes per subscription
+ * and emitted bytes, in meters named after the timer with the suffixes defined in
+ * {@link com.rpuch.micrometer.reactor.PayloadMeters}. The size of the elements is told by the
+ * {@link com.rpuch.micrometer.reactor.PayloadSize} of the aspect. Ignored for methods returning a {@code Mono}.
+ *
+ * @author Roman Puchkovskiy
+ * @see com.rpuch.micrometer.reactor.PayloadMeters
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface MeterPayload {
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Meters only a sample of invocations of a {@code @Timed} or {@code @Counted} reactive method, overriding
+ * the sampling configured for the aspect. Invocations that are not sampled are not
+ * timed or counted, but otherwise behave like the sampled ones: the method is still invoked on subscription,
+ * and the additional meters of the method still apply.
+ * <p>
+ * Counters are scaled so that their totals estimate all invocations. Timers only record the sampled
+ * invocations, so their counts should not be read as invocation counts. Long task timers are never sampled.
+ *
+ * @author Roman Puchkovskiy
+ * @see com.rpuch.micrometer.reactor.Sampling
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Sampled {
+    /**
+     * Meter each invocation with probability {@code 1/oneIn}. Ignored if {@link #maxPerSecond()} is set.
+     * Values below {@code 1} are treated as {@code 1}, so that a mistake here does not break the method.
+     *
+     * @return how many invocations one metered invocation stands for on average
+     */
+    int oneIn() default 1;
+
+    /**
+     * If positive, meter invocations with a probability adapted each second, so that about this many
+     * invocations are metered per second.
+     *
+     * @return target number of metered invocations per second
+     */
+    double maxPerSecond() default 0;
+}
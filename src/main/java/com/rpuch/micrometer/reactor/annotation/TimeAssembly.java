@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Adds a timer of the synchronous invocation of a {@code @Timed} reactive method, from the call until it returns
+ * its publisher, to show blocking work done while assembling the pipeline. The subscription itself is timed
+ * by the {@code @Timed} timer as usual. The timer is named after the {@code @Timed} one with the
+ * {@link com.rpuch.micrometer.reactor.AssemblyTimer#SUFFIX} suffix.
+ *
+ * @author Roman Puchkovskiy
+ * @see com.rpuch.micrometer.reactor.AssemblyTimer
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface TimeAssembly {
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import com.rpuch.micrometer.reactor.Sampling;
+import com.rpuch.micrometer.reactor.annotation.Sampled;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * Resolves annotations of intercepted methods, which may be put either on the invoked method
+ * or on its implementation in the target class.
+ *
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+final class MethodAnnotations {
+    private MethodAnnotations() {
+    }
+
+    @Nullable
+    static <A extends Annotation> A findAnnotation(Method method, Class<?> targetClass, Class<A> annotationType) {
+        A annotation = method.getAnnotation(annotationType);
+        if (annotation != null || targetClass == method.getDeclaringClass()) {
+            return annotation;
+        }
+        try {
+            return targetClass.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(annotationType);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static Sampling sampling(Method method, Class<?> targetClass, Sampling defaultSampling) {
+        Sampled sampled = findAnnotation(method, targetClass, Sampled.class);
+        if (sampled == null) {
+            return defaultSampling;
+        }
+        if (sampled.maxPerSecond() > 0) {
+            return Sampling.adaptive(sampled.maxPerSecond());
+        }
+        // an invalid value must not make the method fail on its first invocation
+        return sampled.oneIn() > 1 ? Sampling.oneIn(sampled.oneIn()) : Sampling.always();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Additional meters of a single intercepted method, registered on first use. Some of them are bound to state of
+ * their own (like gauges), so the same instance must be used for the same tags instead of registering the meters
+ * again; the others are just not looked up in the registry on each invocation.
+ *
+ * @param <M> type of the object holding the meters
+ * @author Roman Puchkovskiy
+ */
+@NonNullApi
+final class MethodMeters<M> {
+    private final Function<Tags, M> factory;
+
+    /**
+     * The meters for the case when the tags do not differ between invocations.
+     */
+    @Nullable
+    private volatile M meters;
+
+    private final ConcurrentMap<Tags, M> metersByTags = new ConcurrentHashMap<>();
+
+    MethodMeters(Function<Tags, M> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the meters for the given tags, creating them on first use.
+     *
+     * @param tags       tags of the meters
+     * @param staticTags whether the tags are the same for all invocations, so that the meters may be returned
+     *                   without computing the tags next time
+     * @return the meters
+     */
+    M get(Supplier<Tags> tags, boolean staticTags) {
+        M current = meters;
+        if (current != null) {
+            return current;
+        }
+        current = metersByTags.computeIfAbsent(tags.get(), factory);
+        if (staticTags) {
+            meters = current;
+        }
+        return current;
+    }
+}
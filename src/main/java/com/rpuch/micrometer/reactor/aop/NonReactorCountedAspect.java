@@ -20,16 +20,15 @@ import io.micrometer.core.aop.CountedAspect;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.reflect.MethodSignature;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.lang.reflect.Method;
 import java.util.function.Function;
 
 /**
  * Extension of {@link CountedAspect} that plays nice with {@link ReactorCountedAspect} when both are defined
- * in same Spring context. This means that a method returning {@link Mono} or {@link Flux} is not counted twice
+ * in same Spring context. This means that a method returning {@link Mono}, {@link Flux} or another type
+ * instrumented by the reactive aspect (like {@link java.util.concurrent.CompletionStage}) is not counted twice
  * (as it would happen with vanilla CountedAspect).
  *
  * @author Roman Puchkovskiy
@@ -46,16 +45,10 @@ public class NonReactorCountedAspect extends CountedAspect {
 
     @Override
     public Object interceptAndRecord(ProceedingJoinPoint pjp, Counted counted) throws Throwable {
-        if (isReactorReturnType(pjp)) {
+        if (ReturnTypes.isReactorReturnType(pjp)) {
             return pjp.proceed();
         }
 
         return super.interceptAndRecord(pjp, counted);
     }
-
-    private boolean isReactorReturnType(ProceedingJoinPoint pjp) {
-        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
-        return Mono.class.isAssignableFrom(method.getReturnType())
-                || Flux.class.isAssignableFrom(method.getReturnType());
-    }
 }
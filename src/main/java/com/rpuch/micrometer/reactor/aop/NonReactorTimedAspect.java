@@ -19,16 +19,15 @@ import io.micrometer.core.aop.TimedAspect;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.reflect.MethodSignature;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.lang.reflect.Method;
 import java.util.function.Function;
 
 /**
  * Extension of {@link TimedAspect} that plays nice with {@link ReactorTimedAspect} when both are defined
- * in same Spring context. This means that a method returning {@link Mono} or {@link Flux} is not timed twice
+ * in same Spring context. This means that a method returning {@link Mono}, {@link Flux} or another type
+ * instrumented by the reactive aspect (like {@link java.util.concurrent.CompletionStage}) is not timed twice
  * (as it would happen with vanilla TimedAspect).
  *
  * @author Roman Puchkovskiy
@@ -49,16 +48,10 @@ public class NonReactorTimedAspect extends TimedAspect {
 
     @Override
     public Object timedMethod(ProceedingJoinPoint pjp) throws Throwable {
-        if (isReactorReturnType(pjp)) {
+        if (ReturnTypes.isReactorReturnType(pjp)) {
             return pjp.proceed();
         }
 
         return super.timedMethod(pjp);
     }
-
-    private boolean isReactorReturnType(ProceedingJoinPoint pjp) {
-        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
-        return Mono.class.isAssignableFrom(method.getReturnType())
-                || Flux.class.isAssignableFrom(method.getReturnType());
-    }
 }
@@ -15,26 +15,46 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.BufferedRecorder;
+import com.rpuch.micrometer.reactor.CardinalityLimiter;
+import com.rpuch.micrometer.reactor.ContextTags;
+import com.rpuch.micrometer.reactor.MeteredCompletionStage;
+import com.rpuch.micrometer.reactor.MeteredFlux;
+import com.rpuch.micrometer.reactor.MeteredMono;
+import com.rpuch.micrometer.reactor.MeteredParallelFlux;
+import com.rpuch.micrometer.reactor.MeteringListener;
+import com.rpuch.micrometer.reactor.OutcomeCounters;
+import com.rpuch.micrometer.reactor.Sampler;
+import com.rpuch.micrometer.reactor.Sampling;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Aspect responsible for intercepting {@link Mono} and {@link Flux} methods annotated with the {@link Counted}
- * annotation and record a few counter metrics about their execution status.
+ * annotation and record a few counter metrics about their execution status. Methods returning
+ * a {@link ParallelFlux}, a {@link Publisher} or a {@link CompletionStage} are counted as well.
  *
  * @author Ali Dehghani
  * @author Roman Puchkovskiy
@@ -43,10 +63,10 @@ import java.util.function.Function;
 @Aspect
 @NonNullApi
 public class ReactorCountedAspect {
-    public final String DEFAULT_EXCEPTION_TAG_VALUE = "none";
-    public final String RESULT_TAG_FAILURE_VALUE = "failure";
-    public final String RESULT_TAG_SUCCESS_VALUE = "success";
-    public final String RESULT_TAG_CANCELLATION_VALUE = "cancellation";
+    public final String DEFAULT_EXCEPTION_TAG_VALUE = OutcomeCounters.NO_EXCEPTION_TAG_VALUE;
+    public final String RESULT_TAG_FAILURE_VALUE = OutcomeCounters.FAILURE_RESULT;
+    public final String RESULT_TAG_SUCCESS_VALUE = OutcomeCounters.SUCCESS_RESULT;
+    public final String RESULT_TAG_CANCELLATION_VALUE = OutcomeCounters.CANCELLATION_RESULT;
 
     /**
      * The tag name to encapsulate the method execution status.
@@ -58,16 +78,61 @@ public class ReactorCountedAspect {
      */
     private static final String EXCEPTION_TAG = "exception";
 
+    private static final Function<JoinPoint.StaticPart, Iterable<Tag>> DEFAULT_TAGS_BASED_ON_STATIC_PART =
+            staticPart -> Tags.of("class", staticPart.getSignature().getDeclaringTypeName(),
+                    "method", staticPart.getSignature().getName());
+
     /**
      * Where we're going register metrics.
      */
     private final MeterRegistry meterRegistry;
 
     /**
-     * A function to produce additional tags for any given join point.
+     * A function to produce tags that only depend on the intercepted method; evaluated once per method.
      */
+    private final Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart;
+
+    /**
+     * A function to produce additional tags for any given join point; evaluated on each recording. If it is
+     * {@code null}, the counters are resolved once and cached.
+     */
+    @Nullable
     private final Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint;
 
+    /**
+     * If not {@code null}, produces tags from the subscriber context; evaluated on each subscription.
+     */
+    @Nullable
+    private final ContextTags tagsBasedOnContext;
+
+    /**
+     * Sampling of methods not annotated with {@link com.rpuch.micrometer.reactor.annotation.Sampled @Sampled}.
+     */
+    private final Sampling sampling;
+
+    /**
+     * If not {@code null}, counters are updated asynchronously through it.
+     */
+    @Nullable
+    private final BufferedRecorder bufferedRecorder;
+
+    /**
+     * If not {@code null}, bounds the tag combinations registered per metric name and fixed tags.
+     */
+    @Nullable
+    private final CardinalityLimiter cardinalityLimiter;
+
+    /**
+     * Intercepted methods resolved on their first invocation, grouped by target class.
+     */
+    private final ClassValue<ConcurrentMap<Method, CountedMethod>> countedMethodsByTargetClass =
+            new ClassValue<ConcurrentMap<Method, CountedMethod>>() {
+                @Override
+                protected ConcurrentMap<Method, CountedMethod> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     /**
      * Construct a new aspect with the given {@code meterRegistry} along with a default
      * tags provider.
@@ -75,21 +140,42 @@ public class ReactorCountedAspect {
      * @param meterRegistry Where we're going register metrics.
      */
     public ReactorCountedAspect(MeterRegistry meterRegistry) {
-        this(meterRegistry, pjp ->
-                Tags.of("class", pjp.getStaticPart().getSignature().getDeclaringTypeName(),
-                        "method", pjp.getStaticPart().getSignature().getName()));
+        this(builder(meterRegistry));
     }
 
     /**
-     * Constructs a new aspect with the given {@code meterRegistry} and tags provider function.
+     * Constructs a new aspect with the given {@code meterRegistry} and tags provider function. The function is
+     * evaluated on each recording; if the tags only depend on the intercepted method, prefer
+     * {@link Builder#tagsBasedOnStaticPart(Function)}.
      *
      * @param meterRegistry        Where we're going register metrics.
      * @param tagsBasedOnJoinPoint A function to generate tags given a join point.
      */
     public ReactorCountedAspect(MeterRegistry meterRegistry, Function<ProceedingJoinPoint,
             Iterable<Tag>> tagsBasedOnJoinPoint) {
-        this.meterRegistry = meterRegistry;
-        this.tagsBasedOnJoinPoint = tagsBasedOnJoinPoint;
+        this(builder(meterRegistry)
+                .tagsBasedOnStaticPart(staticPart -> Tags.empty())
+                .tagsBasedOnJoinPoint(tagsBasedOnJoinPoint));
+    }
+
+    private ReactorCountedAspect(Builder builder) {
+        this.meterRegistry = builder.meterRegistry;
+        this.tagsBasedOnStaticPart = builder.tagsBasedOnStaticPart;
+        this.tagsBasedOnJoinPoint = builder.tagsBasedOnJoinPoint;
+        this.tagsBasedOnContext = builder.tagsBasedOnContext;
+        this.sampling = builder.sampling;
+        this.bufferedRecorder = builder.bufferedRecorder;
+        this.cardinalityLimiter = builder.cardinalityLimiter;
+    }
+
+    /**
+     * Starts building a {@code ReactorCountedAspect}.
+     *
+     * @param meterRegistry Where we're going register metrics.
+     * @return builder
+     */
+    public static Builder builder(MeterRegistry meterRegistry) {
+        return new Builder(meterRegistry);
     }
 
     @Pointcut("execution(reactor.core.publisher.Mono *..*.*(..))")
@@ -100,38 +186,195 @@ public class ReactorCountedAspect {
     private void returnsFlux() {
     }
 
+    @Pointcut("execution(reactor.core.publisher.ParallelFlux *..*.*(..))")
+    private void returnsParallelFlux() {
+    }
+
+    @Pointcut("execution(org.reactivestreams.Publisher *..*.*(..))"
+            + " || execution(reactor.core.CorePublisher *..*.*(..))")
+    private void returnsPublisher() {
+    }
+
+    @Pointcut("execution(java.util.concurrent.CompletionStage+ *..*.*(..))")
+    private void returnsCompletionStage() {
+    }
+
     /**
      * Intercept methods annotated with the {@link Counted} annotation and expose a few counters about
      * their execution status. By default, this aspect records both failed and successful attempts. If the
      * {@link Counted#recordFailuresOnly()} is set to {@code true}, then the aspect would record only
      * failed attempts. In case of a failure, the aspect tags the counter with the simple name of the thrown
      * exception.
+     * <p>
+     * If the method is sampled, the invocations that are not sampled are not counted, but a {@link Mono} or
+     * {@link Flux} is still returned that invokes the method on subscription; the sampled ones are counted with
+     * a weight so that the counters estimate the totals.
      *
      * @param pjp     Encapsulates some information about the intercepted area.
      * @param counted The annotation.
      * @return Whatever the intercepted method returns.
+     * @throws Throwable When the intercepted method returning a {@link ParallelFlux} or
+     *                   a {@link CompletionStage} throws one.
      */
-    @Around("@annotation(counted) && (returnsMono() || returnsFlux())")
-    public Object interceptAndRecord(ProceedingJoinPoint pjp, Counted counted) {
+    @Around("@annotation(counted) && (returnsMono() || returnsFlux() || returnsParallelFlux() || returnsPublisher()"
+            + " || returnsCompletionStage())")
+    public Object interceptAndRecord(ProceedingJoinPoint pjp, Counted counted) throws Throwable {
 
-        final Method method = ((MethodSignature) pjp.getSignature()).getMethod();
-        final boolean isMono = Mono.class.isAssignableFrom(method.getReturnType());
+        final CountedMethod countedMethod = countedMethod(pjp, counted);
+        final double weight = countedMethod.sampler.sample();
 
-        if (isMono) {
-            return Mono.defer(() -> countOnMono(pjp, counted));
-        } else {
-            return Flux.defer(() -> countOnFlux(pjp, counted));
+        switch (countedMethod.kind) {
+            case PARALLEL_FLUX:
+                return weight == 0 ? pjp.proceed() : countParallelFlux(pjp, countedMethod, weight);
+            case COMPLETION_STAGE:
+                return weight == 0 ? pjp.proceed() : countCompletionStage(pjp, countedMethod, weight);
+            case PUBLISHER:
+                return countPublisher(pjp, countedMethod, weight);
+            case OTHER:
+                return pjp.proceed();
+            case MONO:
+                return countMono(pjp, countedMethod, weight, () -> proceedWithMono(pjp));
+            default:
+                return countFlux(pjp, countedMethod, weight, () -> proceedWithFlux(pjp));
+        }
+    }
+
+    /**
+     * Counts the subscriptions to the {@link Mono} the source returns, the source being called on each
+     * subscription.
+     */
+    private Mono<?> countMono(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight,
+            Supplier<Mono<?>> source) {
+        if (weight == 0) {
+            // not counted, but still invoked on subscription like the counted invocations
+            return Mono.defer(source);
+        }
+        ContextTags tagsBasedOnContext = this.tagsBasedOnContext;
+        if (tagsBasedOnContext != null) {
+            return Mono.deferContextual(context -> MeteredMono.defer(source,
+                    new CountingListener(pjp, countedMethod, tagsBasedOnContext.tags(context), weight)));
+        }
+        return MeteredMono.defer(source, countingListener(pjp, countedMethod, weight));
+    }
+
+    /**
+     * Counts the subscriptions to the {@link Flux} the source returns, the source being called on each
+     * subscription.
+     */
+    private Flux<?> countFlux(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight,
+            Supplier<Flux<?>> source) {
+        if (weight == 0) {
+            // not counted, but still invoked on subscription like the counted invocations
+            return Flux.defer(() -> source.get());
+        }
+        ContextTags tagsBasedOnContext = this.tagsBasedOnContext;
+        if (tagsBasedOnContext != null) {
+            return Flux.deferContextual(context -> MeteredFlux.defer(source,
+                    new CountingListener(pjp, countedMethod, tagsBasedOnContext.tags(context), weight)));
+        }
+        return MeteredFlux.defer(source, countingListener(pjp, countedMethod, weight));
+    }
+
+    /**
+     * A method declared to return a {@link Publisher} may return a {@link Mono}, which must stay a {@link Mono}
+     * for the caller, so the method is invoked right away, like it would be without the aspect, and the
+     * subscriptions to its result are counted like those of a {@link Mono} or a {@link Flux} method. An exception
+     * thrown by the method is signalled on subscription, like for these methods.
+     */
+    private Object countPublisher(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight) {
+        Flux<?> flux;
+        try {
+            Object invocationResult = pjp.proceed();
+            if (invocationResult instanceof Mono) {
+                Mono<?> mono = (Mono<?>) invocationResult;
+                return countMono(pjp, countedMethod, weight, () -> mono);
+            }
+            if (!(invocationResult instanceof Publisher)) {
+                return invocationResult;
+            }
+            flux = Flux.from((Publisher<?>) invocationResult);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            flux = Flux.error(ex);
+        }
+        Flux<?> result = flux;
+        return countFlux(pjp, countedMethod, weight, () -> result);
+    }
+
+    private CountedMethod countedMethod(ProceedingJoinPoint pjp, Counted counted) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Object target = pjp.getTarget();
+        Class<?> targetClass = target != null ? target.getClass() : method.getDeclaringClass();
+
+        ConcurrentMap<Method, CountedMethod> countedMethods = countedMethodsByTargetClass.get(targetClass);
+        CountedMethod countedMethod = countedMethods.get(method);
+        if (countedMethod == null) {
+            countedMethod = countedMethods.computeIfAbsent(method, key -> new CountedMethod(counted,
+                    ReturnTypes.kind(key.getReturnType()),
+                    Tags.of(tagsBasedOnStaticPart.apply(pjp.getStaticPart())),
+                    tagsBasedOnJoinPoint == null ? cm -> outcomeCounters(cm, Tags.empty()) : null,
+                    MethodAnnotations.sampling(key, targetClass, sampling)
+                            .newSampler(meterRegistry.config().clock())));
+        }
+        return countedMethod;
+    }
+
+    /**
+     * The parallelism of a {@link ParallelFlux} is needed when it is assembled, so unlike for {@link Mono} and
+     * {@link Flux}, the method is invoked right away and the subscriptions to its result are counted. Context tags
+     * are not supported for it.
+     */
+    private Object countParallelFlux(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight)
+            throws Throwable {
+        Object invocationResult;
+        try {
+            invocationResult = pjp.proceed();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            recordFailure(pjp, countedMethod, Tags.empty(), ex, weight);
+            throw ex;
+        }
+
+        if (!(invocationResult instanceof ParallelFlux)) {
+            return invocationResult;
+        }
+        return MeteredParallelFlux.wrap((ParallelFlux<?>) invocationResult,
+                countingListener(pjp, countedMethod, weight));
+    }
+
+    /**
+     * A {@link CompletionStage} runs as soon as it is created, so the outcome of the stage returned by the method
+     * is counted, and the stage is returned as is. Context tags are not supported for it.
+     */
+    private Object countCompletionStage(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight)
+            throws Throwable {
+        MeteringListener listener = countingListener(pjp, countedMethod, weight);
+        long startTime = listener.startTime();
+        Object invocationResult;
+        try {
+            invocationResult = pjp.proceed();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            listener.onError(startTime, ex);
+            throw ex;
+        }
+
+        if (invocationResult instanceof CompletionStage) {
+            MeteredCompletionStage.observe((CompletionStage<?>) invocationResult, listener, startTime);
         }
+        return invocationResult;
     }
 
-    private Mono<?> countOnMono(ProceedingJoinPoint pjp, Counted counted) {
+    private Mono<?> proceedWithMono(ProceedingJoinPoint pjp) {
         Object invocationResult;
         try {
             invocationResult = pjp.proceed();
         } catch (Error e) {
             throw e;
         } catch (Throwable ex) {
-            recordFailure(pjp, counted, ex);
             return Mono.error(ex);
         }
 
@@ -140,65 +383,320 @@ public class ReactorCountedAspect {
                     "Only Mono is supported, should not be here, got " + invocationResult));
         }
 
-        Mono<?> mono = (Mono<?>) invocationResult;
-        return mono.doOnSuccess(result -> maybeRecordSuccess(pjp, counted))
-                .doOnError(ex -> recordFailure(pjp, counted, ex))
-                .doOnCancel(() -> maybeRecordCancellation(pjp, counted));
+        return (Mono<?>) invocationResult;
     }
 
-    private void maybeRecordSuccess(ProceedingJoinPoint pjp, Counted counted) {
-        if (!counted.recordFailuresOnly()) {
-            record(pjp, counted, DEFAULT_EXCEPTION_TAG_VALUE, RESULT_TAG_SUCCESS_VALUE);
+    private void maybeRecordSuccess(ProceedingJoinPoint pjp, CountedMethod countedMethod, Tags contextTags,
+            double weight) {
+        if (!countedMethod.recordFailuresOnly) {
+            OutcomeCounters counters = methodCounters(countedMethod, contextTags);
+            Counter counter = counters != null ? counters.success()
+                    : counter(countedMethod, contextTags, DEFAULT_EXCEPTION_TAG_VALUE, RESULT_TAG_SUCCESS_VALUE,
+                            tagsBasedOnJoinPoint(pjp));
+            increment(counter, weight);
         }
     }
 
-    private void recordFailure(ProceedingJoinPoint pjp, Counted counted, Throwable ex) {
-        record(pjp, counted, ex.getClass().getSimpleName(), RESULT_TAG_FAILURE_VALUE);
+    private void recordFailure(ProceedingJoinPoint pjp, CountedMethod countedMethod, Tags contextTags, Throwable ex,
+            double weight) {
+        OutcomeCounters counters = methodCounters(countedMethod, contextTags);
+        Counter counter = counters != null ? counters.failure(ex.getClass())
+                : counter(countedMethod, contextTags, ex.getClass().getSimpleName(), RESULT_TAG_FAILURE_VALUE,
+                        tagsBasedOnJoinPoint(pjp));
+        increment(counter, weight);
+    }
+
+    private void maybeRecordCancellation(ProceedingJoinPoint pjp, CountedMethod countedMethod, Tags contextTags,
+            double weight) {
+        if (!countedMethod.recordFailuresOnly) {
+            OutcomeCounters counters = methodCounters(countedMethod, contextTags);
+            Counter counter = counters != null ? counters.cancellation()
+                    : counter(countedMethod, contextTags, DEFAULT_EXCEPTION_TAG_VALUE, RESULT_TAG_CANCELLATION_VALUE,
+                            tagsBasedOnJoinPoint(pjp));
+            increment(counter, weight);
+        }
+    }
+
+    /**
+     * Returns the counters cache for the given context tags, or {@code null} if the counters cannot be cached.
+     */
+    @Nullable
+    private OutcomeCounters methodCounters(CountedMethod countedMethod, Tags contextTags) {
+        OutcomeCounters counters = countedMethod.counters;
+        ContextTags tagsBasedOnContext = this.tagsBasedOnContext;
+        if (counters == null || tagsBasedOnContext == null) {
+            return counters;
+        }
+        counters = countedMethod.countersByContextTags.get(contextTags);
+        if (counters == null) {
+            // past the interned combinations, context tags are new instances each time, so stop caching there
+            if (countedMethod.countersByContextTags.size() >= tagsBasedOnContext.maxCached()) {
+                return null;
+            }
+            counters = countedMethod.countersByContextTags.computeIfAbsent(contextTags,
+                    tags -> outcomeCounters(countedMethod, tags));
+        }
+        return counters;
     }
 
-    private void maybeRecordCancellation(ProceedingJoinPoint pjp, Counted counted) {
-        if (!counted.recordFailuresOnly()) {
-            record(pjp, counted, DEFAULT_EXCEPTION_TAG_VALUE, RESULT_TAG_CANCELLATION_VALUE);
+    private void increment(Counter counter, double amount) {
+        if (bufferedRecorder != null) {
+            bufferedRecorder.increment(counter, amount);
+        } else {
+            counter.increment(amount);
         }
     }
 
-    private Flux<?> countOnFlux(ProceedingJoinPoint pjp, Counted counted) {
+    private Flux<?> proceedWithFlux(ProceedingJoinPoint pjp) {
         Object invocationResult;
         try {
             invocationResult = pjp.proceed();
         } catch (Error e) {
             throw e;
         } catch (Throwable ex) {
-            recordFailure(pjp, counted, ex);
             return Flux.error(ex);
         }
 
-        if (!(invocationResult instanceof Flux)) {
+        if (!(invocationResult instanceof Publisher)) {
             return Flux.error(new IllegalStateException(
-                    "Only Flux is supported, should not be here, got " + invocationResult));
+                    "Only Publisher is supported, should not be here, got " + invocationResult));
         }
 
-        Flux<?> flux = (Flux<?>) invocationResult;
-        return flux.doOnComplete(() -> maybeRecordSuccess(pjp, counted))
-                .doOnError(ex -> recordFailure(pjp, counted, ex))
-                .doOnCancel(() -> maybeRecordCancellation(pjp, counted));
+        return Flux.from((Publisher<?>) invocationResult);
+    }
+
+    /**
+     * Counters of a method for the given context tags, resolved on first use. Only used when there are no tags
+     * based on the join point, as these are not known to the counters.
+     */
+    private OutcomeCounters outcomeCounters(CountedMethod countedMethod, Tags contextTags) {
+        return OutcomeCounters.create((exception, result) -> counter(countedMethod, contextTags, exception, result,
+                Tags.empty()));
+    }
+
+    private Iterable<Tag> tagsBasedOnJoinPoint(ProceedingJoinPoint pjp) {
+        return tagsBasedOnJoinPoint == null ? Tags.empty() : tagsBasedOnJoinPoint.apply(pjp);
     }
 
-    private void record(ProceedingJoinPoint pjp, Counted counted, String exception, String result) {
-        counter(pjp, counted)
-                .tag(EXCEPTION_TAG, exception)
-                .tag(RESULT_TAG, result)
-                .tags(counted.extraTags())
-                .register(meterRegistry)
-                .increment();
+    private Counter counter(CountedMethod countedMethod, Tags contextTags, String exception, String result,
+            Iterable<Tag> joinPointTags) {
+        Tags variableTags = Tags.of(EXCEPTION_TAG, exception).and(contextTags).and(joinPointTags);
+        Tags fixedTags = countedMethod.fixedTags.and(RESULT_TAG, result);
+        Tags tags = cardinalityLimiter != null
+                ? cardinalityLimiter.limit(countedMethod.metricName, fixedTags, variableTags)
+                : fixedTags.and(variableTags);
+
+        Counter.Builder builder = Counter.builder(countedMethod.metricName)
+                .tags(tags);
+        if (countedMethod.description != null) {
+            builder.description(countedMethod.description);
+        }
+        return builder.register(meterRegistry);
     }
 
-    private Counter.Builder counter(ProceedingJoinPoint pjp, Counted counted) {
-        Counter.Builder builder = Counter.builder(counted.value()).tags(tagsBasedOnJoinPoint.apply(pjp));
-        String description = counted.description();
-        if (!description.isEmpty()) {
-            builder.description(description);
+    /**
+     * Returns the listener counting the subscriptions of an invocation without context tags. If the counters are
+     * cached and each outcome is counted once and directly, they are the listener themselves, like with
+     * {@link com.rpuch.micrometer.reactor.ReactorMetrics#counted(MeterRegistry, String, Iterable)}, so nothing is
+     * allocated for it.
+     */
+    private MeteringListener countingListener(ProceedingJoinPoint pjp, CountedMethod countedMethod, double weight) {
+        OutcomeCounters counters = countedMethod.counters;
+        if (counters != null && weight == 1 && !countedMethod.recordFailuresOnly && bufferedRecorder == null) {
+            return counters;
+        }
+        return new CountingListener(pjp, countedMethod, Tags.empty(), weight);
+    }
+
+    /**
+     * Counts the outcome of each subscription.
+     */
+    private class CountingListener implements MeteringListener {
+        private final ProceedingJoinPoint pjp;
+        private final CountedMethod countedMethod;
+        private final Tags contextTags;
+
+        /**
+         * How many invocations this one stands for.
+         */
+        private final double weight;
+
+        CountingListener(ProceedingJoinPoint pjp, CountedMethod countedMethod, Tags contextTags, double weight) {
+            this.pjp = pjp;
+            this.countedMethod = countedMethod;
+            this.contextTags = contextTags;
+            this.weight = weight;
+        }
+
+        @Override
+        public long startTime() {
+            // counting does not need time
+            return 0;
+        }
+
+        @Override
+        public void onSuccess(long startTime) {
+            maybeRecordSuccess(pjp, countedMethod, contextTags, weight);
+        }
+
+        @Override
+        public void onError(long startTime, Throwable error) {
+            recordFailure(pjp, countedMethod, contextTags, error, weight);
+        }
+
+        @Override
+        public void onCancel(long startTime) {
+            maybeRecordCancellation(pjp, countedMethod, contextTags, weight);
+        }
+    }
+
+    /**
+     * Everything needed to count an intercepted method, resolved from its {@link Counted} annotation once,
+     * along with its counters.
+     */
+    private static class CountedMethod {
+        final String metricName;
+        @Nullable
+        final String description;
+        final boolean recordFailuresOnly;
+        final ReturnTypes.Kind kind;
+
+        /**
+         * Tags based on the static part and extra tags of the annotation: the tags that only depend on the method.
+         */
+        final Tags fixedTags;
+
+        /**
+         * Cached counters; {@code null} when their tags differ between invocations, so they cannot be cached.
+         */
+        @Nullable
+        final OutcomeCounters counters;
+
+        /**
+         * Cached counters per context tags, used instead of {@link #counters} when tags are taken from the
+         * subscriber context.
+         */
+        final ConcurrentMap<Tags, OutcomeCounters> countersByContextTags = new ConcurrentHashMap<>();
+
+        /**
+         * Decides which invocations are counted.
+         */
+        final Sampler sampler;
+
+        CountedMethod(Counted counted, ReturnTypes.Kind kind, Tags staticTags,
+                @Nullable Function<CountedMethod, OutcomeCounters> countersFactory, Sampler sampler) {
+            this.metricName = counted.value();
+            this.description = counted.description().isEmpty() ? null : counted.description();
+            this.recordFailuresOnly = counted.recordFailuresOnly();
+            this.kind = kind;
+            this.fixedTags = staticTags.and(counted.extraTags());
+            // the counters only use this method lazily, when they build a counter
+            this.counters = countersFactory != null ? countersFactory.apply(this) : null;
+            this.sampler = sampler;
+        }
+    }
+
+    /**
+     * Builder of {@link ReactorCountedAspect}.
+     */
+    public static class Builder {
+        private final MeterRegistry meterRegistry;
+        private Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart =
+                DEFAULT_TAGS_BASED_ON_STATIC_PART;
+        @Nullable
+        private Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint;
+        @Nullable
+        private ContextTags tagsBasedOnContext;
+        private Sampling sampling = Sampling.always();
+        @Nullable
+        private BufferedRecorder bufferedRecorder;
+        @Nullable
+        private CardinalityLimiter cardinalityLimiter;
+
+        private Builder(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        /**
+         * Sets a function producing tags that only depend on the intercepted method. It is evaluated once
+         * per method, and the resulting counters are resolved once and cached. By default, the {@code class} and
+         * {@code method} tags are produced.
+         *
+         * @param tagsBasedOnStaticPart function producing tags for a method
+         * @return this builder
+         */
+        public Builder tagsBasedOnStaticPart(Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart) {
+            this.tagsBasedOnStaticPart = tagsBasedOnStaticPart;
+            return this;
+        }
+
+        /**
+         * Sets a function producing tags that may depend on the concrete invocation, added to the tags
+         * produced by {@link #tagsBasedOnStaticPart(Function)}. It is evaluated on each recording, so the counters
+         * are not cached when it is set.
+         *
+         * @param tagsBasedOnJoinPoint function producing tags for an invocation
+         * @return this builder
+         */
+        public Builder tagsBasedOnJoinPoint(Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint) {
+            this.tagsBasedOnJoinPoint = tagsBasedOnJoinPoint;
+            return this;
+        }
+
+        /**
+         * Sets tags derived from the Reactor context of each subscription, like a tenant or a route, added to
+         * the counter tags. Resolved tags are interned by {@link ContextTags}, so the counters remain cached as
+         * long as the same context values are seen.
+         *
+         * @param tagsBasedOnContext tags to derive from the context
+         * @return this builder
+         */
+        public Builder tagsBasedOnContext(ContextTags tagsBasedOnContext) {
+            this.tagsBasedOnContext = tagsBasedOnContext;
+            return this;
+        }
+
+        /**
+         * Sets the sampling of methods that are not annotated with
+         * {@link com.rpuch.micrometer.reactor.annotation.Sampled @Sampled}. Invocations that are not sampled
+         * are not counted, but otherwise behave the same, and the sampled ones are counted with a weight, so that
+         * the counters estimate the totals. By default, each invocation is counted.
+         *
+         * @param sampling sampling policy
+         * @return this builder
+         */
+        public Builder sampling(Sampling sampling) {
+            this.sampling = sampling;
+            return this;
+        }
+
+        /**
+         * Makes the aspect update its counters asynchronously through the given recorder, so that the threads
+         * emitting terminal signals only append to a buffer. By default, counters are updated synchronously.
+         *
+         * @param bufferedRecorder recorder to use
+         * @return this builder
+         */
+        public Builder bufferedRecorder(BufferedRecorder bufferedRecorder) {
+            this.bufferedRecorder = bufferedRecorder;
+            return this;
+        }
+
+        /**
+         * Bounds the number of tag combinations registered per metric name and method: past the limit, the
+         * exception tag, the tags produced by {@link #tagsBasedOnJoinPoint(Function)} and the context tags of new
+         * combinations collapse into an overflow bucket. By default, there is no limit.
+         *
+         * @param cardinalityLimiter limiter to use, may be shared with other aspects
+         * @return this builder
+         */
+        public Builder cardinalityLimiter(CardinalityLimiter cardinalityLimiter) {
+            this.cardinalityLimiter = cardinalityLimiter;
+            return this;
+        }
+
+        public ReactorCountedAspect build() {
+            return new ReactorCountedAspect(this);
         }
-        return builder;
     }
 }
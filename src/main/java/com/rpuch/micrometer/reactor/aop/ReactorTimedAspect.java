@@ -15,6 +15,41 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.ActiveSubscriptions;
+import com.rpuch.micrometer.reactor.AssemblyTimer;
+import com.rpuch.micrometer.reactor.AttemptMeters;
+import com.rpuch.micrometer.reactor.DemandMeters;
+import com.rpuch.micrometer.reactor.BufferedRecorder;
+import com.rpuch.micrometer.reactor.CardinalityLimiter;
+import com.rpuch.micrometer.reactor.ContextTags;
+import com.rpuch.micrometer.reactor.ElementMeters;
+import com.rpuch.micrometer.reactor.FirstElementTimer;
+import com.rpuch.micrometer.reactor.MeteredCompletionStage;
+import com.rpuch.micrometer.reactor.MeteredFlux;
+import com.rpuch.micrometer.reactor.MeteredMono;
+import com.rpuch.micrometer.reactor.MeteredParallelFlux;
+import com.rpuch.micrometer.reactor.MeteringListener;
+import com.rpuch.micrometer.reactor.Outlier;
+import com.rpuch.micrometer.reactor.OutlierRecorder;
+import com.rpuch.micrometer.reactor.OutcomeTimers;
+import com.rpuch.micrometer.reactor.PayloadMeters;
+import com.rpuch.micrometer.reactor.PayloadSize;
+import com.rpuch.micrometer.reactor.RailMeters;
+import com.rpuch.micrometer.reactor.Sampler;
+import com.rpuch.micrometer.reactor.Sampling;
+import com.rpuch.micrometer.reactor.StripedLongTaskTimer;
+import com.rpuch.micrometer.reactor.StripedTimer;
+import com.rpuch.micrometer.reactor.ThreadType;
+import com.rpuch.micrometer.reactor.ThreadTypeTimers;
+import com.rpuch.micrometer.reactor.annotation.MeterActiveSubscriptions;
+import com.rpuch.micrometer.reactor.annotation.MeterAttempts;
+import com.rpuch.micrometer.reactor.annotation.MeterDemand;
+import com.rpuch.micrometer.reactor.annotation.MeterElements;
+import com.rpuch.micrometer.reactor.annotation.MeterPayload;
+import com.rpuch.micrometer.reactor.annotation.MeterRails;
+import com.rpuch.micrometer.reactor.annotation.Striped;
+import com.rpuch.micrometer.reactor.annotation.TimeAssembly;
+import com.rpuch.micrometer.reactor.annotation.TimeToFirstElement;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.LongTaskTimer;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -23,20 +58,34 @@ import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.lang.NonNullApi;
+import io.micrometer.core.lang.Nullable;
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 /**
  * AspectJ aspect for intercepting {@link Mono} and {@link Flux} methods annotated with {@link Timed @Timed}.
+ * Methods returning a {@link ParallelFlux}, a {@link Publisher} or a {@link CompletionStage} are timed as well.
  *
  * @author David J. M. Karlsen
  * @author Jon Schneider
@@ -48,17 +97,86 @@ import java.util.function.Function;
 @NonNullApi
 public class ReactorTimedAspect {
     public static final String DEFAULT_METRIC_NAME = "method.timed";
-    public static final String DEFAULT_EXCEPTION_TAG_VALUE = "none";
-    public static final String CANCELLATION_EXCEPTION_TAG_VALUE = "cancellation";
+    public static final String DEFAULT_EXCEPTION_TAG_VALUE = OutcomeTimers.NO_EXCEPTION_TAG_VALUE;
+    public static final String CANCELLATION_EXCEPTION_TAG_VALUE = OutcomeTimers.CANCELLATION_TAG_VALUE;
 
     /**
      * Tag key for an exception.
      */
     public static final String EXCEPTION_TAG = "exception";
 
+    private static final Function<JoinPoint.StaticPart, Iterable<Tag>> DEFAULT_TAGS_BASED_ON_STATIC_PART =
+            staticPart -> Tags.of("class", staticPart.getSignature().getDeclaringTypeName(),
+                    "method", staticPart.getSignature().getName());
+
     private final MeterRegistry registry;
+
+    /**
+     * Produces tags that only depend on the intercepted method; evaluated once per method.
+     */
+    private final Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart;
+
+    /**
+     * Produces tags that may depend on the concrete invocation; evaluated on each recording. If it is
+     * {@code null}, all the tags are known once the method is resolved, so the timers are resolved once
+     * and cached.
+     */
+    @Nullable
     private final Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint;
 
+    /**
+     * If not {@code null}, produces tags from the subscriber context; evaluated on each subscription.
+     */
+    @Nullable
+    private final ContextTags tagsBasedOnContext;
+
+    /**
+     * Whether the timers are tagged with the {@link ThreadType} of the thread emitting the terminal signal.
+     */
+    private final boolean threadTypeTag;
+
+    /**
+     * Sampling of methods not annotated with {@link com.rpuch.micrometer.reactor.annotation.Sampled @Sampled}.
+     */
+    private final Sampling sampling;
+
+    /**
+     * If not {@code null}, timers are updated asynchronously through it.
+     */
+    @Nullable
+    private final BufferedRecorder bufferedRecorder;
+
+    /**
+     * If not {@code null}, bounds the tag combinations registered per metric name and fixed tags.
+     */
+    @Nullable
+    private final CardinalityLimiter cardinalityLimiter;
+
+    /**
+     * Tells the size of the elements of {@link MeterPayload @MeterPayload} methods.
+     */
+    private final PayloadSize payloadSize;
+
+    /**
+     * If not {@code null}, captures the subscriptions slower than their threshold.
+     */
+    @Nullable
+    private final OutlierRecorder outlierRecorder;
+
+    /**
+     * Intercepted methods resolved on their first invocation, grouped by target class (as the annotation
+     * may be found on the implementation and not on the invoked interface method). Keyed by {@link Method}
+     * and not by {@link org.aspectj.lang.JoinPoint.StaticPart} because Spring AOP creates a new static part
+     * on each invocation.
+     */
+    private final ClassValue<ConcurrentMap<Method, TimedMethod>> timedMethodsByTargetClass =
+            new ClassValue<ConcurrentMap<Method, TimedMethod>>() {
+                @Override
+                protected ConcurrentMap<Method, TimedMethod> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     /**
      * Create a {@code ReactorTimedAspect} instance with {@link Metrics#globalRegistry}.
      */
@@ -67,16 +185,45 @@ public class ReactorTimedAspect {
     }
 
     public ReactorTimedAspect(MeterRegistry registry) {
-        this(registry, pjp ->
-                Tags.of("class", pjp.getStaticPart().getSignature().getDeclaringTypeName(),
-                        "method", pjp.getStaticPart().getSignature().getName())
-        );
+        this(builder(registry));
     }
 
+    /**
+     * Creates an aspect which tags are produced by the given function on each recording. As such tags may
+     * differ between invocations, the timers are resolved on each recording too. If the tags only depend
+     * on the intercepted method, prefer {@link Builder#tagsBasedOnStaticPart(Function)}.
+     *
+     * @param registry             where to register the timers
+     * @param tagsBasedOnJoinPoint function producing tags for an invocation
+     */
     public ReactorTimedAspect(MeterRegistry registry,
             Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint) {
-        this.registry = registry;
-        this.tagsBasedOnJoinPoint = tagsBasedOnJoinPoint;
+        this(builder(registry)
+                .tagsBasedOnStaticPart(staticPart -> Tags.empty())
+                .tagsBasedOnJoinPoint(tagsBasedOnJoinPoint));
+    }
+
+    private ReactorTimedAspect(Builder builder) {
+        this.registry = builder.registry;
+        this.tagsBasedOnStaticPart = builder.tagsBasedOnStaticPart;
+        this.tagsBasedOnJoinPoint = builder.tagsBasedOnJoinPoint;
+        this.tagsBasedOnContext = builder.tagsBasedOnContext;
+        this.threadTypeTag = builder.threadTypeTag;
+        this.sampling = builder.sampling;
+        this.bufferedRecorder = builder.bufferedRecorder;
+        this.cardinalityLimiter = builder.cardinalityLimiter;
+        this.payloadSize = builder.payloadSize;
+        this.outlierRecorder = builder.outlierRecorder;
+    }
+
+    /**
+     * Starts building a {@code ReactorTimedAspect}.
+     *
+     * @param registry where to register the timers
+     * @return builder
+     */
+    public static Builder builder(MeterRegistry registry) {
+        return new Builder(registry);
     }
 
     @Pointcut("execution(reactor.core.publisher.Mono *..*.*(..))")
@@ -87,178 +234,629 @@ public class ReactorTimedAspect {
     private void returnsFlux() {
     }
 
+    @Pointcut("execution(reactor.core.publisher.ParallelFlux *..*.*(..))")
+    private void returnsParallelFlux() {
+    }
+
+    @Pointcut("execution(org.reactivestreams.Publisher *..*.*(..))"
+            + " || execution(reactor.core.CorePublisher *..*.*(..))")
+    private void returnsPublisher() {
+    }
+
+    @Pointcut("execution(java.util.concurrent.CompletionStage+ *..*.*(..))")
+    private void returnsCompletionStage() {
+    }
+
     @Pointcut("execution (@io.micrometer.core.annotation.Timed * *.*(..))")
     private void timedMethod() {
     }
 
-    @Around("timedMethod() && (returnsMono() || returnsFlux())")
+    @Around("timedMethod() && (returnsMono() || returnsFlux() || returnsParallelFlux() || returnsPublisher()"
+            + " || returnsCompletionStage())")
     public Object timedMonoMethod(ProceedingJoinPoint pjp) throws Throwable {
-        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
-        Timed timed = method.getAnnotation(Timed.class);
-        if (timed == null) {
-            method = pjp.getTarget().getClass().getMethod(method.getName(), method.getParameterTypes());
-            timed = method.getAnnotation(Timed.class);
+        final TimedMethod timedMethod = timedMethod(pjp);
+
+        // sampling only decides whether the invocation is timed, everything else is done the same way
+        boolean sampled = timedMethod.longTask || timedMethod.sampler.sample() != 0;
+
+        switch (timedMethod.kind) {
+            case PARALLEL_FLUX:
+                return processParallelFlux(pjp, timedMethod, sampled);
+            case COMPLETION_STAGE:
+                return processCompletionStage(pjp, timedMethod, sampled);
+            case PUBLISHER:
+                return processPublisher(pjp, timedMethod, sampled);
+            case OTHER:
+                return pjp.proceed();
+            case MONO:
+                return processMono(pjp, timedMethod, sampled, () -> proceedWithMono(pjp, timedMethod));
+            default:
+                return processFlux(pjp, timedMethod, sampled, () -> proceedWithFlux(pjp, timedMethod));
         }
+    }
 
-        final String metricName = timed.value().isEmpty() ? DEFAULT_METRIC_NAME : timed.value();
-        final boolean isMono = Mono.class.isAssignableFrom(method.getReturnType());
+    /**
+     * Meters the subscriptions to the {@link Mono} the source returns, the source being called on each
+     * subscription.
+     */
+    private Mono<?> processMono(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled,
+            Supplier<Mono<?>> source) {
+        Mono<?> mono;
+        if (!timedMethod.longTask) {
+            mono = processMonoWithTimer(pjp, timedMethod, sampled, source);
+        } else if (timedMethod.stripedLongTaskTimers != null) {
+            mono = processMonoWithStripedLongTaskTimer(pjp, timedMethod, timedMethod.stripedLongTaskTimers, source);
+        } else {
+            mono = processMonoWithLongTaskTimer(pjp, timedMethod, source);
+        }
+        if (timedMethod.firstElementTimer != null) {
+            mono = timeToFirstElement(mono, pjp, timedMethod, timedMethod.firstElementTimer);
+        }
+        if (timedMethod.activeSubscriptions != null) {
+            mono = trackActiveSubscriptions(mono, pjp, timedMethod, timedMethod.activeSubscriptions);
+        }
+        if (timedMethod.attemptMeters != null) {
+            mono = trackAttempts(mono, pjp, timedMethod, timedMethod.attemptMeters);
+        }
+        return mono;
+    }
 
-        if (isMono) {
-            if (!timed.longTask()) {
-                return processMonoWithTimer(pjp, timed, metricName);
-            } else {
-                return processMonoWithLongTaskTimer(pjp, timed, metricName);
-            }
+    /**
+     * Meters the subscriptions to the {@link Flux} the source returns, the source being called on each
+     * subscription.
+     */
+    private Flux<?> processFlux(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled,
+            Supplier<Flux<?>> source) {
+        Flux<?> flux;
+        if (!timedMethod.longTask) {
+            flux = processFluxWithTimer(pjp, timedMethod, sampled, source);
+        } else if (timedMethod.stripedLongTaskTimers != null) {
+            flux = processFluxWithStripedLongTaskTimer(pjp, timedMethod, timedMethod.stripedLongTaskTimers, source);
         } else {
-            if (!timed.longTask()) {
-                return processFluxWithTimer(pjp, timed, metricName);
-            } else {
-                return processFluxWithLongTaskTimer(pjp, timed, metricName);
+            flux = processFluxWithLongTaskTimer(pjp, timedMethod, source);
+        }
+        if (timedMethod.elementMeters != null) {
+            flux = meterElements(flux, pjp, timedMethod, timedMethod.elementMeters);
+        }
+        if (timedMethod.payloadMeters != null) {
+            flux = meterPayload(flux, pjp, timedMethod, timedMethod.payloadMeters);
+        }
+        if (timedMethod.firstElementTimer != null) {
+            flux = timeToFirstElement(flux, pjp, timedMethod, timedMethod.firstElementTimer);
+        }
+        if (timedMethod.demandMeters != null) {
+            flux = meterDemand(flux, pjp, timedMethod, timedMethod.demandMeters);
+        }
+        if (timedMethod.activeSubscriptions != null) {
+            flux = trackActiveSubscriptions(flux, pjp, timedMethod, timedMethod.activeSubscriptions);
+        }
+        if (timedMethod.attemptMeters != null) {
+            flux = trackAttempts(flux, pjp, timedMethod, timedMethod.attemptMeters);
+        }
+        return flux;
+    }
+
+    /**
+     * A method declared to return a {@link Publisher} may return a {@link Mono}, which must stay a {@link Mono}
+     * for the caller, so the method is invoked right away, like it would be without the aspect, and the
+     * subscriptions to its result are metered like those of a {@link Mono} or a {@link Flux} method. An exception
+     * thrown by the method is signalled on subscription, like for these methods.
+     */
+    private Object processPublisher(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled) {
+        Flux<?> flux;
+        try {
+            Object invocationResult = proceed(pjp, timedMethod);
+            if (invocationResult instanceof Mono) {
+                Mono<?> mono = (Mono<?>) invocationResult;
+                return processMono(pjp, timedMethod, sampled, () -> mono);
+            }
+            if (!(invocationResult instanceof Publisher)) {
+                return invocationResult;
             }
+            flux = Flux.from((Publisher<?>) invocationResult);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            flux = Flux.error(ex);
         }
+        Flux<?> result = flux;
+        return processFlux(pjp, timedMethod, sampled, () -> result);
     }
 
-    private Mono<?> processMonoWithTimer(ProceedingJoinPoint pjp, Timed timed, String metricName) {
-        return Mono.defer(() -> {
-            Timer.Sample sample = Timer.start(registry);
+    private TimedMethod timedMethod(ProceedingJoinPoint pjp) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Object target = pjp.getTarget();
+        Class<?> targetClass = target != null ? target.getClass() : method.getDeclaringClass();
 
-            Object invocationResult;
-            try {
-                invocationResult = pjp.proceed();
-            } catch (Error e) {
-                throw e;
-            } catch (Throwable ex) {
-                record(pjp, timed, metricName, sample, ex.getClass().getSimpleName());
-                return Mono.error(ex);
+        ConcurrentMap<Method, TimedMethod> timedMethods = timedMethodsByTargetClass.get(targetClass);
+        TimedMethod timedMethod = timedMethods.get(method);
+        if (timedMethod == null) {
+            timedMethod = new TimedMethod(method, targetClass, pjp.getStaticPart());
+            TimedMethod existing = timedMethods.putIfAbsent(method, timedMethod);
+            if (existing != null) {
+                timedMethod = existing;
             }
+        }
+        return timedMethod;
+    }
+
+    private Mono<?> processMonoWithTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled,
+            Supplier<Mono<?>> source) {
+        if (!sampled) {
+            return Mono.defer(source);
+        }
+        if (needsContext()) {
+            Throwable assembly = assemblyTrace();
+            return Mono.deferContextual(context -> MeteredMono.defer(source,
+                    new TimingListener(pjp, timedMethod, contextTags(context), context, assembly)));
+        }
+        return MeteredMono.defer(source, timingListener(pjp, timedMethod));
+    }
+
+    /**
+     * The parallelism of a {@link ParallelFlux} is needed when it is assembled, so unlike for {@link Mono} and
+     * {@link Flux}, the method is invoked right away and the subscriptions to its result are timed. Context tags
+     * are not supported, and neither are long task timers: the result is returned as is for them.
+     */
+    private Object processParallelFlux(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled)
+            throws Throwable {
+        if (timedMethod.longTask) {
+            return pjp.proceed();
+        }
 
-            if (!(invocationResult instanceof Mono)) {
-                return Mono.error(new IllegalStateException(
-                        "Only Mono is supported, should not be here, got " + invocationResult));
+        MeteringListener listener = sampled ? timingListener(pjp, timedMethod) : null;
+        long startTime = listener != null ? listener.startTime() : 0;
+        Object invocationResult;
+        try {
+            invocationResult = proceed(pjp, timedMethod);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            if (listener != null) {
+                listener.onError(startTime, ex);
             }
+            throw ex;
+        }
 
-            Mono<?> mono = (Mono<?>) invocationResult;
-            return mono.doOnSuccess(result -> recordSuccess(pjp, timed, metricName, sample))
-                    .doOnError(throwable -> recordFailure(pjp, timed, metricName, sample, throwable))
-                    .doOnCancel(() -> recordCancallation(pjp, timed, metricName, sample));
-        });
+        if (!(invocationResult instanceof ParallelFlux)) {
+            return invocationResult;
+        }
+
+        ParallelFlux<?> parallelFlux = (ParallelFlux<?>) invocationResult;
+        if (listener != null) {
+            parallelFlux = MeteredParallelFlux.wrap(parallelFlux, listener);
+        }
+        RailMeters railMeters = timedMethod.railMeters != null
+                ? railMeters(pjp, timedMethod, timedMethod.railMeters, parallelFlux.parallelism())
+                : null;
+        if (railMeters != null) {
+            parallelFlux = railMeters.meter(parallelFlux);
+        }
+        return parallelFlux;
+    }
+
+    /**
+     * A {@link CompletionStage} runs as soon as it is created, so the method invocation is timed until the stage
+     * completes. The stage returned by the method is returned as is. Context tags are not supported.
+     */
+    private Object processCompletionStage(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled)
+            throws Throwable {
+        if (timedMethod.longTask) {
+            return processCompletionStageWithLongTaskTimer(pjp, timedMethod);
+        }
+        if (!sampled) {
+            return proceed(pjp, timedMethod);
+        }
+
+        MeteringListener listener = timingListener(pjp, timedMethod);
+        long startTime = listener.startTime();
+        Object invocationResult;
+        try {
+            invocationResult = proceed(pjp, timedMethod);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            listener.onError(startTime, ex);
+            throw ex;
+        }
+
+        if (invocationResult instanceof CompletionStage) {
+            MeteredCompletionStage.observe((CompletionStage<?>) invocationResult, listener, startTime);
+        }
+        return invocationResult;
     }
 
-    private void recordSuccess(ProceedingJoinPoint pjp, Timed timed, String metricName, Timer.Sample sample) {
-        record(pjp, timed, metricName, sample, DEFAULT_EXCEPTION_TAG_VALUE);
+    private Object processCompletionStageWithLongTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod)
+            throws Throwable {
+        LongTaskTimer.Sample sample = startLongTask(pjp, timedMethod);
+
+        Object invocationResult;
+        try {
+            invocationResult = proceed(pjp, timedMethod);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            stopTimer(sample);
+            throw ex;
+        }
+
+        if (invocationResult instanceof CompletionStage) {
+            ((CompletionStage<?>) invocationResult).whenComplete((value, error) -> stopTimer(sample));
+        } else {
+            stopTimer(sample);
+        }
+        return invocationResult;
     }
 
-    private void recordCancallation(ProceedingJoinPoint pjp, Timed timed, String metricName, Timer.Sample sample) {
-        record(pjp, timed, metricName, sample, CANCELLATION_EXCEPTION_TAG_VALUE);
+    @Nullable
+    private RailMeters railMeters(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            MethodMeters<IntFunction<RailMeters>> railMeters, int parallelism) {
+        try {
+            return railMeters.get(() -> methodTags(pjp, timedMethod, RailMeters.DURATION_SUFFIX),
+                    timedMethod.staticTags).apply(parallelism);
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    private Flux<?> processFluxWithTimer(ProceedingJoinPoint pjp, Timed timed, String metricName) {
-        return Flux.defer(() -> {
-            Timer.Sample sample = Timer.start(registry);
+    /**
+     * Rail meters of the given tags, registered once per parallelism.
+     */
+    private IntFunction<RailMeters> railMetersByParallelism(String metricName, Tags tags) {
+        ConcurrentMap<Integer, RailMeters> byParallelism = new ConcurrentHashMap<>();
+        return parallelism -> byParallelism.computeIfAbsent(parallelism,
+                key -> RailMeters.register(registry, metricName, tags, key));
+    }
 
-            Object invocationResult;
+    /**
+     * Invokes the method, timing the invocation with the assembly timer if the method has one.
+     */
+    private Object proceed(ProceedingJoinPoint pjp, TimedMethod timedMethod) throws Throwable {
+        MethodMeters<AssemblyTimer> assemblyTimers = timedMethod.assemblyTimer;
+        if (assemblyTimers == null) {
+            return pjp.proceed();
+        }
+        long startTime = registry.config().clock().monotonicTime();
+        try {
+            return pjp.proceed();
+        } finally {
+            long duration = registry.config().clock().monotonicTime() - startTime;
             try {
-                invocationResult = pjp.proceed();
-            } catch (Error e) {
-                throw e;
-            } catch (Throwable ex) {
-                record(pjp, timed, metricName, sample, ex.getClass().getSimpleName());
-                return Mono.error(ex);
+                assemblyTimers.get(() -> methodTags(pjp, timedMethod, AssemblyTimer.SUFFIX), timedMethod.staticTags)
+                        .record(duration);
+            } catch (Exception e) {
+                // ignoring on purpose
             }
+        }
+    }
 
-            if (!(invocationResult instanceof Flux)) {
-                return Flux.error(new IllegalStateException(
-                        "Only Flux is supported, should not be here, got " + invocationResult));
-            }
+    private Mono<?> proceedWithMono(ProceedingJoinPoint pjp, TimedMethod timedMethod) {
+        Object invocationResult;
+        try {
+            invocationResult = proceed(pjp, timedMethod);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            return Mono.error(ex);
+        }
 
-            Flux<?> flux = (Flux<?>) invocationResult;
-            return flux.doOnComplete(() -> recordSuccess(pjp, timed, metricName, sample))
-                    .doOnError(throwable -> recordFailure(pjp, timed, metricName, sample, throwable))
-                    .doOnCancel(() -> recordCancallation(pjp, timed, metricName, sample));
-        });
+        if (!(invocationResult instanceof Mono)) {
+            return Mono.error(new IllegalStateException(
+                    "Only Mono is supported, should not be here, got " + invocationResult));
+        }
+
+        return (Mono<?>) invocationResult;
     }
 
-    private void recordFailure(ProceedingJoinPoint pjp, Timed timed, String metricName, Timer.Sample sample,
-            Throwable throwable) {
-        record(pjp, timed, metricName, sample, getExceptionTag(throwable));
+    private Flux<?> processFluxWithTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod, boolean sampled,
+            Supplier<Flux<?>> source) {
+        if (!sampled) {
+            return Flux.defer(() -> source.get());
+        }
+        if (needsContext()) {
+            Throwable assembly = assemblyTrace();
+            return Flux.deferContextual(context -> MeteredFlux.defer(source,
+                    new TimingListener(pjp, timedMethod, contextTags(context), context, assembly)));
+        }
+        return MeteredFlux.defer(source, timingListener(pjp, timedMethod));
+    }
+
+    private Flux<?> proceedWithFlux(ProceedingJoinPoint pjp, TimedMethod timedMethod) {
+        Object invocationResult;
+        try {
+            invocationResult = proceed(pjp, timedMethod);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ex) {
+            return Flux.error(ex);
+        }
+
+        if (!(invocationResult instanceof Publisher)) {
+            return Flux.error(new IllegalStateException(
+                    "Only Publisher is supported, should not be here, got " + invocationResult));
+        }
+
+        return Flux.from((Publisher<?>) invocationResult);
+    }
+
+    /**
+     * Whether the subscriber context is needed by the timing listener.
+     */
+    private boolean needsContext() {
+        return tagsBasedOnContext != null || outlierRecorder != null && outlierRecorder.capturesContext();
+    }
+
+    private Tags contextTags(ContextView context) {
+        ContextTags tagsBasedOnContext = this.tagsBasedOnContext;
+        return tagsBasedOnContext != null ? tagsBasedOnContext.tags(context) : Tags.empty();
+    }
+
+    @Nullable
+    private Throwable assemblyTrace() {
+        OutlierRecorder outlierRecorder = this.outlierRecorder;
+        return outlierRecorder != null && outlierRecorder.capturesAssemblyTrace()
+                ? new Throwable("Subscription assembled here") : null;
     }
 
-    private void record(ProceedingJoinPoint pjp, Timed timed, String metricName, Timer.Sample sample,
+    private void record(ProceedingJoinPoint pjp, TimedMethod timedMethod, Tags contextTags, long duration,
             String exceptionClass) {
         try {
-            sample.stop(Timer.builder(metricName)
-                    .description(timed.description().isEmpty() ? null : timed.description())
-                    .tags(timed.extraTags())
-                    .tags(EXCEPTION_TAG, exceptionClass)
-                    .tags(tagsBasedOnJoinPoint.apply(pjp))
-                    .publishPercentileHistogram(timed.histogram())
-                    .publishPercentiles(timed.percentiles().length == 0 ? null : timed.percentiles())
-                    .register(registry));
+            ThreadType threadType = threadTypeTag ? ThreadType.current() : null;
+            if (threadType != null && (timedMethod.threadTypeTimers == null || timedMethod.stripedTimers != null)) {
+                contextTags = contextTags.and(threadType.tags());
+            }
+
+            if (timedMethod.stripedTimers != null) {
+                // striped timers are cheap to record to from any thread, so they are not buffered
+                stripedTimer(pjp, timedMethod, timedMethod.stripedTimers, contextTags, exceptionClass)
+                        .record(duration);
+                return;
+            }
+
+            OutcomeTimers timers = threadType != null && timedMethod.threadTypeTimers != null
+                    ? timedMethod.threadTypeTimers.timers(threadType)
+                    : methodTimers(timedMethod, contextTags);
+            Timer timer = timers != null ? timers.timer(exceptionClass)
+                    : buildTimer(timedMethod, contextTags, exceptionClass, tagsBasedOnJoinPoint(pjp));
+            if (bufferedRecorder != null) {
+                bufferedRecorder.record(timer, duration);
+            } else {
+                timer.record(duration, TimeUnit.NANOSECONDS);
+            }
         } catch (Exception e) {
             // ignoring on purpose
         }
     }
 
-    private String getExceptionTag(Throwable throwable) {
+    /**
+     * Returns the timers cache for the given context tags, or {@code null} if the timers cannot be cached.
+     */
+    @Nullable
+    private OutcomeTimers methodTimers(TimedMethod timedMethod, Tags contextTags) {
+        OutcomeTimers timers = timedMethod.timers;
+        ContextTags tagsBasedOnContext = this.tagsBasedOnContext;
+        if (timers == null || tagsBasedOnContext == null) {
+            return timers;
+        }
+        timers = timedMethod.timersByContextTags.get(contextTags);
+        if (timers == null) {
+            // past the interned combinations, context tags are new instances each time, so stop caching there
+            if (timedMethod.timersByContextTags.size() >= tagsBasedOnContext.maxCached()) {
+                return null;
+            }
+            timers = timedMethod.timersByContextTags.computeIfAbsent(contextTags,
+                    tags -> outcomeTimers(timedMethod, tags));
+        }
+        return timers;
+    }
 
-        if (throwable.getCause() == null) {
-            return throwable.getClass().getSimpleName();
+    private StripedTimer stripedTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            StripedTimers stripedTimers, Tags contextTags, String exceptionClass) {
+        // the striped timer meters are bound to the StripedTimer instance, so it must be the same one for the same
+        // tags; if the tags are static, the exception tag is enough to tell them
+        boolean staticTags = timedMethod.staticTags && tagsBasedOnContext == null && !threadTypeTag;
+        StripedTimer stripedTimer;
+        if (staticTags) {
+            stripedTimer = stripedTimers.byException.get(exceptionClass);
+            if (stripedTimer != null) {
+                return stripedTimer;
+            }
+        }
+        Tags tags = timerTags(timedMethod, contextTags, exceptionClass, tagsBasedOnJoinPoint(pjp));
+        stripedTimer = stripedTimers.byTags.get(tags);
+        if (stripedTimer == null) {
+            stripedTimer = stripedTimers.byTags.computeIfAbsent(tags, key -> StripedTimer.register(registry,
+                    timedMethod.metricName, timedMethod.description, tags));
+        }
+        if (staticTags) {
+            stripedTimers.byException.putIfAbsent(exceptionClass, stripedTimer);
         }
+        return stripedTimer;
+    }
+
+    /**
+     * Striped timers of a method. Different exception tag values may share a timer (when the cardinality limit
+     * collapses them), so the timers are owned by their tags, and only looked up by the exception tag value as
+     * a shortcut when the tags are static.
+     */
+    private static class StripedTimers {
+        final ConcurrentMap<Tags, StripedTimer> byTags = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, StripedTimer> byException = new ConcurrentHashMap<>();
+    }
 
-        return throwable.getCause().getClass().getSimpleName();
+    private Tags timerTags(TimedMethod timedMethod, Tags contextTags, String exceptionClass,
+            Iterable<Tag> joinPointTags) {
+        return limitTags(timedMethod.metricName, timedMethod.fixedTags,
+                Tags.of(EXCEPTION_TAG, exceptionClass).and(joinPointTags).and(contextTags));
+    }
+
+    /**
+     * Combines fixed tags (only depending on the method) with variable ones, collapsing the variable ones into
+     * an overflow bucket if the metric has too many tag combinations.
+     */
+    private Tags limitTags(String name, Tags fixedTags, Iterable<Tag> variableTags) {
+        CardinalityLimiter cardinalityLimiter = this.cardinalityLimiter;
+        if (cardinalityLimiter == null) {
+            return fixedTags.and(variableTags);
+        }
+        return cardinalityLimiter.limit(name, fixedTags, variableTags);
     }
 
-    private Mono<?> processMonoWithLongTaskTimer(ProceedingJoinPoint pjp, Timed timed, String metricName) {
+    /**
+     * Timers of a method for the given context tags, resolved on first use. Only used when there are no tags based
+     * on the join point, as these are not known to the timers.
+     */
+    private OutcomeTimers outcomeTimers(TimedMethod timedMethod, Tags contextTags) {
+        return OutcomeTimers.create(registry.config().clock(),
+                exceptionClass -> buildTimer(timedMethod, contextTags, exceptionClass, Tags.empty()));
+    }
+
+    private Timer buildTimer(TimedMethod timedMethod, Tags contextTags, String exceptionClass,
+            Iterable<Tag> joinPointTags) {
+        return Timer.builder(timedMethod.metricName)
+                .description(timedMethod.description)
+                .tags(timerTags(timedMethod, contextTags, exceptionClass, joinPointTags))
+                .publishPercentileHistogram(timedMethod.histogram)
+                .publishPercentiles(timedMethod.percentiles)
+                .register(registry);
+    }
+
+    private <T> Flux<T> meterElements(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<ElementMeters> elementMeters) {
+        return Flux.defer(() -> {
+            ElementMeters meters = methodMeters(elementMeters, pjp, timedMethod, ElementMeters.ELEMENTS_SUFFIX);
+            return meters != null ? meters.meter(flux) : flux;
+        });
+    }
+
+    private <T> Flux<T> meterPayload(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<PayloadMeters> payloadMeters) {
+        return Flux.defer(() -> {
+            PayloadMeters meters = methodMeters(payloadMeters, pjp, timedMethod, PayloadMeters.PAYLOAD_SUFFIX);
+            return meters != null ? meters.meter(flux) : flux;
+        });
+    }
+
+    private <T> Mono<T> timeToFirstElement(Mono<T> mono, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<FirstElementTimer> firstElementTimer) {
         return Mono.defer(() -> {
-            Optional<LongTaskTimer.Sample> sample = buildLongTaskTimer(pjp, timed, metricName)
-                    .map(LongTaskTimer::start);
+            FirstElementTimer timer = methodMeters(firstElementTimer, pjp, timedMethod, FirstElementTimer.SUFFIX);
+            return timer != null ? timer.time(mono) : mono;
+        });
+    }
 
-            Object invocationResult;
-            try {
-                invocationResult = pjp.proceed();
-            } catch (Error e) {
-                throw e;
-            } catch (Throwable ex) {
-                sample.ifPresent(this::stopTimer);
-                return Mono.error(ex);
-            }
+    private <T> Flux<T> timeToFirstElement(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<FirstElementTimer> firstElementTimer) {
+        return Flux.defer(() -> {
+            FirstElementTimer timer = methodMeters(firstElementTimer, pjp, timedMethod, FirstElementTimer.SUFFIX);
+            return timer != null ? timer.time(flux) : flux;
+        });
+    }
 
-            if (!(invocationResult instanceof Mono)) {
-                return Mono.error(new IllegalStateException(
-                        "Only Mono is supported, should not be here, got " + invocationResult));
-            }
+    private <T> Flux<T> meterDemand(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<DemandMeters> demandMeters) {
+        return Flux.defer(() -> {
+            DemandMeters meters = methodMeters(demandMeters, pjp, timedMethod, DemandMeters.REQUESTED_SUFFIX);
+            return meters != null ? meters.meter(flux) : flux;
+        });
+    }
 
-            Mono<?> mono = (Mono<?>) invocationResult;
-            return mono.doFinally(signalType -> sample.ifPresent(this::stopTimer));
+    private <T> Mono<T> trackActiveSubscriptions(Mono<T> mono, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<ActiveSubscriptions> activeSubscriptions) {
+        return Mono.defer(() -> {
+            ActiveSubscriptions subscriptions = methodMeters(activeSubscriptions, pjp, timedMethod,
+                    ActiveSubscriptions.ACTIVE_SUFFIX);
+            return subscriptions != null ? subscriptions.track(mono) : mono;
         });
     }
 
-    private Flux<?> processFluxWithLongTaskTimer(ProceedingJoinPoint pjp, Timed timed, String metricName) {
+    private <T> Flux<T> trackActiveSubscriptions(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<ActiveSubscriptions> activeSubscriptions) {
         return Flux.defer(() -> {
-            Optional<LongTaskTimer.Sample> sample = buildLongTaskTimer(pjp, timed, metricName)
-                    .map(LongTaskTimer::start);
+            ActiveSubscriptions subscriptions = methodMeters(activeSubscriptions, pjp, timedMethod,
+                    ActiveSubscriptions.ACTIVE_SUFFIX);
+            return subscriptions != null ? subscriptions.track(flux) : flux;
+        });
+    }
 
-            Object invocationResult;
-            try {
-                invocationResult = pjp.proceed();
-            } catch (Error e) {
-                throw e;
-            } catch (Throwable ex) {
-                sample.ifPresent(this::stopTimer);
-                return Mono.error(ex);
-            }
+    private <T> Mono<T> trackAttempts(Mono<T> mono, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<AttemptMeters> attemptMeters) {
+        return Mono.defer(() -> {
+            AttemptMeters meters = methodMeters(attemptMeters, pjp, timedMethod, AttemptMeters.ATTEMPTS_SUFFIX);
+            return meters != null ? meters.track(mono) : mono;
+        });
+    }
 
-            if (!(invocationResult instanceof Flux)) {
-                return Flux.error(new IllegalStateException(
-                        "Only Flux is supported, should not be here, got " + invocationResult));
-            }
+    private <T> Flux<T> trackAttempts(Flux<T> flux, ProceedingJoinPoint pjp,
+            TimedMethod timedMethod, MethodMeters<AttemptMeters> attemptMeters) {
+        return Flux.defer(() -> {
+            AttemptMeters meters = methodMeters(attemptMeters, pjp, timedMethod, AttemptMeters.ATTEMPTS_SUFFIX);
+            return meters != null ? meters.track(flux) : flux;
+        });
+    }
 
-            Flux<?> flux = (Flux<?>) invocationResult;
-            return flux.doFinally(signalType -> sample.ifPresent(this::stopTimer));
+    /**
+     * Tags of the meters that are not split by outcome.
+     */
+    private Tags methodTags(ProceedingJoinPoint pjp, TimedMethod timedMethod, String suffix) {
+        // the meters sharing these tags are limited together, under the name of one of them
+        return limitTags(timedMethod.metricName + suffix, timedMethod.fixedTags,
+                tagsBasedOnJoinPoint(pjp));
+    }
+
+    private Iterable<Tag> tagsBasedOnJoinPoint(ProceedingJoinPoint pjp) {
+        return tagsBasedOnJoinPoint == null ? Tags.empty() : tagsBasedOnJoinPoint.apply(pjp);
+    }
+
+    private Mono<?> processMonoWithLongTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            Supplier<Mono<?>> source) {
+        return Mono.defer(() -> {
+            LongTaskTimer.Sample sample = startLongTask(pjp, timedMethod);
+            // an exception thrown by the method is signalled as an error, which stops the timer too
+            return source.get().doFinally(signalType -> stopTimer(sample));
         });
     }
 
-    private void stopTimer(LongTaskTimer.Sample sample) {
+    private Flux<?> processFluxWithLongTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            Supplier<Flux<?>> source) {
+        return Flux.defer(() -> {
+            LongTaskTimer.Sample sample = startLongTask(pjp, timedMethod);
+            // an exception thrown by the method is signalled as an error, which stops the timer too
+            return source.get().doFinally(signalType -> stopTimer(sample));
+        });
+    }
+
+    private Mono<?> processMonoWithStripedLongTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            MethodMeters<StripedLongTaskTimer> stripedLongTaskTimers, Supplier<Mono<?>> source) {
+        return Mono.defer(() -> {
+            StripedLongTaskTimer timer = methodMeters(stripedLongTaskTimers, pjp, timedMethod,
+                    StripedLongTaskTimer.ACTIVE_TASKS_SUFFIX);
+            return timer != null ? timer.track(source.get()) : source.get();
+        });
+    }
+
+    private Flux<?> processFluxWithStripedLongTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            MethodMeters<StripedLongTaskTimer> stripedLongTaskTimers, Supplier<Flux<?>> source) {
+        return Flux.defer(() -> trackLongTask(source.get(), pjp, timedMethod, stripedLongTaskTimers));
+    }
+
+    private <T> Flux<T> trackLongTask(Flux<T> flux, ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            MethodMeters<StripedLongTaskTimer> stripedLongTaskTimers) {
+        StripedLongTaskTimer timer = methodMeters(stripedLongTaskTimers, pjp, timedMethod,
+                StripedLongTaskTimer.ACTIVE_TASKS_SUFFIX);
+        return timer != null ? timer.track(flux) : flux;
+    }
+
+    @Nullable
+    private LongTaskTimer.Sample startLongTask(ProceedingJoinPoint pjp, TimedMethod timedMethod) {
+        LongTaskTimer longTaskTimer = longTaskTimer(pjp, timedMethod);
+        return longTaskTimer != null ? longTaskTimer.start() : null;
+    }
+
+    private void stopTimer(@Nullable LongTaskTimer.Sample sample) {
+        if (sample == null) {
+            return;
+        }
         try {
             sample.stop();
         } catch (Exception e) {
@@ -267,17 +865,517 @@ public class ReactorTimedAspect {
     }
 
     /**
-     * Secure long task timer creation - it should not disrupt the application flow in case of exception
+     * Secure creation of the meters of a method - it should not disrupt the application flow in case of
+     * exception, so the publisher is returned without them then.
+     */
+    @Nullable
+    private <M> M methodMeters(MethodMeters<M> meters, ProceedingJoinPoint pjp, TimedMethod timedMethod,
+            String suffix) {
+        try {
+            return meters.get(() -> methodTags(pjp, timedMethod, suffix), timedMethod.staticTags);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Secure long task timer creation - it should not disrupt the application flow in case of exception. The timer
+     * is resolved once per method if its tags do not depend on the invocation.
      */
-    private Optional<LongTaskTimer> buildLongTaskTimer(ProceedingJoinPoint pjp, Timed timed, String metricName) {
+    @Nullable
+    private LongTaskTimer longTaskTimer(ProceedingJoinPoint pjp, TimedMethod timedMethod) {
         try {
-            return Optional.of(LongTaskTimer.builder(metricName)
-                                       .description(timed.description().isEmpty() ? null : timed.description())
-                                       .tags(timed.extraTags())
-                                       .tags(tagsBasedOnJoinPoint.apply(pjp))
-                                       .register(registry));
+            return timedMethod.longTaskTimer.get(() -> methodTags(pjp, timedMethod, ""), timedMethod.staticTags);
         } catch (Exception e) {
-            return Optional.empty();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the listener timing the subscriptions of an invocation without context tags: the listener shared
+     * by the invocations of the method if it has one, so nothing is allocated for it.
+     */
+    private MeteringListener timingListener(ProceedingJoinPoint pjp, TimedMethod timedMethod) {
+        MeteringListener sharedListener = timedMethod.sharedTimingListener;
+        if (sharedListener != null) {
+            return sharedListener;
+        }
+        return new TimingListener(pjp, timedMethod, Tags.empty(), null, assemblyTrace());
+    }
+
+    private void captureIfOutlier(TimedMethod timedMethod, long duration, long now, SignalType signal,
+            @Nullable Throwable error, @Nullable ContextView context, @Nullable Throwable assembly) {
+        OutlierRecorder.Threshold threshold = timedMethod.outlierThreshold;
+        OutlierRecorder outlierRecorder = this.outlierRecorder;
+        if (threshold == null || outlierRecorder == null || !threshold.isExceeded(duration, now)) {
+            return;
+        }
+        try {
+            outlierRecorder.record(new Outlier(timedMethod.signature, duration, signal,
+                    error != null ? error.getClass().getName() : null, Thread.currentThread().getName(),
+                    Instant.ofEpochMilli(registry.config().clock().wallTime()),
+                    outlierRecorder.contextValues(context), assembly != null ? assembly.getStackTrace() : null));
+        } catch (Exception e) {
+            // ignoring on purpose
+        }
+    }
+
+    /**
+     * Records the duration of each subscription to the cached timers of a method and captures the outliers,
+     * like {@link TimingListener}, but without keeping anything per subscription, so a single instance serves
+     * all the invocations of the method. Only used if the outliers include neither context values nor assembly
+     * traces.
+     */
+    private class OutlierCapturingTimers implements MeteringListener {
+        private final TimedMethod timedMethod;
+
+        OutlierCapturingTimers(TimedMethod timedMethod) {
+            this.timedMethod = timedMethod;
+        }
+
+        @Override
+        public long startTime() {
+            return registry.config().clock().monotonicTime();
+        }
+
+        @Override
+        public void onSuccess(long startTime) {
+            record(startTime, DEFAULT_EXCEPTION_TAG_VALUE, SignalType.ON_COMPLETE, null);
+        }
+
+        @Override
+        public void onError(long startTime, Throwable error) {
+            record(startTime, OutcomeTimers.exceptionTag(error), SignalType.ON_ERROR, error);
+        }
+
+        @Override
+        public void onCancel(long startTime) {
+            record(startTime, CANCELLATION_EXCEPTION_TAG_VALUE, SignalType.CANCEL, null);
+        }
+
+        private void record(long startTime, String exceptionTag, SignalType signal, @Nullable Throwable error) {
+            long now = registry.config().clock().monotonicTime();
+            try {
+                ThreadTypeTimers threadTypeTimers = timedMethod.threadTypeTimers;
+                OutcomeTimers timers = threadTypeTimers != null ? threadTypeTimers.timers(ThreadType.current())
+                        : timedMethod.timers;
+                if (timers != null) {
+                    timers.timer(exceptionTag).record(now - startTime, TimeUnit.NANOSECONDS);
+                }
+            } catch (Exception e) {
+                // ignoring on purpose
+            }
+            captureIfOutlier(timedMethod, now - startTime, now, signal, error, null, null);
+        }
+    }
+
+    /**
+     * Records the duration of each subscription to the timer matching its outcome.
+     */
+    private class TimingListener implements MeteringListener {
+        private final ProceedingJoinPoint pjp;
+        private final TimedMethod timedMethod;
+        private final Tags contextTags;
+
+        /**
+         * Context of the subscription, only kept if outliers include context values.
+         */
+        @Nullable
+        private final ContextView context;
+
+        /**
+         * Where the subscription was set up, only taken if outliers include it.
+         */
+        @Nullable
+        private final Throwable assembly;
+
+        TimingListener(ProceedingJoinPoint pjp, TimedMethod timedMethod, Tags contextTags,
+                @Nullable ContextView context, @Nullable Throwable assembly) {
+            this.pjp = pjp;
+            this.timedMethod = timedMethod;
+            this.contextTags = contextTags;
+            this.context = context;
+            this.assembly = assembly;
+        }
+
+        @Override
+        public long startTime() {
+            return registry.config().clock().monotonicTime();
+        }
+
+        @Override
+        public void onSuccess(long startTime) {
+            long now = registry.config().clock().monotonicTime();
+            record(pjp, timedMethod, contextTags, now - startTime, DEFAULT_EXCEPTION_TAG_VALUE);
+            captureIfOutlier(timedMethod, now - startTime, now, SignalType.ON_COMPLETE, null, context, assembly);
+        }
+
+        @Override
+        public void onError(long startTime, Throwable error) {
+            long now = registry.config().clock().monotonicTime();
+            record(pjp, timedMethod, contextTags, now - startTime, OutcomeTimers.exceptionTag(error));
+            captureIfOutlier(timedMethod, now - startTime, now, SignalType.ON_ERROR, error, context, assembly);
+        }
+
+        @Override
+        public void onCancel(long startTime) {
+            long now = registry.config().clock().monotonicTime();
+            record(pjp, timedMethod, contextTags, now - startTime, CANCELLATION_EXCEPTION_TAG_VALUE);
+            captureIfOutlier(timedMethod, now - startTime, now, SignalType.CANCEL, null, context, assembly);
+        }
+    }
+
+    /**
+     * Everything needed to instrument an intercepted method, resolved from its annotations and the aspect
+     * configuration once, so that invocations do not need reflection.
+     * <p>
+     * The additional meters of the method are held by {@link MethodMeters}, which are {@code null} if the method
+     * does not use them; they are registered on first use and only cached per method if {@link #staticTags}.
+     */
+    private class TimedMethod {
+        final String metricName;
+        @Nullable
+        final String description;
+
+        /**
+         * Extra tags of the annotation and tags based on the static part: the tags that only depend on the method.
+         */
+        final Tags fixedTags;
+        final ReturnTypes.Kind kind;
+        final boolean longTask;
+        final boolean histogram;
+        @Nullable
+        final double[] percentiles;
+
+        /**
+         * Whether the tags of the meters are the same for all invocations, so the meters may be cached per method.
+         */
+        final boolean staticTags;
+
+        /**
+         * Resolved timers, or {@code null} if the timers cannot be cached because their tags may differ
+         * between invocations.
+         */
+        @Nullable
+        final OutcomeTimers timers;
+
+        /**
+         * Resolved timers split by the kind of thread, or {@code null} if the timers are not tagged with it or
+         * cannot be cached.
+         */
+        @Nullable
+        final ThreadTypeTimers threadTypeTimers;
+
+        /**
+         * Timers by context tags, used instead of {@link #timers} when tags are derived from the context.
+         */
+        final ConcurrentMap<Tags, OutcomeTimers> timersByContextTags = new ConcurrentHashMap<>();
+
+        /**
+         * Decides which invocations are timed; not consulted for long tasks.
+         */
+        final Sampler sampler;
+
+        /**
+         * Striped timers, or {@code null} if regular timers are used.
+         */
+        @Nullable
+        final StripedTimers stripedTimers;
+
+        /**
+         * The long task timer; not used for {@link Striped} long tasks.
+         */
+        final MethodMeters<LongTaskTimer> longTaskTimer;
+
+        @Nullable
+        final MethodMeters<StripedLongTaskTimer> stripedLongTaskTimers;
+        @Nullable
+        final MethodMeters<ElementMeters> elementMeters;
+        @Nullable
+        final MethodMeters<PayloadMeters> payloadMeters;
+        @Nullable
+        final MethodMeters<FirstElementTimer> firstElementTimer;
+        @Nullable
+        final MethodMeters<AssemblyTimer> assemblyTimer;
+        @Nullable
+        final MethodMeters<DemandMeters> demandMeters;
+        @Nullable
+        final MethodMeters<ActiveSubscriptions> activeSubscriptions;
+        @Nullable
+        final MethodMeters<AttemptMeters> attemptMeters;
+
+        /**
+         * Rail meters by parallelism.
+         */
+        @Nullable
+        final MethodMeters<IntFunction<RailMeters>> railMeters;
+
+        /**
+         * Declaring type and name of the method, identifying it in outliers.
+         */
+        final String signature;
+
+        /**
+         * Threshold of outlier subscriptions, or {@code null} if outliers are not captured.
+         */
+        @Nullable
+        final OutlierRecorder.Threshold outlierThreshold;
+
+        /**
+         * Listener timing the subscriptions of all the invocations without context tags, or {@code null} if
+         * a listener is needed per invocation. If the timers are cached and recorded directly, it is the timers
+         * themselves, like with
+         * {@link com.rpuch.micrometer.reactor.ReactorMetrics#timed(MeterRegistry, String, Iterable)}.
+         */
+        @Nullable
+        final MeteringListener sharedTimingListener;
+
+        TimedMethod(Method method, Class<?> targetClass, JoinPoint.StaticPart staticPart) {
+            Timed timed = MethodAnnotations.findAnnotation(method, targetClass, Timed.class);
+            if (timed == null) {
+                throw new IllegalStateException("No @Timed found on " + method + " or its implementation in "
+                        + targetClass);
+            }
+
+            this.metricName = metricName(timed);
+            this.description = timed.description().isEmpty() ? null : timed.description();
+            this.fixedTags = Tags.of(timed.extraTags()).and(tagsBasedOnStaticPart.apply(staticPart));
+            this.kind = ReturnTypes.kind(method.getReturnType());
+            this.longTask = timed.longTask();
+            this.histogram = timed.histogram();
+            this.percentiles = timed.percentiles().length == 0 ? null : timed.percentiles();
+            this.staticTags = tagsBasedOnJoinPoint == null;
+            // the timers only use this object lazily, when they build a timer
+            this.timers = staticTags ? outcomeTimers(this, Tags.empty()) : null;
+            this.threadTypeTimers = threadTypeTag && staticTags && tagsBasedOnContext == null
+                    ? ThreadTypeTimers.create(registry.config().clock(), type -> outcomeTimers(this, type.tags()))
+                    : null;
+            this.sampler = MethodAnnotations.sampling(method, targetClass, sampling)
+                    .newSampler(registry.config().clock());
+            this.signature = staticPart.getSignature().getDeclaringTypeName() + "."
+                    + staticPart.getSignature().getName();
+            this.outlierThreshold = outlierRecorder != null ? outlierRecorder.newThreshold() : null;
+
+            // striped timers have no histograms or percentiles, so the ones requested in @Timed are ignored
+            boolean striped = MethodAnnotations.findAnnotation(method, targetClass, Striped.class) != null;
+            this.stripedTimers = striped && !longTask ? new StripedTimers() : null;
+            this.longTaskTimer = new MethodMeters<>(tags -> LongTaskTimer.builder(metricName)
+                    .description(description)
+                    .tags(tags)
+                    .register(registry));
+            this.stripedLongTaskTimers = striped && longTask
+                    ? new MethodMeters<>(tags -> StripedLongTaskTimer.register(registry, metricName, description, tags))
+                    : null;
+
+            // a Publisher method may return a Flux, so it gets the Flux meters, applied if it does
+            boolean flux = kind == ReturnTypes.Kind.FLUX || kind == ReturnTypes.Kind.PUBLISHER;
+            MeterElements meterElements = MethodAnnotations.findAnnotation(method, targetClass, MeterElements.class);
+            this.elementMeters = flux && meterElements != null
+                    ? new MethodMeters<>(tags -> ElementMeters.register(registry, metricName, tags,
+                            Math.max(1, meterElements.gapsOneIn())))
+                    : null;
+            this.payloadMeters = flux && isAnnotated(method, targetClass, MeterPayload.class)
+                    ? new MethodMeters<>(tags -> PayloadMeters.register(registry, metricName, tags, payloadSize))
+                    : null;
+            this.demandMeters = flux && isAnnotated(method, targetClass, MeterDemand.class)
+                    ? new MethodMeters<>(tags -> DemandMeters.register(registry, metricName, tags))
+                    : null;
+            this.firstElementTimer = isAnnotated(method, targetClass, TimeToFirstElement.class)
+                    ? new MethodMeters<>(tags -> FirstElementTimer.register(registry, metricName, tags))
+                    : null;
+            this.assemblyTimer = isAnnotated(method, targetClass, TimeAssembly.class)
+                    ? new MethodMeters<>(tags -> AssemblyTimer.register(registry, metricName, tags))
+                    : null;
+            this.activeSubscriptions = isAnnotated(method, targetClass, MeterActiveSubscriptions.class)
+                    ? new MethodMeters<>(tags -> ActiveSubscriptions.register(registry, metricName, tags))
+                    : null;
+            this.attemptMeters = isAnnotated(method, targetClass, MeterAttempts.class)
+                    ? new MethodMeters<>(tags -> AttemptMeters.register(registry, metricName, tags))
+                    : null;
+            this.railMeters = kind == ReturnTypes.Kind.PARALLEL_FLUX
+                    && isAnnotated(method, targetClass, MeterRails.class)
+                    ? new MethodMeters<>(tags -> railMetersByParallelism(metricName, tags))
+                    : null;
+
+            this.sharedTimingListener = sharedTimingListener();
+        }
+
+        @Nullable
+        private MeteringListener sharedTimingListener() {
+            if (stripedTimers != null || bufferedRecorder != null) {
+                return null;
+            }
+            MeteringListener timersListener = threadTypeTimers != null ? threadTypeTimers
+                    : timers != null && !threadTypeTag ? timers : null;
+            OutlierRecorder outlierRecorder = ReactorTimedAspect.this.outlierRecorder;
+            if (timersListener == null || outlierRecorder == null) {
+                return timersListener;
+            }
+            // the context and the assembly trace belong to a subscription, so they need a listener of their own
+            if (outlierRecorder.capturesContext() || outlierRecorder.capturesAssemblyTrace()) {
+                return null;
+            }
+            return new OutlierCapturingTimers(this);
+        }
+
+    }
+
+    private static String metricName(Timed timed) {
+        return timed.value().isEmpty() ? DEFAULT_METRIC_NAME : timed.value();
+    }
+
+    private static boolean isAnnotated(Method method, Class<?> targetClass, Class<? extends Annotation> annotation) {
+        return MethodAnnotations.findAnnotation(method, targetClass, annotation) != null;
+    }
+
+    /**
+     * Builder of {@link ReactorTimedAspect}.
+     */
+    public static class Builder {
+        private final MeterRegistry registry;
+        private Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart =
+                DEFAULT_TAGS_BASED_ON_STATIC_PART;
+        @Nullable
+        private Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint;
+        @Nullable
+        private ContextTags tagsBasedOnContext;
+        private boolean threadTypeTag;
+        private Sampling sampling = Sampling.always();
+        @Nullable
+        private BufferedRecorder bufferedRecorder;
+        @Nullable
+        private CardinalityLimiter cardinalityLimiter;
+        private PayloadSize payloadSize = PayloadSize.defaults();
+        @Nullable
+        private OutlierRecorder outlierRecorder;
+
+        private Builder(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        /**
+         * Sets a function producing tags that only depend on the intercepted method. It is evaluated once
+         * per method, and the resulting timers are resolved once and cached. By default, the {@code class} and
+         * {@code method} tags are produced.
+         *
+         * @param tagsBasedOnStaticPart function producing tags for a method
+         * @return this builder
+         */
+        public Builder tagsBasedOnStaticPart(Function<JoinPoint.StaticPart, Iterable<Tag>> tagsBasedOnStaticPart) {
+            this.tagsBasedOnStaticPart = tagsBasedOnStaticPart;
+            return this;
+        }
+
+        /**
+         * Sets a function producing tags that may depend on the concrete invocation, added to the tags
+         * produced by {@link #tagsBasedOnStaticPart(Function)}. It is evaluated on each recording, so the timers
+         * are not cached when it is set.
+         *
+         * @param tagsBasedOnJoinPoint function producing tags for an invocation
+         * @return this builder
+         */
+        public Builder tagsBasedOnJoinPoint(Function<ProceedingJoinPoint, Iterable<Tag>> tagsBasedOnJoinPoint) {
+            this.tagsBasedOnJoinPoint = tagsBasedOnJoinPoint;
+            return this;
+        }
+
+        /**
+         * Sets tags derived from the Reactor context of each subscription, like a tenant or a route, added to
+         * the timer tags. Resolved tags are interned by {@link ContextTags}, so the timers remain cached as long as
+         * the same context values are seen. Only the timers get these tags, not the additional meters.
+         *
+         * @param tagsBasedOnContext tags to derive from the context
+         * @return this builder
+         */
+        public Builder tagsBasedOnContext(ContextTags tagsBasedOnContext) {
+            this.tagsBasedOnContext = tagsBasedOnContext;
+            return this;
+        }
+
+        /**
+         * Adds the {@link ThreadType#TAG} tag to the timers, telling the kind of thread that emitted the terminal
+         * signal of each subscription: an event loop or another non-blocking thread, an elastic scheduler thread,
+         * or any other thread. The kind of a thread is only worked out once. Only the timers get this tag,
+         * not the additional meters. Disabled by default.
+         *
+         * @param threadTypeTag whether to tag the timers with the kind of thread
+         * @return this builder
+         */
+        public Builder threadTypeTag(boolean threadTypeTag) {
+            this.threadTypeTag = threadTypeTag;
+            return this;
+        }
+
+        /**
+         * Sets the sampling of methods that are not annotated with
+         * {@link com.rpuch.micrometer.reactor.annotation.Sampled @Sampled}. Invocations that are not sampled
+         * are not timed, but otherwise behave the same: the method is still invoked on subscription, and
+         * the additional meters of the method still apply. Long task timers are never sampled.
+         * By default, each invocation is timed.
+         *
+         * @param sampling sampling policy
+         * @return this builder
+         */
+        public Builder sampling(Sampling sampling) {
+            this.sampling = sampling;
+            return this;
+        }
+
+        /**
+         * Makes the aspect update its timers asynchronously through the given recorder, so that the threads
+         * emitting terminal signals only append to a buffer. By default, timers are updated synchronously.
+         * {@link Striped} timers are always updated synchronously, as recording to them is already cheap
+         * and does not contend.
+         *
+         * @param bufferedRecorder recorder to use
+         * @return this builder
+         */
+        public Builder bufferedRecorder(BufferedRecorder bufferedRecorder) {
+            this.bufferedRecorder = bufferedRecorder;
+            return this;
+        }
+
+        /**
+         * Bounds the number of tag combinations registered per metric name and method: past the limit, the
+         * exception tag, the tags produced by {@link #tagsBasedOnJoinPoint(Function)} and the context tags of new
+         * combinations collapse into an overflow bucket. By default, there is no limit.
+         *
+         * @param cardinalityLimiter limiter to use, may be shared with other aspects
+         * @return this builder
+         */
+        public Builder cardinalityLimiter(CardinalityLimiter cardinalityLimiter) {
+            this.cardinalityLimiter = cardinalityLimiter;
+            return this;
+        }
+
+        /**
+         * Sets how the size of the elements of {@link MeterPayload @MeterPayload} methods is told, for example
+         * {@code PayloadSize.defaults().with(DataBuffer.class, DataBuffer::readableByteCount)}. By default,
+         * the sizes of {@code byte[]}, {@code ByteBuffer} and {@code CharSequence} elements are known.
+         *
+         * @param payloadSize sizes of the elements
+         * @return this builder
+         */
+        public Builder payloadSize(PayloadSize payloadSize) {
+            this.payloadSize = payloadSize;
+            return this;
+        }
+
+        /**
+         * Captures the subscriptions of timed methods that are slower than the threshold of the recorder, with
+         * the method, the duration, the terminal signal, the thread and optionally context values and
+         * the assembly trace. Long tasks are not captured. By default, outliers are not captured.
+         *
+         * @param outlierRecorder recorder to capture outliers to, may be shared with other aspects
+         * @return this builder
+         */
+        public Builder outlierRecorder(OutlierRecorder outlierRecorder) {
+            this.outlierRecorder = outlierRecorder;
+            return this;
+        }
+
+        public ReactorTimedAspect build() {
+            return new ReactorTimedAspect(this);
         }
     }
 }
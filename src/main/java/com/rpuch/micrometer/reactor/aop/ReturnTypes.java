@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Classifies intercepted methods by their return types. The classification of each return type is computed
+ * once and cached, so the aspects can afford checking it on every invocation.
+ *
+ * @author Roman Puchkovskiy
+ */
+final class ReturnTypes {
+    /**
+     * How the reactive aspects instrument a method, depending on its return type.
+     */
+    enum Kind {
+        MONO,
+        FLUX,
+        /**
+         * A type both a {@link Mono} and a {@link Flux} may be returned for, like {@link Publisher}; what the
+         * method returns tells how it is instrumented.
+         */
+        PUBLISHER,
+        PARALLEL_FLUX,
+        /**
+         * Any {@link CompletionStage}, like {@link java.util.concurrent.CompletableFuture}.
+         */
+        COMPLETION_STAGE,
+        /**
+         * Not instrumented by the reactive aspects.
+         */
+        OTHER
+    }
+
+    private static final ClassValue<Kind> KINDS = new ClassValue<Kind>() {
+        @Override
+        protected Kind computeValue(Class<?> type) {
+            if (Mono.class.isAssignableFrom(type)) {
+                return Kind.MONO;
+            }
+            if (Flux.class.isAssignableFrom(type)) {
+                return Kind.FLUX;
+            }
+            if (Publisher.class.isAssignableFrom(type) && type.isAssignableFrom(Flux.class)) {
+                return Kind.PUBLISHER;
+            }
+            if (ParallelFlux.class.isAssignableFrom(type)) {
+                return Kind.PARALLEL_FLUX;
+            }
+            if (CompletionStage.class.isAssignableFrom(type)) {
+                return Kind.COMPLETION_STAGE;
+            }
+            return Kind.OTHER;
+        }
+    };
+
+    private ReturnTypes() {
+    }
+
+    static boolean isReactorReturnType(ProceedingJoinPoint pjp) {
+        return isReactorType(((MethodSignature) pjp.getSignature()).getReturnType());
+    }
+
+    /**
+     * Tells whether the reactive aspects instrument methods returning the given type, so that the standard
+     * aspects must leave them alone.
+     *
+     * @param type return type
+     * @return {@code true} if the type is instrumented by the reactive aspects
+     */
+    static boolean isReactorType(Class<?> type) {
+        return kind(type) != Kind.OTHER;
+    }
+
+    static Kind kind(Class<?> type) {
+        return KINDS.get(type);
+    }
+}
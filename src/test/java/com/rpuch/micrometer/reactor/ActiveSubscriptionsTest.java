@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ActiveSubscriptionsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ActiveSubscriptions activeSubscriptions;
+
+    @BeforeEach
+    void init() {
+        activeSubscriptions = ActiveSubscriptions.register(registry, "test", Tags.of("a", "b"));
+    }
+
+    private double active() {
+        return registry.get("test.active").tag("a", "b").gauge().value();
+    }
+
+    private double highWatermark() {
+        return registry.get("test.active.max").tag("a", "b").gauge().value();
+    }
+
+    @Test
+    void activeSubscriptionsAreCounted() {
+        Disposable first = activeSubscriptions.track(Mono.never()).subscribe();
+        Disposable second = activeSubscriptions.track(Flux.never()).subscribe();
+
+        assertThat(active()).isEqualTo(2);
+
+        first.dispose();
+        assertThat(active()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(active()).isZero();
+    }
+
+    @Test
+    void terminatedSubscriptionsAreNotActive() {
+        activeSubscriptions.track(Mono.just("ok")).block();
+        activeSubscriptions.track(Flux.error(new RuntimeException())).onErrorResume(e -> Flux.empty()).blockLast();
+
+        assertThat(active()).isZero();
+    }
+
+    @Test
+    void highWatermarkIsResetOnRead() {
+        Disposable first = activeSubscriptions.track(Flux.never()).subscribe();
+        Disposable second = activeSubscriptions.track(Flux.never()).subscribe();
+        second.dispose();
+
+        assertThat(highWatermark()).isEqualTo(2);
+        assertThat(highWatermark()).isEqualTo(1);
+
+        first.dispose();
+        assertThat(highWatermark()).isEqualTo(1);
+        assertThat(highWatermark()).isZero();
+    }
+
+    @Test
+    void subscriptionsTerminatedOnOtherThreadsAreNotActive() throws Exception {
+        Disposable first = activeSubscriptions.track(Flux.never()).subscribe();
+        Thread thread = new Thread(first::dispose);
+        thread.start();
+        thread.join();
+        // completes on a timer thread
+        activeSubscriptions.track(Mono.delay(Duration.ofMillis(10))).then().block();
+
+        assertThat(active()).isZero();
+        assertThat(highWatermark()).isEqualTo(1);
+        assertThat(highWatermark()).isZero();
+    }
+
+    @Test
+    void subscriptionsOfAllThreadsCountTowardsHighWatermark() throws Exception {
+        Disposable first = activeSubscriptions.track(Flux.never()).subscribe();
+        Disposable[] second = new Disposable[1];
+        Thread thread = new Thread(() -> second[0] = activeSubscriptions.track(Flux.never()).subscribe());
+        thread.start();
+        thread.join();
+
+        assertThat(active()).isEqualTo(2);
+        assertThat(highWatermark()).isEqualTo(2);
+
+        first.dispose();
+        second[0].dispose();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class AssemblyTimerTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AssemblyTimer assemblyTimer = AssemblyTimer.register(registry, "test", Tags.of("a", "b"));
+
+    private Timer timer() {
+        return registry.get("test.assembly").tag("a", "b").timer();
+    }
+
+    @Test
+    void recordedAssembliesAreTimed() {
+        assemblyTimer.record(TimeUnit.MILLISECONDS.toNanos(10));
+        assemblyTimer.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertThat(timer().count()).isEqualTo(2);
+        assertThat(timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(40);
+    }
+
+    @Test
+    void timerIsRegisteredWithDescription() {
+        assertThat(timer().count()).isZero();
+        assertThat(timer().getId().getDescription()).contains("synchronous part");
+    }
+}
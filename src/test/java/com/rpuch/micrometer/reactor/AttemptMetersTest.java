@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class AttemptMetersTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AttemptMeters attemptMeters = AttemptMeters.register(registry, "test", Tags.of("a", "b"));
+
+    private DistributionSummary attempts() {
+        return registry.get("test.attempts").tag("a", "b").summary();
+    }
+
+    private Timer logicalTimer(String exception) {
+        return registry.get("test.logical").tag("a", "b").tag("exception", exception).timer();
+    }
+
+    private Mono<String> monoFailingTimes(int failures) {
+        AtomicInteger remainingFailures = new AtomicInteger(failures);
+        return Mono.defer(() -> remainingFailures.getAndDecrement() > 0
+                ? Mono.error(new IllegalStateException("Oops"))
+                : Mono.just("ok"));
+    }
+
+    @Test
+    void attemptsOfLogicalCallAreCounted() {
+        attemptMeters.track(monoFailingTimes(2))
+                .retry(5)
+                .transform(ReactorMetrics.logicalCall())
+                .block();
+
+        assertThat(attempts().count()).isEqualTo(1);
+        assertThat(attempts().totalAmount()).isEqualTo(3);
+        assertThat(logicalTimer("none").count()).isEqualTo(1);
+    }
+
+    @Test
+    void eachLogicalCallIsRecordedSeparately() {
+        Mono<String> call = attemptMeters.track(monoFailingTimes(1))
+                .retry(5)
+                .transform(ReactorMetrics.logicalCall());
+
+        call.block();
+        call.block();
+
+        assertThat(attempts().count()).isEqualTo(2);
+        assertThat(attempts().totalAmount()).isEqualTo(3);
+        assertThat(logicalTimer("none").count()).isEqualTo(2);
+    }
+
+    @Test
+    void logicalCallFailingAfterAllRetriesIsTaggedWithTheError() {
+        Mono<String> call = attemptMeters.track(monoFailingTimes(10))
+                .retry(2)
+                .transform(ReactorMetrics.logicalCall());
+
+        assertThrows(IllegalStateException.class, call::block);
+
+        assertThat(attempts().totalAmount()).isEqualTo(3);
+        assertThat(logicalTimer("IllegalStateException").count()).isEqualTo(1);
+    }
+
+    @Test
+    void attemptsOfFluxAreCounted() {
+        AtomicInteger remainingFailures = new AtomicInteger(1);
+        Flux<Integer> flux = Flux.defer(() -> remainingFailures.getAndDecrement() > 0
+                ? Flux.<Integer>error(new IllegalStateException("Oops"))
+                : Flux.just(1, 2));
+
+        attemptMeters.track(flux)
+                .retry(5)
+                .transform(ReactorMetrics.logicalCall())
+                .blockLast();
+
+        assertThat(attempts().totalAmount()).isEqualTo(2);
+        assertThat(logicalTimer("none").count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledLogicalCallIsRecorded() {
+        attemptMeters.track(Mono.never())
+                .transform(ReactorMetrics.logicalCall())
+                .subscribe()
+                .dispose();
+
+        assertThat(attempts().totalAmount()).isEqualTo(1);
+        assertThat(logicalTimer("cancellation").count()).isEqualTo(1);
+    }
+
+    @Test
+    void subscriptionsOutsideOfLogicalCallAreNotRecorded() {
+        attemptMeters.track(monoFailingTimes(1))
+                .retry(5)
+                .block();
+
+        assertThat(attempts().count()).isZero();
+        assertThat(registry.find("test.logical").timers()).isEmpty();
+    }
+
+    @Test
+    void logicalCallWithoutTrackedAttemptsIsNotRecorded() {
+        Mono.just("ok")
+                .transform(ReactorMetrics.logicalCall())
+                .block();
+
+        assertThat(attempts().count()).isZero();
+        assertThat(registry.find("test.logical").timers()).isEmpty();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class BufferedRecorderTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final Timer timer = registry.timer("timer");
+    private final Counter counter = registry.counter("counter");
+
+    private BufferedRecorder recorder = BufferedRecorder.builder(registry)
+            .drainInterval(Duration.ofHours(1))
+            .build();
+
+    @AfterEach
+    void closeRecorder() {
+        recorder.close();
+    }
+
+    private double dropped() {
+        return registry.get(BufferedRecorder.DROPPED_METRIC_NAME).counter().count();
+    }
+
+    @Test
+    void recordingsAreAppliedOnFlush() {
+        recorder.record(timer, 1_000_000);
+        recorder.increment(counter, 2.5);
+
+        assertThat(timer.count()).isZero();
+        assertThat(counter.count()).isZero();
+
+        recorder.flush();
+
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(1);
+        assertThat(counter.count()).isEqualTo(2.5);
+    }
+
+    @Test
+    void recordingsAreDroppedAndCountedWhenBufferIsFull() {
+        recorder.close();
+        recorder = BufferedRecorder.builder(registry)
+                .bufferCapacity(2)
+                .drainInterval(Duration.ofHours(1))
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            recorder.increment(counter, 1);
+        }
+        recorder.flush();
+
+        assertThat(counter.count()).isEqualTo(2);
+        assertThat(dropped()).isEqualTo(3);
+    }
+
+    @Test
+    void bufferIsReusedAfterDrain() {
+        recorder.close();
+        recorder = BufferedRecorder.builder(registry)
+                .bufferCapacity(2)
+                .drainInterval(Duration.ofHours(1))
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            recorder.increment(counter, 1);
+            recorder.flush();
+        }
+
+        assertThat(counter.count()).isEqualTo(5);
+        assertThat(dropped()).isZero();
+    }
+
+    @Test
+    void recordingsOfOtherThreadsAreApplied() throws InterruptedException {
+        Thread thread = new Thread(() -> recorder.increment(counter, 1));
+        thread.start();
+        thread.join();
+
+        recorder.flush();
+
+        assertThat(counter.count()).isEqualTo(1);
+    }
+
+    @Test
+    void closeFlushesAndLaterRecordingsAreSynchronous() {
+        recorder.increment(counter, 1);
+
+        recorder.close();
+        assertThat(counter.count()).isEqualTo(1);
+
+        recorder.increment(counter, 1);
+        assertThat(counter.count()).isEqualTo(2);
+    }
+
+    @Test
+    void recordingsAreDrainedPeriodically() throws InterruptedException {
+        recorder.close();
+        recorder = BufferedRecorder.builder(registry)
+                .drainInterval(Duration.ofMillis(10))
+                .build();
+
+        recorder.increment(counter, 1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(counter.count()).isEqualTo(1);
+    }
+}
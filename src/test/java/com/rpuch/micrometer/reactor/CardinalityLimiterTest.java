@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class CardinalityLimiterTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CardinalityLimiter limiter = CardinalityLimiter.create(registry, 2);
+
+    private final Tags fixedTags = Tags.of("method", "m");
+
+    @Test
+    void admitsCombinationsUpToTheLimit() {
+        assertThat(limiter.limit("test", fixedTags, Tags.of("user", "a")))
+                .isEqualTo(Tags.of("method", "m", "user", "a"));
+        assertThat(limiter.limit("test", fixedTags, Tags.of("user", "b")))
+                .isEqualTo(Tags.of("method", "m", "user", "b"));
+        assertThat(registry.find(CardinalityLimiter.REJECTED_METRIC_NAME).counter()).isNull();
+    }
+
+    @Test
+    void collapsesVariableTagsPastTheLimit() {
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+
+        Tags tags = limiter.limit("test", fixedTags, Tags.of("user", "c"));
+
+        assertThat(tags).isEqualTo(Tags.of("method", "m", "user", CardinalityLimiter.OVERFLOW_TAG_VALUE));
+    }
+
+    @Test
+    void keepsAdmittingKnownCombinationsPastTheLimit() {
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+
+        assertThat(limiter.limit("test", fixedTags, Tags.of("user", "a")))
+                .isEqualTo(Tags.of("method", "m", "user", "a"));
+    }
+
+    @Test
+    void countsRejectionsPerName() {
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+        limiter.limit("test", fixedTags, Tags.of("user", "d"));
+
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME).tag("name", "test").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void countsEachRejectedCombinationOnce() {
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME).tag("name", "test").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void limitsEachNameSeparately() {
+        limiter.limit("first", fixedTags, Tags.of("user", "a"));
+        limiter.limit("first", fixedTags, Tags.of("user", "b"));
+
+        assertThat(limiter.limit("second", fixedTags, Tags.of("user", "c")))
+                .isEqualTo(Tags.of("method", "m", "user", "c"));
+    }
+
+    @Test
+    void limitsEachFixedTagsSeparately() {
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+
+        assertThat(limiter.limit("test", Tags.of("method", "other"), Tags.of("user", "c")))
+                .isEqualTo(Tags.of("method", "other", "user", "c"));
+    }
+
+    @Test
+    void countsRejectionsOfAllFixedTagsUnderTheirName() {
+        Tags otherFixedTags = Tags.of("method", "other");
+        limiter.limit("test", fixedTags, Tags.of("user", "a"));
+        limiter.limit("test", fixedTags, Tags.of("user", "b"));
+        limiter.limit("test", fixedTags, Tags.of("user", "c"));
+        limiter.limit("test", otherFixedTags, Tags.of("user", "a"));
+        limiter.limit("test", otherFixedTags, Tags.of("user", "b"));
+        limiter.limit("test", otherFixedTags, Tags.of("user", "c"));
+
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME).tag("name", "test").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void rejectsNonPositiveLimit() {
+        assertThatThrownBy(() -> CardinalityLimiter.create(registry, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.Test;
+import reactor.util.context.Context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ContextTagsTest {
+    @Test
+    void producesTagsFromContextValues() {
+        ContextTags contextTags = ContextTags.of("tenant", "route");
+
+        Tags tags = contextTags.tags(Context.of("tenant", "a", "route", 42));
+
+        assertThat(tags).isEqualTo(Tags.of("tenant", "a", "route", "42"));
+    }
+
+    @Test
+    void usesMissingValueWhenContextHasNoKey() {
+        ContextTags contextTags = ContextTags.of("tenant");
+
+        assertThat(contextTags.tags(Context.empty())).isEqualTo(Tags.of("tenant", ContextTags.MISSING_VALUE));
+    }
+
+    @Test
+    void tagKeyMayDifferFromContextKey() {
+        ContextTags contextTags = ContextTags.builder()
+                .tag("tenant", Long.class)
+                .build();
+
+        assertThat(contextTags.tags(Context.of(Long.class, 7L))).isEqualTo(Tags.of("tenant", "7"));
+    }
+
+    @Test
+    void returnsSameInstanceForSameValues() {
+        ContextTags contextTags = ContextTags.of("tenant", "route");
+
+        Tags first = contextTags.tags(Context.of("tenant", "a", "route", "r"));
+        Tags second = contextTags.tags(Context.of("route", "r", "tenant", "a", "other", "x"));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void resolvesWithoutCachingWhenMaxCachedIsReached() {
+        ContextTags contextTags = ContextTags.builder()
+                .tag("tenant", "tenant")
+                .maxCached(1)
+                .build();
+
+        Tags cachedA = contextTags.tags(Context.of("tenant", "a"));
+        Tags firstB = contextTags.tags(Context.of("tenant", "b"));
+        Tags secondB = contextTags.tags(Context.of("tenant", "b"));
+
+        assertThat(contextTags.tags(Context.of("tenant", "a"))).isSameAs(cachedA);
+        assertThat(secondB).isEqualTo(firstB).isNotSameAs(firstB);
+    }
+
+    @Test
+    void producesEmptyTagsWithoutKeys() {
+        assertThat(ContextTags.of().tags(Context.of("tenant", "a"))).isEqualTo(Tags.empty());
+    }
+
+    @Test
+    void rejectsNegativeMaxCached() {
+        assertThatThrownBy(() -> ContextTags.builder().maxCached(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
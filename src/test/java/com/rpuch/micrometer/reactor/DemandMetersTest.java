@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class DemandMetersTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private DemandMeters demandMeters;
+
+    @BeforeEach
+    void init() {
+        demandMeters = DemandMeters.register(registry, "test", Tags.of("a", "b"));
+    }
+
+    private double requested() {
+        return registry.get("test.requested").tag("a", "b").counter().count();
+    }
+
+    private double unboundedRequests() {
+        return registry.get("test.requests.unbounded").counter().count();
+    }
+
+    private double outstandingDemand() {
+        return registry.get("test.demand.outstanding").gauge().value();
+    }
+
+    @Test
+    void boundedRequestsAreCountedAndTrackedAsOutstanding() {
+        ManualSubscriber subscriber = demandMeters.meter(Flux.range(1, 10)).subscribeWith(new ManualSubscriber());
+
+        subscriber.request(3);
+        assertThat(requested()).isEqualTo(3);
+        assertThat(outstandingDemand()).isZero();
+
+        demandMeters.meter(Flux.<Integer>never()).subscribeWith(new ManualSubscriber()).request(5);
+        assertThat(requested()).isEqualTo(8);
+        assertThat(outstandingDemand()).isEqualTo(5);
+        assertThat(unboundedRequests()).isZero();
+    }
+
+    @Test
+    void outstandingDemandIsReleasedOnTermination() {
+        ManualSubscriber subscriber = demandMeters.meter(Flux.<Integer>never()).subscribeWith(new ManualSubscriber());
+        subscriber.request(5);
+
+        subscriber.cancel();
+
+        assertThat(outstandingDemand()).isZero();
+    }
+
+    @Test
+    void unboundedRequestIsCountedSeparately() {
+        demandMeters.meter(Flux.range(1, 10)).blockLast();
+
+        assertThat(unboundedRequests()).isEqualTo(1);
+        assertThat(requested()).isZero();
+        assertThat(outstandingDemand()).isZero();
+    }
+
+    @Test
+    void periodsWithoutDemandAreTimed() {
+        ManualSubscriber subscriber = demandMeters.meter(Flux.range(1, 10)).subscribeWith(new ManualSubscriber());
+        clock.add(Duration.ofMillis(10));
+        subscriber.request(2);
+        clock.add(Duration.ofMillis(20));
+        subscriber.request(1);
+
+        assertThat(registry.get("test.demand.zero").timer().count()).isEqualTo(2);
+        assertThat(registry.get("test.demand.zero").timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(30);
+    }
+
+    private static class ManualSubscriber extends BaseSubscriber<Integer> {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // requests are made by the test
+        }
+    }
+}
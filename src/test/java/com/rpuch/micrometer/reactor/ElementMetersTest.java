@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ElementMetersTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private ElementMeters elementMeters(int gapsOneIn) {
+        return ElementMeters.register(registry, "test", Tags.of("a", "b"), gapsOneIn);
+    }
+
+    @Test
+    void elementsPerSubscriptionAreRecorded() {
+        ElementMeters meters = elementMeters(1);
+
+        meters.meter(Flux.range(1, 3)).blockLast();
+        meters.meter(Flux.range(1, 5)).blockLast();
+
+        assertThat(registry.get("test.elements").tag("a", "b").summary().count()).isEqualTo(2);
+        assertThat(registry.get("test.elements").summary().totalAmount()).isEqualTo(8);
+    }
+
+    @Test
+    void emittedElementsAreCountedInBatchesAndOnTermination() {
+        ElementMeters meters = elementMeters(1);
+
+        meters.meter(Flux.range(1, 200)).blockLast();
+
+        assertThat(registry.get("test.elements.emitted").counter().count()).isEqualTo(200);
+    }
+
+    @Test
+    void elementsAreCountedWhenCancelled() {
+        ElementMeters meters = elementMeters(1);
+
+        meters.meter(Flux.range(1, 100)).take(10).blockLast();
+
+        assertThat(registry.get("test.elements").summary().totalAmount()).isEqualTo(10);
+        assertThat(registry.get("test.elements.emitted").counter().count()).isEqualTo(10);
+    }
+
+    @Test
+    void elementsAreCountedWhenFailed() {
+        ElementMeters meters = elementMeters(1);
+
+        meters.meter(Flux.concat(Flux.range(1, 2), Flux.error(new RuntimeException())))
+                .onErrorResume(e -> Flux.empty())
+                .blockLast();
+
+        assertThat(registry.get("test.elements").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void gapsBetweenElementsAreTimed() {
+        ElementMeters meters = elementMeters(1);
+
+        meters.meter(Flux.range(1, 3).doOnNext(x -> clock.add(Duration.ofMillis(10)))).blockLast();
+
+        Timer gaps = registry.get("test.element.gap").timer();
+        assertThat(gaps.count()).isEqualTo(2);
+        assertThat(gaps.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(20);
+    }
+
+    @Test
+    void onlyEachNthGapIsTimedWhenSampled() {
+        ElementMeters meters = elementMeters(3);
+
+        meters.meter(Flux.range(1, 9).doOnNext(x -> clock.add(Duration.ofMillis(10)))).blockLast();
+
+        Timer gaps = registry.get("test.element.gap").timer();
+        assertThat(gaps.count()).isEqualTo(3);
+        assertThat(gaps.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(30);
+    }
+
+    @Test
+    void nonPositiveGapSamplingIsRejected() {
+        assertThatThrownBy(() -> elementMeters(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
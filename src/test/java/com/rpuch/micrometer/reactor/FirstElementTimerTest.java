@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class FirstElementTimerTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private FirstElementTimer firstElementTimer;
+
+    @BeforeEach
+    void init() {
+        firstElementTimer = FirstElementTimer.register(registry, "test", Tags.of("a", "b"));
+    }
+
+    private Timer timer() {
+        return registry.get("test.first.element").tag("a", "b").timer();
+    }
+
+    @Test
+    void timeToFirstFluxElementIsRecordedOnce() {
+        Flux<Integer> flux = Flux.range(1, 3).doOnNext(x -> clock.add(Duration.ofMillis(10)));
+
+        firstElementTimer.time(flux).blockLast();
+
+        assertThat(timer().count()).isEqualTo(1);
+        assertThat(timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(10);
+    }
+
+    @Test
+    void timeToMonoValueIsRecorded() {
+        Mono<String> mono = Mono.fromCallable(() -> {
+            clock.add(Duration.ofMillis(7));
+            return "ok";
+        });
+
+        firstElementTimer.time(mono).block();
+
+        assertThat(timer().count()).isEqualTo(1);
+        assertThat(timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(7);
+    }
+
+    @Test
+    void timeToCompletionIsRecordedForEmptyFlux() {
+        firstElementTimer.time(Flux.empty()).blockLast();
+
+        assertThat(timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errorBeforeFirstElementIsNotRecorded() {
+        firstElementTimer.time(Flux.error(new RuntimeException())).onErrorResume(e -> Flux.empty()).blockLast();
+
+        assertThat(timer().count()).isZero();
+    }
+
+    @Test
+    void cancellationBeforeFirstElementIsNotRecorded() {
+        firstElementTimer.time(Flux.never()).subscribe().dispose();
+
+        assertThat(timer().count()).isZero();
+    }
+}
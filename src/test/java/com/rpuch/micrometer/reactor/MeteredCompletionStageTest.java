@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class MeteredCompletionStageTest {
+    private final RecordingListener listener = new RecordingListener();
+
+    private final CompletableFuture<String> future = new CompletableFuture<>();
+
+    @Test
+    void returnsTheSameStage() {
+        assertThat(MeteredCompletionStage.observe(future, listener, 42)).isSameAs(future);
+    }
+
+    @Test
+    void reportsNothingBeforeCompletion() {
+        MeteredCompletionStage.observe(future, listener, 42);
+
+        assertThat(listener.signals()).isEmpty();
+    }
+
+    @Test
+    void reportsSuccess() {
+        MeteredCompletionStage.observe(future, listener, 42);
+
+        future.complete("ok");
+
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void reportsError() {
+        MeteredCompletionStage.observe(future, listener, 42);
+
+        future.completeExceptionally(new RuntimeException("Oops"));
+
+        assertThat(listener.signals()).containsExactly("error:42:Oops");
+    }
+
+    @Test
+    void unwrapsErrorOfDependentStage() {
+        CompletableFuture<String> dependent = future.thenApply(value -> {
+            throw new IllegalStateException("Oops");
+        });
+        MeteredCompletionStage.observe(dependent, listener, 42);
+
+        future.complete("ok");
+
+        assertThat(listener.signals()).containsExactly("error:42:Oops");
+    }
+
+    @Test
+    void reportsCancellation() {
+        MeteredCompletionStage.observe(future, listener, 42);
+
+        future.cancel(false);
+
+        assertThat(listener.signals()).containsExactly("cancel:42");
+    }
+}
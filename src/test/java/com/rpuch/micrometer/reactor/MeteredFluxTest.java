@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import com.rpuch.micrometer.reactor.aop.CancellableSubscriber;
+import org.junit.jupiter.api.Test;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class MeteredFluxTest {
+    private final RecordingListener listener = new RecordingListener();
+
+    private final RuntimeException exception = new RuntimeException("Oops");
+
+    @Test
+    void elementsArePassedAndCompletionIsReported() {
+        List<Integer> result = MeteredFlux.wrap(Flux.just(1, 2, 3), listener).collectList().block();
+
+        assertThat(result).containsExactly(1, 2, 3);
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void errorIsPassedAndReported() {
+        assertThatThrownBy(() -> MeteredFlux.wrap(Flux.error(exception), listener).blockLast())
+                .isEqualTo(exception);
+
+        assertThat(listener.signals()).containsExactly("error:42:Oops");
+    }
+
+    @Test
+    void cancellationIsReported() {
+        CancellableSubscriber subscriber = MeteredFlux.wrap(Flux.never(), listener)
+                .subscribeWith(new CancellableSubscriber());
+        subscriber.cancel();
+
+        assertThat(listener.signals()).containsExactly("cancel:42");
+    }
+
+    @Test
+    void cancellationByDownstreamIsReported() {
+        MeteredFlux.wrap(Flux.range(1, 10), listener).take(3).blockLast();
+
+        assertThat(listener.signals()).containsExactly("cancel:42");
+    }
+
+    @Test
+    void syncFusedCompletionIsReported() {
+        List<Integer> result = MeteredFlux.wrap(Flux.range(1, 3), listener)
+                .publishOn(Schedulers.single())
+                .collectList()
+                .block();
+
+        assertThat(result).containsExactly(1, 2, 3);
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void asyncFusedCompletionIsReported() {
+        List<Integer> result = MeteredFlux.wrap(Flux.range(1, 3).publishOn(Schedulers.parallel()), listener)
+                .publishOn(Schedulers.single())
+                .collectList()
+                .block();
+
+        assertThat(result).containsExactly(1, 2, 3);
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void errorOfTransformedSourceIsReported() {
+        assertThatThrownBy(() -> MeteredFlux.wrap(Flux.just(1, 0).map(i -> 1 / i), listener)
+                .publishOn(Schedulers.single())
+                .blockLast())
+                .isInstanceOf(ArithmeticException.class);
+
+        assertThat(listener.signals()).containsExactly("error:42:/ by zero");
+    }
+
+    @Test
+    void failingSupplierErrorIsPassedButNotReported() {
+        Flux<String> flux = MeteredFlux.defer(() -> {
+            throw exception;
+        }, listener);
+
+        assertThatThrownBy(flux::blockLast).isEqualTo(exception);
+        assertThat(listener.signals()).isEmpty();
+    }
+
+    @Test
+    void scansParentAndRunStyle() {
+        Flux<String> source = Flux.never();
+        Scannable metered = Scannable.from(MeteredFlux.wrap(source, listener));
+
+        assertThat(metered.scan(Scannable.Attr.PARENT)).isSameAs(source);
+        assertThat(metered.scan(Scannable.Attr.RUN_STYLE)).isEqualTo(Scannable.Attr.RunStyle.SYNC);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import com.rpuch.micrometer.reactor.aop.CancellableSubscriber;
+import org.junit.jupiter.api.Test;
+import reactor.core.Scannable;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class MeteredMonoTest {
+    private final RecordingListener listener = new RecordingListener();
+
+    private final RuntimeException exception = new RuntimeException("Oops");
+
+    @Test
+    void valueIsPassedAndSuccessIsReported() {
+        String result = MeteredMono.wrap(Mono.just("ok"), listener).block();
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void emptyCompletionIsReportedAsSuccess() {
+        MeteredMono.wrap(Mono.empty(), listener).block();
+
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void errorIsPassedAndReported() {
+        assertThatThrownBy(() -> MeteredMono.wrap(Mono.error(exception), listener).block())
+                .isEqualTo(exception);
+
+        assertThat(listener.signals()).containsExactly("error:42:Oops");
+    }
+
+    @Test
+    void cancellationIsReported() {
+        CancellableSubscriber subscriber = MeteredMono.wrap(Mono.never(), listener)
+                .subscribeWith(new CancellableSubscriber());
+        subscriber.cancel();
+
+        assertThat(listener.signals()).containsExactly("cancel:42");
+    }
+
+    @Test
+    void cancellationAfterValueIsNotReported() {
+        MeteredMono.wrap(Mono.just("ok"), listener)
+                .flux()
+                .take(1)
+                .blockLast();
+
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void fusedValueIsReported() {
+        String result = MeteredMono.wrap(Mono.just("ok").map(s -> s + "!"), listener)
+                .map(s -> s + "?")
+                .block();
+
+        assertThat(result).isEqualTo("ok!?");
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    @Test
+    void deferredSourceIsObtainedOnEachSubscription() {
+        AtomicInteger supplierCalls = new AtomicInteger();
+        Mono<String> mono = MeteredMono.defer(() -> {
+            supplierCalls.incrementAndGet();
+            return Mono.just("ok");
+        }, listener);
+
+        assertThat(supplierCalls).hasValue(0);
+
+        mono.block();
+        mono.block();
+
+        assertThat(supplierCalls).hasValue(2);
+        assertThat(listener.signals()).containsExactly("success:42", "success:42");
+    }
+
+    @Test
+    void failingSupplierErrorIsPassedButNotReported() {
+        Mono<String> mono = MeteredMono.defer(() -> {
+            throw exception;
+        }, listener);
+
+        assertThatThrownBy(mono::block).isEqualTo(exception);
+        assertThat(listener.signals()).isEmpty();
+    }
+
+    @Test
+    void startTimeIsTakenOncePerSubscription() {
+        Mono<String> mono = MeteredMono.wrap(Mono.just("ok"), listener);
+
+        mono.block();
+        mono.block();
+
+        assertThat(listener.startTimeCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void scansParentAndRunStyle() {
+        Mono<String> source = Mono.never();
+        Scannable metered = Scannable.from(MeteredMono.wrap(source, listener));
+
+        assertThat(metered.scan(Scannable.Attr.PARENT)).isSameAs(source);
+        assertThat(metered.scan(Scannable.Attr.RUN_STYLE)).isEqualTo(Scannable.Attr.RunStyle.SYNC);
+    }
+}
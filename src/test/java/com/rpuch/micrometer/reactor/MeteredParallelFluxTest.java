@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class MeteredParallelFluxTest {
+    private final RecordingListener listener = new RecordingListener();
+
+    @Test
+    void elementsArePassedAndCompletionOfAllRailsIsReportedOnce() {
+        List<Integer> result = MeteredParallelFlux.wrap(Flux.range(1, 100).parallel(4), listener)
+                .runOn(Schedulers.parallel())
+                .sequential()
+                .collectList()
+                .block();
+
+        assertThat(result).hasSize(100);
+        assertThat(listener.signals()).containsExactly("success:42");
+        assertThat(listener.startTimeCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void errorOfOneRailIsReportedOnce() {
+        ParallelFlux<Integer> source = Flux.range(0, 8).parallel(4).map(i -> 10 / (i % 4));
+
+        assertThatThrownBy(() -> MeteredParallelFlux.wrap(source, listener).sequential().blockLast())
+                .isInstanceOf(ArithmeticException.class);
+
+        assertThat(listener.signals()).containsExactly("error:42:/ by zero");
+    }
+
+    @Test
+    void cancellationIsReportedOnce() {
+        MeteredParallelFlux.wrap(Flux.range(1, 100).parallel(4), listener)
+                .sequential()
+                .take(3)
+                .blockLast();
+
+        assertThat(listener.signals()).containsExactly("cancel:42");
+    }
+
+    @Test
+    void parallelismIsKept() {
+        ParallelFlux<Integer> metered = MeteredParallelFlux.wrap(Flux.range(1, 10).parallel(3), listener);
+
+        assertThat(metered.parallelism()).isEqualTo(3);
+    }
+
+    @Test
+    void scansParentAndRunStyle() {
+        ParallelFlux<Integer> source = Flux.range(1, 10).parallel(2);
+        Scannable metered = Scannable.from(MeteredParallelFlux.wrap(source, listener));
+
+        assertThat(metered.scan(Scannable.Attr.PARENT)).isSameAs(source);
+        assertThat(metered.scan(Scannable.Attr.RUN_STYLE)).isEqualTo(Scannable.Attr.RunStyle.SYNC);
+    }
+}
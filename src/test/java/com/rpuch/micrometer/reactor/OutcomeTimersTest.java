@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class OutcomeTimersTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+    private final AtomicInteger timersCreated = new AtomicInteger();
+
+    private final OutcomeTimers timers = OutcomeTimers.create(clock, exceptionTag -> {
+        timersCreated.incrementAndGet();
+        return Timer.builder("test").tag("exception", exceptionTag).register(registry);
+    });
+
+    @Test
+    void createsNoTimersUntilTheyAreUsed() {
+        assertThat(timersCreated).hasValue(0);
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    void createsEachTimerOnce() {
+        Timer success = timers.timer(OutcomeTimers.NO_EXCEPTION_TAG_VALUE);
+        Timer failure = timers.timer("IllegalStateException");
+
+        assertThat(timers.timer(OutcomeTimers.NO_EXCEPTION_TAG_VALUE)).isSameAs(success);
+        assertThat(timers.timer("IllegalStateException")).isSameAs(failure);
+        assertThat(timersCreated).hasValue(2);
+    }
+
+    @Test
+    void recordsSuccessDuration() {
+        long startTime = timers.startTime();
+        clock.add(10, TimeUnit.MILLISECONDS);
+
+        timers.onSuccess(startTime);
+
+        Timer timer = registry.get("test").tag("exception", "none").timer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(10);
+    }
+
+    @Test
+    void recordsFailureUnderCauseClassName() {
+        timers.onError(timers.startTime(), new RuntimeException(new IllegalStateException("Oops")));
+
+        assertThat(registry.get("test").tag("exception", "IllegalStateException").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsFailureUnderExceptionClassNameWhenThereIsNoCause() {
+        timers.onError(timers.startTime(), new IllegalStateException("Oops"));
+
+        assertThat(registry.get("test").tag("exception", "IllegalStateException").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsCancellation() {
+        timers.onCancel(timers.startTime());
+
+        assertThat(registry.get("test").tag("exception", "cancellation").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class OutlierRecorderTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void fixedThresholdIsExceededOnlyByLongerDurations() {
+        OutlierRecorder recorder = OutlierRecorder.builder().threshold(Duration.ofMillis(10)).build();
+        OutlierRecorder.Threshold threshold = recorder.newThreshold();
+
+        assertThat(threshold.isExceeded(10 * MILLI, 0)).isFalse();
+        assertThat(threshold.isExceeded(11 * MILLI, 0)).isTrue();
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void fixedThresholdDoesNotAdapt() {
+        OutlierRecorder recorder = OutlierRecorder.builder().threshold(Duration.ofMillis(10)).build();
+        OutlierRecorder.Threshold threshold = recorder.newThreshold();
+
+        for (int i = 0; i < 100; i++) {
+            threshold.isExceeded(20 * MILLI, i * SECOND);
+        }
+
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void adaptiveThresholdDoublesWhenCapturingMoreThanTarget() {
+        OutlierRecorder recorder = OutlierRecorder.builder()
+                .adaptiveThreshold(Duration.ofMillis(10), 1)
+                .build();
+        OutlierRecorder.Threshold threshold = recorder.newThreshold();
+
+        threshold.isExceeded(20 * MILLI, 0);
+        threshold.isExceeded(20 * MILLI, SECOND / 2);
+        threshold.isExceeded(20 * MILLI, SECOND / 2);
+        threshold.isExceeded(20 * MILLI, SECOND + 1);
+
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    void adaptiveThresholdHalvesWhenNothingIsCapturedButNotBelowMinimum() {
+        OutlierRecorder recorder = OutlierRecorder.builder()
+                .adaptiveThreshold(Duration.ofMillis(10), 1)
+                .build();
+        OutlierRecorder.Threshold threshold = recorder.newThreshold();
+        threshold.isExceeded(20 * MILLI, 0);
+        threshold.isExceeded(20 * MILLI, 0);
+        threshold.isExceeded(20 * MILLI, SECOND + 1);
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(20));
+
+        threshold.isExceeded(MILLI, 3 * SECOND);
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(10));
+
+        threshold.isExceeded(MILLI, 5 * SECOND);
+        assertThat(threshold.current()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void outliersAreReturnedOldestFirst() {
+        OutlierRecorder recorder = OutlierRecorder.builder().build();
+
+        recorder.record(outlier("first"));
+        recorder.record(outlier("second"));
+
+        assertThat(recorder.outliers()).extracting(Outlier::method).containsExactly("first", "second");
+        assertThat(recorder.captured()).isEqualTo(2);
+    }
+
+    @Test
+    void oldestOutliersAreOverwrittenWhenBufferIsFull() {
+        OutlierRecorder recorder = OutlierRecorder.builder().capacity(2).build();
+
+        recorder.record(outlier("first"));
+        recorder.record(outlier("second"));
+        recorder.record(outlier("third"));
+
+        assertThat(recorder.outliers()).extracting(Outlier::method).containsExactly("second", "third");
+        assertThat(recorder.captured()).isEqualTo(3);
+    }
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        OutlierRecorder recorder = OutlierRecorder.builder().capacity(3).build();
+
+        for (int i = 0; i < 5; i++) {
+            recorder.record(outlier("m" + i));
+        }
+
+        assertThat(recorder.outliers()).extracting(Outlier::method).containsExactly("m1", "m2", "m3", "m4");
+    }
+
+    @Test
+    void capacityOfOneKeepsLatestOutlier() {
+        OutlierRecorder recorder = OutlierRecorder.builder().capacity(1).build();
+
+        recorder.record(outlier("first"));
+        recorder.record(outlier("second"));
+
+        assertThat(recorder.outliers()).extracting(Outlier::method).containsExactly("second");
+    }
+
+    @Test
+    void contextValuesOfConfiguredKeysArePicked() {
+        OutlierRecorder recorder = OutlierRecorder.builder().contextKeys("tenant", "user").build();
+
+        Map<Object, Object> values = recorder.contextValues(Context.of("tenant", "acme", "other", "x"));
+
+        assertThat(recorder.capturesContext()).isTrue();
+        assertThat(values).containsExactly(entry("tenant", "acme"));
+    }
+
+    @Test
+    void contextIsNotCapturedWithoutKeys() {
+        OutlierRecorder recorder = OutlierRecorder.builder().build();
+
+        assertThat(recorder.capturesContext()).isFalse();
+        assertThat(recorder.contextValues(Context.of("tenant", "acme"))).isEmpty();
+        assertThat(recorder.contextValues(null)).isEmpty();
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> OutlierRecorder.builder().threshold(Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OutlierRecorder.builder().adaptiveThreshold(Duration.ZERO, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OutlierRecorder.builder().adaptiveThreshold(Duration.ofMillis(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OutlierRecorder.builder().capacity(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Outlier outlier(String method) {
+        return new Outlier(method, SECOND, SignalType.ON_COMPLETE, null, "main", Instant.EPOCH,
+                Collections.emptyMap(), null);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class PayloadMetersTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final PayloadMeters payloadMeters = PayloadMeters.register(registry, "test", Tags.of("a", "b"),
+            PayloadSize.defaults());
+
+    private DistributionSummary bytesPerSubscription() {
+        return registry.get("test.payload").tag("a", "b").summary();
+    }
+
+    private Counter emittedBytes() {
+        return registry.get("test.payload.bytes").tag("a", "b").counter();
+    }
+
+    @Test
+    void bytesPerSubscriptionAreRecorded() {
+        payloadMeters.meter(Flux.just(new byte[3], new byte[4])).blockLast();
+        payloadMeters.meter(Flux.just("abcde")).blockLast();
+
+        assertThat(bytesPerSubscription().count()).isEqualTo(2);
+        assertThat(bytesPerSubscription().totalAmount()).isEqualTo(12);
+        assertThat(bytesPerSubscription().max()).isEqualTo(7);
+    }
+
+    @Test
+    void failingSizeExtractorDoesNotBreakTheFlux() {
+        PayloadMeters failing = PayloadMeters.register(registry, "failing", Tags.empty(),
+                PayloadSize.defaults().with(String.class, s -> {
+                    throw new IllegalStateException("Oops");
+                }));
+
+        assertThat(failing.meter(Flux.just("abc", "de")).collectList().block()).containsExactly("abc", "de");
+        assertThat(registry.get("failing.payload").summary().count()).isEqualTo(1);
+        assertThat(registry.get("failing.payload").summary().totalAmount()).isZero();
+    }
+
+    @Test
+    void summaryIsInBytes() {
+        assertThat(bytesPerSubscription().getId().getBaseUnit()).isEqualTo("bytes");
+    }
+
+    @Test
+    void emittedBytesAreCountedInBatchesAndOnTermination() {
+        payloadMeters.meter(Flux.fromStream(IntStream.range(0, 100).mapToObj(i -> new byte[2]))).blockLast();
+
+        assertThat(emittedBytes().count()).isEqualTo(200);
+    }
+
+    @Test
+    void emittedBytesAreCountedWhileSubscriptionIsActive() {
+        payloadMeters.meter(Flux.fromStream(IntStream.range(0, 100).mapToObj(i -> new byte[2])))
+                .take(70)
+                .subscribe();
+
+        assertThat(emittedBytes().count()).isEqualTo(140);
+    }
+
+    @Test
+    void cancelledSubscriptionIsRecorded() {
+        payloadMeters.meter(Flux.just("ab").concatWith(Flux.never()))
+                .subscribe()
+                .dispose();
+
+        assertThat(bytesPerSubscription().totalAmount()).isEqualTo(2);
+    }
+}
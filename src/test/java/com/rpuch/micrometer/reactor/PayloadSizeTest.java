@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class PayloadSizeTest {
+    private final PayloadSize defaults = PayloadSize.defaults();
+
+    @Test
+    void sizeOfByteArrayIsItsLength() {
+        assertThat(defaults.of(new byte[10])).isEqualTo(10);
+    }
+
+    @Test
+    void sizeOfByteBufferIsItsRemainingBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        buffer.position(3);
+
+        assertThat(defaults.of(buffer)).isEqualTo(7);
+    }
+
+    @Test
+    void sizeOfCharSequenceIsItsUtf8Size() {
+        assertThat(defaults.of("abc")).isEqualTo(3);
+        assertThat(defaults.of(new StringBuilder("abcd"))).isEqualTo(4);
+    }
+
+    @Test
+    void sizeOfNonAsciiCharSequenceMatchesItsEncoding() {
+        String text = "a\u00e9\u20ac\ud83d\ude00";
+
+        assertThat(defaults.of(text)).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(defaults.of(text)).isEqualTo(1 + 2 + 3 + 4);
+    }
+
+    @Test
+    void unpairedSurrogateIsSizedLikeItsEncoding() {
+        String text = "a\ud83d";
+
+        assertThat(defaults.of(text)).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void sizeOfUnknownTypeIsZero() {
+        assertThat(defaults.of(42)).isZero();
+    }
+
+    @Test
+    void addedTypeIsSized() {
+        PayloadSize sizes = defaults.with(Integer.class, value -> 4);
+
+        assertThat(sizes.of(42)).isEqualTo(4);
+        assertThat(sizes.of("abc")).isEqualTo(3);
+    }
+
+    @Test
+    void addedTypeTakesPrecedence() {
+        PayloadSize sizes = defaults.with(String.class, string -> string.length() * 2L);
+
+        assertThat(sizes.of("abc")).isEqualTo(6);
+        assertThat(sizes.of(new StringBuilder("abc"))).isEqualTo(3);
+    }
+
+    @Test
+    void addingTypeDoesNotChangeOriginal() {
+        defaults.with(Integer.class, value -> 4);
+
+        assertThat(defaults.of(42)).isZero();
+    }
+}
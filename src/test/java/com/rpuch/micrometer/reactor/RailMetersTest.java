@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class RailMetersTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final RailMeters railMeters = RailMeters.register(registry, "test", Tags.of("a", "b"), 2);
+
+    @Test
+    void elementsAreCountedPerRail() {
+        railMeters.meter(Flux.range(0, 5).parallel(2))
+                .runOn(Schedulers.parallel())
+                .sequential()
+                .blockLast();
+
+        assertThat(registry.get("test.rail.elements").tag("a", "b").tag("rail", "0").counter().count())
+                .isEqualTo(3);
+        assertThat(registry.get("test.rail.elements").tag("rail", "1").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void durationIsRecordedPerRail() {
+        railMeters.meter(Flux.range(0, 5).parallel(2)).sequential().blockLast();
+
+        assertThat(registry.get("test.rail.duration").tag("rail", "0").timer().count()).isEqualTo(1);
+        assertThat(registry.get("test.rail.duration").tag("rail", "1").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void durationIsRecordedOnCancellation() {
+        railMeters.meter(Flux.range(0, 100).parallel(2)).sequential().take(1).blockLast();
+
+        assertThat(registry.get("test.rail.duration").tag("rail", "0").timer().count()).isEqualTo(1);
+        assertThat(registry.get("test.rail.duration").tag("rail", "1").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsSourceWithOtherParallelism() {
+        assertThatThrownBy(() -> railMeters.meter(Flux.range(0, 5).parallel(3)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ReactorMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void timesSuccessfulMono() {
+        Mono<String> mono = Mono.just("ok").transform(ReactorMetrics.timed(registry, "call", Tags.of("k", "v")));
+
+        assertThat(mono.block()).isEqualTo("ok");
+
+        assertThat(timer("none").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesFailedFlux() {
+        Flux<String> flux = Flux.<String>error(new IllegalStateException("Oops"))
+                .transform(ReactorMetrics.timed(registry, "call", Tags.of("k", "v")));
+
+        assertThrows(IllegalStateException.class, flux::blockLast);
+
+        assertThat(timer("IllegalStateException").count()).isEqualTo(1);
+        assertThat(timer("none").count()).isZero();
+    }
+
+    @Test
+    void timesCancelledFlux() {
+        Flux<Long> flux = Flux.interval(Duration.ofSeconds(1))
+                .transform(ReactorMetrics.timed(registry, "call", Tags.of("k", "v")));
+
+        Disposable disposable = flux.subscribe();
+        disposable.dispose();
+
+        assertThat(timer("cancellation").count()).isEqualTo(1);
+    }
+
+    @Test
+    void registersSuccessAndCancellationTimersWhenTransformerIsCreated() {
+        ReactorMetrics.timed(registry, "call", Tags.of("k", "v"));
+
+        assertThat(timer("none").count()).isZero();
+        assertThat(timer("cancellation").count()).isZero();
+    }
+
+    @Test
+    void sharesTimersBetweenSubscriptions() {
+        Mono<String> mono = Mono.just("ok").transform(ReactorMetrics.timed(registry, "call", Tags.of("k", "v")));
+
+        mono.block();
+        mono.block();
+
+        assertThat(timer("none").count()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsMonoAMono() {
+        Mono<String> mono = Mono.just("ok").transform(ReactorMetrics.timed(registry, "call", Tags.empty()));
+
+        assertThat(mono).isInstanceOf(MeteredMono.class);
+    }
+
+    @Test
+    void countsSuccessfulMono() {
+        Mono<String> mono = Mono.just("ok").transform(ReactorMetrics.counted(registry, "call", Tags.of("k", "v")));
+
+        mono.block();
+
+        assertThat(counter("success", "none").count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsFailedFlux() {
+        Flux<String> flux = Flux.<String>error(new IllegalStateException("Oops"))
+                .transform(ReactorMetrics.counted(registry, "call", Tags.of("k", "v")));
+
+        assertThrows(IllegalStateException.class, flux::blockLast);
+
+        assertThat(counter("failure", "IllegalStateException").count()).isEqualTo(1);
+        assertThat(counter("success", "none").count()).isZero();
+    }
+
+    @Test
+    void countsCancelledFlux() {
+        Flux<Long> flux = Flux.interval(Duration.ofSeconds(1))
+                .transform(ReactorMetrics.counted(registry, "call", Tags.of("k", "v")));
+
+        flux.subscribe().dispose();
+
+        assertThat(counter("cancellation", "none").count()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsToGivenListener() {
+        RecordingListener listener = new RecordingListener();
+
+        Flux.just(1, 2).transform(ReactorMetrics.metered(listener)).blockLast();
+
+        assertThat(listener.signals()).containsExactly("success:42");
+    }
+
+    private Timer timer(String exception) {
+        return registry.get("call")
+                .tag("k", "v")
+                .tag("exception", exception)
+                .timer();
+    }
+
+    private Counter counter(String result, String exception) {
+        return registry.get("call")
+                .tag("k", "v")
+                .tag("result", result)
+                .tag("exception", exception)
+                .counter();
+    }
+}
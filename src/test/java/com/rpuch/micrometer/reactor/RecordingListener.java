@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+public class RecordingListener implements MeteringListener {
+    private final List<String> signals = new ArrayList<>();
+    private int startTimeCalls;
+
+    @Override
+    public synchronized long startTime() {
+        startTimeCalls++;
+        return 42;
+    }
+
+    @Override
+    public synchronized void onSuccess(long startTime) {
+        signals.add("success:" + startTime);
+    }
+
+    @Override
+    public synchronized void onError(long startTime, Throwable error) {
+        signals.add("error:" + startTime + ":" + error.getMessage());
+    }
+
+    @Override
+    public synchronized void onCancel(long startTime) {
+        signals.add("cancel:" + startTime);
+    }
+
+    public synchronized List<String> signals() {
+        return new ArrayList<>(signals);
+    }
+
+    public synchronized int startTimeCalls() {
+        return startTimeCalls;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class SamplingTest {
+    private final MockClock clock = new MockClock();
+
+    @Test
+    void alwaysSamplesEachInvocationWithUnitWeight() {
+        Sampler sampler = Sampling.always().newSampler(clock);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(sampler.sample()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void oneInSamplesWithWeightOfN() {
+        Sampler sampler = Sampling.oneIn(10).newSampler(clock);
+
+        double total = 0;
+        for (int i = 0; i < 10_000; i++) {
+            double weight = sampler.sample();
+            assertThat(weight).isIn(0.0, 10.0);
+            total += weight;
+        }
+
+        assertThat(total).isBetween(5_000.0, 15_000.0);
+    }
+
+    @Test
+    void oneInOneIsAlways() {
+        assertThat(Sampling.oneIn(1)).isSameAs(Sampling.always());
+    }
+
+    @Test
+    void nonPositiveRatesAreRejected() {
+        assertThatThrownBy(() -> Sampling.oneIn(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Sampling.adaptive(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void adaptiveSamplesEachInvocationWhileRateIsBelowTarget() {
+        Sampler sampler = Sampling.adaptive(100).newSampler(clock);
+
+        for (int second = 0; second < 3; second++) {
+            for (int i = 0; i < 50; i++) {
+                assertThat(sampler.sample()).isEqualTo(1);
+            }
+            clock.add(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void adaptiveLowersProbabilityWhenRateExceedsTarget() {
+        Sampler sampler = Sampling.adaptive(100).newSampler(clock);
+        for (int i = 0; i < 1000; i++) {
+            sampler.sample();
+        }
+        clock.add(Duration.ofSeconds(1));
+
+        int sampled = 0;
+        double total = 0;
+        for (int i = 0; i < 1000; i++) {
+            double weight = sampler.sample();
+            if (weight > 0) {
+                sampled++;
+                assertThat(weight).isCloseTo(10, Offset.offset(0.01));
+            }
+            total += weight;
+        }
+
+        assertThat(sampled).isBetween(50, 150);
+        assertThat(total).isBetween(500.0, 1500.0);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class StripedCellsTest {
+    private final StripedCells cells = new StripedCells(2);
+
+    @Test
+    void fieldsAreSummedSeparately() {
+        int stripe = cells.stripe();
+        cells.add(stripe, 0, 3);
+        cells.add(stripe, 1, 10);
+        cells.add(stripe, 0, -1);
+
+        assertThat(cells.sum(0)).isEqualTo(2);
+        assertThat(cells.sum(1)).isEqualTo(10);
+    }
+
+    @Test
+    void maxIsResetOnPoll() {
+        int stripe = cells.stripe();
+        cells.max(stripe, 1, 5);
+        cells.max(stripe, 1, 3);
+
+        assertThat(cells.pollMax(1)).isEqualTo(5);
+        assertThat(cells.pollMax(1)).isZero();
+    }
+
+    @Test
+    void updatesOfConcurrentThreadsAreMerged() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            long value = i + 1;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    int stripe = cells.stripe();
+                    cells.add(stripe, 0, 1);
+                    cells.max(stripe, 1, value);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(cells.sum(0)).isEqualTo(80_000);
+        assertThat(cells.pollMax(1)).isEqualTo(8);
+    }
+
+    @Test
+    void fieldsMustFitInStripe() {
+        assertThatThrownBy(() -> new StripedCells(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StripedCells(17)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class StripedLongTaskTimerTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final StripedLongTaskTimer timer = StripedLongTaskTimer.register(registry, "test", null,
+            Tags.of("a", "b"), 1);
+
+    @Test
+    void activeTasksAreCounted() {
+        Disposable first = timer.track(Mono.never()).subscribe();
+        Disposable second = timer.track(Flux.never()).subscribe();
+
+        assertThat(timer.activeTasks()).isEqualTo(2);
+        assertThat(registry.get("test.active.tasks").tag("a", "b").gauge().value()).isEqualTo(2);
+
+        first.dispose();
+        assertThat(timer.activeTasks()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(timer.activeTasks()).isZero();
+    }
+
+    @Test
+    void completedTasksAreNotActive() {
+        timer.track(Flux.just(1, 2)).blockLast();
+
+        assertThat(timer.activeTasks()).isZero();
+    }
+
+    @Test
+    void durationIsTheSumOfActiveTaskDurations() {
+        timer.track(Mono.never()).subscribe();
+        clock.add(10, TimeUnit.SECONDS);
+        Disposable second = timer.track(Mono.never()).subscribe();
+        clock.add(5, TimeUnit.SECONDS);
+
+        assertThat(timer.duration(TimeUnit.SECONDS)).isEqualTo(20);
+        assertThat(registry.get("test.active.duration").timeGauge().value(TimeUnit.SECONDS)).isEqualTo(20);
+
+        second.dispose();
+        assertThat(timer.duration(TimeUnit.SECONDS)).isEqualTo(15);
+    }
+
+    @Test
+    void oldestTaskAgeIsMeasured() {
+        Disposable first = timer.track(Mono.never()).subscribe();
+        clock.add(10, TimeUnit.SECONDS);
+        timer.track(Mono.never()).subscribe();
+        clock.add(5, TimeUnit.SECONDS);
+
+        assertThat(timer.oldestTaskAge(TimeUnit.SECONDS)).isEqualTo(15);
+        assertThat(registry.get("test.active.oldest").timeGauge().value(TimeUnit.SECONDS)).isEqualTo(15);
+
+        first.dispose();
+        assertThat(timer.oldestTaskAge(TimeUnit.SECONDS)).isEqualTo(5);
+    }
+
+    @Test
+    void taskIsSampledWhenNoneIsEvenIfSamplingIsRare() {
+        StripedLongTaskTimer rarelySampling = StripedLongTaskTimer.register(registry, "rare", null, Tags.empty(),
+                Integer.MAX_VALUE);
+
+        rarelySampling.track(Mono.never()).subscribe();
+        clock.add(3, TimeUnit.SECONDS);
+
+        assertThat(rarelySampling.oldestTaskAge(TimeUnit.SECONDS)).isEqualTo(3);
+    }
+
+    @Test
+    void oldestTaskAgeIsZeroWithoutActiveTasks() {
+        assertThat(timer.oldestTaskAge(TimeUnit.SECONDS)).isZero();
+    }
+
+    @Test
+    void sampleOneInMustBePositive() {
+        assertThatThrownBy(() -> StripedLongTaskTimer.register(registry, "invalid", null, Tags.empty(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class StripedTimerTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final StripedTimer timer = StripedTimer.register(registry, "test", "desc", Tags.of("a", "b"));
+
+    private Meter meter() {
+        return registry.get("test").tag("a", "b").meter();
+    }
+
+    private double statistic(Statistic statistic) {
+        for (Measurement measurement : meter().measure()) {
+            if (measurement.getStatistic() == statistic) {
+                return measurement.getValue();
+            }
+        }
+        throw new AssertionError("No " + statistic + " published");
+    }
+
+    @Test
+    void countAndTotalArePublished() {
+        timer.record(TimeUnit.MILLISECONDS.toNanos(10));
+        timer.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertThat(statistic(Statistic.COUNT)).isEqualTo(2);
+        assertThat(statistic(Statistic.TOTAL_TIME)).isEqualTo(0.04);
+        assertThat(meter().getId().getType()).isEqualTo(Meter.Type.TIMER);
+        assertThat(meter().getId().getDescription()).isEqualTo("desc");
+    }
+
+    @Test
+    void maxIsPublishedAsTimerStatisticAndResetOnRead() {
+        timer.record(TimeUnit.MILLISECONDS.toNanos(10));
+        timer.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertThat(statistic(Statistic.MAX)).isEqualTo(0.03);
+        assertThat(statistic(Statistic.MAX)).isZero();
+        assertThat(registry.find("test.max").meters()).isEmpty();
+    }
+
+    @Test
+    void negativeDurationsAreIgnored() {
+        timer.record(-1);
+
+        assertThat(timer.count()).isZero();
+    }
+
+    @Test
+    void recordingsOfConcurrentThreadsAreMerged() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    timer.record(2);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(timer.count()).isEqualTo(80_000);
+        assertThat(timer.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(160_000);
+    }
+}
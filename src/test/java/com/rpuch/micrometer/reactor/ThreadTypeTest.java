@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ThreadTypeTest {
+    @Test
+    void parallelSchedulerThreadIsNonBlocking() {
+        ThreadType type = Mono.fromCallable(ThreadType::current).subscribeOn(Schedulers.parallel()).block();
+
+        assertThat(type).isEqualTo(ThreadType.NON_BLOCKING);
+    }
+
+    @Test
+    void boundedElasticSchedulerThreadIsElastic() {
+        ThreadType type = Mono.fromCallable(ThreadType::current).subscribeOn(Schedulers.boundedElastic()).block();
+
+        assertThat(type).isEqualTo(ThreadType.ELASTIC);
+    }
+
+    @Test
+    void plainThreadIsOther() throws InterruptedException {
+        AtomicReference<ThreadType> type = new AtomicReference<>();
+        Thread thread = new Thread(() -> type.set(ThreadType.current()), "worker");
+        thread.start();
+        thread.join();
+
+        assertThat(type.get()).isEqualTo(ThreadType.OTHER);
+    }
+
+    @Test
+    void kindIsKeptWhenThreadIsRenamed() throws InterruptedException {
+        AtomicReference<ThreadType> type = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            ThreadType.current();
+            Thread.currentThread().setName("boundedElastic-1");
+            type.set(ThreadType.current());
+        }, "worker");
+        thread.start();
+        thread.join();
+
+        assertThat(type.get()).isEqualTo(ThreadType.OTHER);
+    }
+
+    @Test
+    void tagsHoldTheTagValue() {
+        assertThat(ThreadType.ELASTIC.tags().stream())
+                .singleElement()
+                .satisfies(tag -> {
+                    assertThat(tag.getKey()).isEqualTo(ThreadType.TAG);
+                    assertThat(tag.getValue()).isEqualTo("elastic");
+                });
+    }
+}
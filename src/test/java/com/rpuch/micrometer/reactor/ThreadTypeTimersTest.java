@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ThreadTypeTimersTest {
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final ThreadTypeTimers timers = ThreadTypeTimers.create(clock,
+            type -> OutcomeTimers.create(clock, exceptionTag -> Timer.builder("test")
+                    .tags(type.tags().and(ReactorMetrics.EXCEPTION_TAG, exceptionTag))
+                    .register(registry)));
+
+    @Test
+    void subscriptionIsRecordedWithKindOfCurrentThread() {
+        long startTime = timers.startTime();
+        clock.add(Duration.ofMillis(10));
+        timers.onSuccess(startTime);
+
+        Timer timer = registry.get("test")
+                .tag(ThreadType.TAG, ThreadType.current().tagValue())
+                .tag(ReactorMetrics.EXCEPTION_TAG, "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(10);
+    }
+
+    @Test
+    void terminationOnNonBlockingThreadIsRecordedAsNonBlocking() {
+        Mono.from(ReactorMetrics.<String>metered(timers).apply(Mono.just("ok").publishOn(Schedulers.parallel())))
+                .block();
+
+        assertThat(registry.get("test").tag(ThreadType.TAG, "non-blocking").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errorIsRecordedWithItsExceptionTag() {
+        timers.onError(timers.startTime(), new IllegalStateException());
+
+        assertThat(timers.timers(ThreadType.current()).timer("IllegalStateException").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import com.rpuch.micrometer.reactor.Sampler;
+import com.rpuch.micrometer.reactor.Sampling;
+import io.micrometer.core.instrument.Clock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deterministic sampling: skips every odd invocation (starting with the first one) and samples every even one
+ * with the given weight.
+ *
+ * @author Roman Puchkovskiy
+ */
+class AlternatingSampling extends Sampling {
+    private final double weight;
+
+    AlternatingSampling(double weight) {
+        this.weight = weight;
+    }
+
+    @Override
+    public Sampler newSampler(Clock clock) {
+        AtomicInteger invocations = new AtomicInteger();
+        return () -> invocations.incrementAndGet() % 2 == 0 ? weight : 0;
+    }
+}
@@ -15,9 +15,14 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.annotation.Sampled;
 import io.micrometer.core.annotation.Counted;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Roman Puchkovskiy
@@ -122,4 +127,37 @@ public class CountedService {
     public Flux<String> eagerFluxWithErrorRecordOnlyFailures() {
         throw error;
     }
+
+    @Counted(value = "rarelySampledMono", extraTags = {"extra", "tag"})
+    @Sampled(oneIn = Integer.MAX_VALUE)
+    public Mono<String> rarelySampledMono() {
+        return Mono.fromCallable(() -> "ok");
+    }
+
+    @Counted(value = "parallelFlux", extraTags = {"extra", "tag"})
+    public ParallelFlux<Integer> parallelFlux() {
+        return Flux.range(0, 10).parallel(2);
+    }
+
+    @Counted(value = "parallelFluxWithException", extraTags = {"extra", "tag"})
+    public ParallelFlux<Integer> parallelFluxWithException() {
+        return Flux.range(0, 10).parallel(2).map(i -> {
+            throw exception;
+        });
+    }
+
+    @Counted(value = "publisher", extraTags = {"extra", "tag"})
+    public Publisher<String> publisher() {
+        return Flux.just("a", "b");
+    }
+
+    @Counted(value = "publisherOfMono", extraTags = {"extra", "tag"})
+    public Publisher<String> publisherOfMono() {
+        return Mono.just("ok");
+    }
+
+    @Counted(value = "completableFuture", extraTags = {"extra", "tag"})
+    public CompletableFuture<String> completableFuture(CompletableFuture<String> future) {
+        return future;
+    }
 }
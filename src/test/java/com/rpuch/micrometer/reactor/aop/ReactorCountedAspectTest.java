@@ -15,12 +15,27 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.BufferedRecorder;
+import com.rpuch.micrometer.reactor.CardinalityLimiter;
+import com.rpuch.micrometer.reactor.ContextTags;
+import com.rpuch.micrometer.reactor.MeteredMono;
+import com.rpuch.micrometer.reactor.Sampling;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.aspectj.lang.annotation.Aspect;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
 import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -214,6 +229,69 @@ class ReactorCountedAspectTest {
         assertThat(countedCount).isEqualTo(1);
     }
 
+    @Test
+    void repeatedInvocationsAreRecordedToSameCounter() {
+        countedServiceProxy.lazyMonoWithSuccess().block();
+        countedServiceProxy.lazyMonoWithSuccess().block();
+        countedServiceProxy.lazyMonoWithException().onErrorResume(e -> Mono.empty()).block();
+        countedServiceProxy.lazyMonoWithException().onErrorResume(e -> Mono.empty()).block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").counters()).hasSize(1);
+        assertThat(registry.get("lazyMonoWithSuccess").counter().count()).isEqualTo(2);
+        assertThat(registry.get("lazyMonoWithException").counters()).hasSize(1);
+        assertThat(registry.get("lazyMonoWithException").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void staticTagsAreEvaluatedOncePerMethod() {
+        AtomicInteger evaluations = new AtomicInteger();
+        aspect = ReactorCountedAspect.builder(registry)
+                .tagsBasedOnStaticPart(staticPart -> {
+                    evaluations.incrementAndGet();
+                    return Tags.of("static", staticPart.getSignature().getName());
+                })
+                .build();
+        countedServiceProxy = wrapWithAspect(new CountedService(exception, error));
+
+        countedServiceProxy.lazyMonoWithSuccess().block();
+        countedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(evaluations).hasValue(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag("static", "lazyMonoWithSuccess").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void staticAndJoinPointTagsAreCombined() {
+        aspect = ReactorCountedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("dynamic", "tag"))
+                .build();
+        countedServiceProxy = wrapWithAspect(new CountedService(exception, error));
+
+        countedServiceProxy.lazyMonoWithSuccess().block();
+
+        double count = registry.get("lazyMonoWithSuccess")
+                .tag("class", CountedService.class.getName())
+                .tag("method", "lazyMonoWithSuccess")
+                .tag("dynamic", "tag")
+                .counter().count();
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void customTagsAreEvaluatedOnEachInvocation() {
+        AtomicInteger invocationNumber = new AtomicInteger();
+        aspect = new ReactorCountedAspect(registry,
+                pjp -> Tags.of("invocation", Integer.toString(invocationNumber.incrementAndGet())));
+        countedServiceProxy = wrapWithAspect(new CountedService(exception, error));
+
+        countedServiceProxy.lazyMonoWithSuccess().block();
+        countedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").tag("invocation", "1").counter().count()).isEqualTo(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag("invocation", "2").counter().count()).isEqualTo(1);
+    }
+
     @Test
     void invocationIsNotCountedViaMonoUntilSubscription() {
         countedServiceProxy.lazyMonoWithSuccess();
@@ -374,6 +452,179 @@ class ReactorCountedAspectTest {
         assertThatNoMeterIsCreated();
     }
 
+    @Test
+    void sampledInvocationsAreCountedWithWeight() {
+        aspect = ReactorCountedAspect.builder(registry)
+                .sampling(new AlternatingSampling(3))
+                .build();
+        CountedService proxy = wrapWithAspect(new CountedService());
+
+        for (int i = 0; i < 4; i++) {
+            proxy.lazyMonoWithSuccess().block();
+        }
+
+        double countedCount = registry.get("lazyMonoWithSuccess")
+                .tag("result", "success")
+                .counter().count();
+        assertThat(countedCount).isEqualTo(6);
+    }
+
+    @Test
+    void notSampledInvocationGetsPublisherThatIsNotCounted() {
+        aspect = ReactorCountedAspect.builder(registry)
+                .sampling(new AlternatingSampling(2))
+                .build();
+        CountedService proxy = wrapWithAspect(new CountedService());
+
+        assertThat(proxy.lazyMonoWithSuccess()).isNotInstanceOf(MeteredMono.class);
+        assertThat(proxy.lazyMonoWithSuccess()).isInstanceOf(MeteredMono.class);
+    }
+
+    @Test
+    void notSampledInvocationIsStillDeferredUntilSubscription() {
+        aspect = ReactorCountedAspect.builder(registry)
+                .sampling(new AlternatingSampling(2))
+                .build();
+        CountedService proxy = wrapWithAspect(new CountedService(exception, error));
+
+        Mono<String> mono = proxy.eagerMonoWithException();
+
+        assertThatThrownBy(mono::block).isEqualTo(exception);
+        assertThatNoMeterIsCreated();
+    }
+
+    @Test
+    void samplingAnnotationOverridesAspectSampling() {
+        Mono<String> mono = countedServiceProxy.rarelySampledMono();
+
+        assertThat(mono).isNotInstanceOf(MeteredMono.class);
+        assertThat(mono.block()).isEqualTo("ok");
+        assertThatNoMeterIsCreated();
+    }
+
+    @Test
+    void countersAreUpdatedThroughBufferedRecorder() {
+        try (BufferedRecorder recorder = BufferedRecorder.builder(registry).drainInterval(Duration.ofHours(1)).build()) {
+            aspect = ReactorCountedAspect.builder(registry)
+                    .bufferedRecorder(recorder)
+                    .build();
+            CountedService proxy = wrapWithAspect(new CountedService());
+
+            proxy.lazyMonoWithSuccess().block();
+            Counter counter = registry.get("lazyMonoWithSuccess").tag("result", "success").counter();
+            assertThat(counter.count()).isZero();
+
+            recorder.flush();
+            assertThat(counter.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void countersAreTaggedWithContextValues() {
+        aspect = ReactorCountedAspect.builder(registry)
+                .tagsBasedOnContext(ContextTags.of("tenant"))
+                .build();
+        CountedService proxy = wrapWithAspect(new CountedService());
+
+        proxy.lazyMonoWithSuccess().contextWrite(Context.of("tenant", "a")).block();
+        proxy.lazyMonoWithSuccess().contextWrite(Context.of("tenant", "a")).block();
+        assertThatThrownBy(() -> proxy.lazyFluxWithException().contextWrite(Context.of("tenant", "b")).blockLast())
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(registry.get("lazyMonoWithSuccess").tag("tenant", "a").counter().count()).isEqualTo(2);
+        assertThat(registry.get("lazyFluxWithException")
+                .tag("tenant", "b")
+                .tag("result", "failure")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void counterTagCombinationsPastTheLimitCollapseIntoOverflowCounter() {
+        AtomicInteger calls = new AtomicInteger();
+        aspect = ReactorCountedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("call", String.valueOf(calls.incrementAndGet())))
+                .cardinalityLimiter(CardinalityLimiter.create(registry, 1))
+                .build();
+        CountedService proxy = wrapWithAspect(new CountedService());
+
+        proxy.lazyMonoWithSuccess().block();
+        proxy.lazyMonoWithSuccess().block();
+        proxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").tag("call", "1").counter().count()).isEqualTo(1);
+        assertThat(registry.get("lazyMonoWithSuccess")
+                .tag("call", CardinalityLimiter.OVERFLOW_TAG_VALUE)
+                .tag("result", "success")
+                .counter().count()).isEqualTo(2);
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME)
+                .tag("name", "lazyMonoWithSuccess")
+                .counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void parallelFluxIsCountedAcrossRails() {
+        countedServiceProxy.parallelFlux().sequential().blockLast();
+
+        Counter counter = registry.get("parallelFlux")
+                .tag("method", "parallelFlux")
+                .tag("result", "success")
+                .tag("exception", "none")
+                .counter();
+        assertThat(counter.count()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelFluxErrorIsCountedOnce() {
+        assertThatThrownBy(() -> countedServiceProxy.parallelFluxWithException().sequential().blockLast())
+                .isInstanceOf(RuntimeException.class);
+
+        Counter counter = registry.get("parallelFluxWithException")
+                .tag("result", "failure")
+                .tag("exception", "RuntimeException")
+                .counter();
+        assertThat(counter.count()).isEqualTo(1);
+    }
+
+    @Test
+    void publisherIsCountedOnSubscription() {
+        Publisher<String> publisher = countedServiceProxy.publisher();
+        assertThatNoMeterIsCreated();
+
+        Flux.from(publisher).blockLast();
+
+        assertThat(registry.get("publisher").tag("result", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void monoReturnedAsPublisherStaysMonoAndIsCounted() {
+        Publisher<String> publisher = countedServiceProxy.publisherOfMono();
+
+        assertThat(publisher).isInstanceOf(Mono.class);
+        assertThat(((Mono<String>) publisher).block()).isEqualTo("ok");
+        assertThat(registry.get("publisherOfMono").tag("result", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completableFutureIsCountedOnCompletion() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        countedServiceProxy.completableFuture(future);
+        assertThatNoMeterIsCreated();
+
+        future.complete("ok");
+        assertThat(registry.get("completableFuture").tag("result", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledCompletableFutureIsCountedAsCancellation() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        countedServiceProxy.completableFuture(future).cancel(false);
+
+        assertThat(registry.get("completableFuture").tag("result", "cancellation").counter().count())
+                .isEqualTo(1);
+    }
+
     @Test
     void classIsAnnotatedWithAspect() {
         assertThat(ReactorCountedAspect.class.getAnnotation(Aspect.class))
@@ -15,14 +15,45 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.BufferedRecorder;
+import com.rpuch.micrometer.reactor.CardinalityLimiter;
+import com.rpuch.micrometer.reactor.ContextTags;
+import com.rpuch.micrometer.reactor.MeteredMono;
+import com.rpuch.micrometer.reactor.Outlier;
+import com.rpuch.micrometer.reactor.OutlierRecorder;
+import com.rpuch.micrometer.reactor.PayloadSize;
+import com.rpuch.micrometer.reactor.ReactorMetrics;
+import com.rpuch.micrometer.reactor.Sampling;
+import com.rpuch.micrometer.reactor.ThreadType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Measurement;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.RequiredSearch;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.aspectj.lang.annotation.Aspect;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 
 /**
  * @author Roman Puchkovskiy
@@ -212,6 +243,85 @@ class ReactorTimedAspectTest {
         assertThat(timedCount).isEqualTo(1);
     }
 
+    @Test
+    void repeatedInvocationsAreRecordedToSameTimer() {
+        timedServiceProxy.lazyMonoWithSuccess().block();
+        timedServiceProxy.lazyMonoWithSuccess().block();
+        timedServiceProxy.lazyMonoWithException().onErrorResume(e -> Mono.empty()).block();
+        timedServiceProxy.lazyMonoWithException().onErrorResume(e -> Mono.empty()).block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").timers()).hasSize(1);
+        assertThat(registry.get("lazyMonoWithSuccess").timer().count()).isEqualTo(2);
+        assertThat(registry.get("lazyMonoWithException").timers()).hasSize(1);
+        assertThat(registry.get("lazyMonoWithException").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void annotationOnImplementationIsUsedWhenInterfaceMethodIsInvoked() {
+        TimedInterface proxy = wrapWithAspect(new TimedInterfaceImplementation());
+
+        proxy.timedOnImplementation().block();
+        proxy.timedOnImplementation().block();
+
+        long timedCount = registry.get("timedOnImplementation")
+                .tag("class", TimedInterface.class.getName())
+                .tag("method", "timedOnImplementation")
+                .tag("extra", "tag")
+                .timer().count();
+
+        assertThat(timedCount).isEqualTo(2);
+    }
+
+    @Test
+    void staticTagsAreEvaluatedOncePerMethod() {
+        AtomicInteger evaluations = new AtomicInteger();
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnStaticPart(staticPart -> {
+                    evaluations.incrementAndGet();
+                    return Tags.of("static", staticPart.getSignature().getName());
+                })
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().block();
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(evaluations).hasValue(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag("static", "lazyMonoWithSuccess").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void staticAndJoinPointTagsAreCombined() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("dynamic", "tag"))
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        double count = registry.get("lazyMonoWithSuccess")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "lazyMonoWithSuccess")
+                .tag("dynamic", "tag")
+                .timer().count();
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void customTagsAreEvaluatedOnEachInvocation() {
+        AtomicInteger invocationNumber = new AtomicInteger();
+        aspect = new ReactorTimedAspect(registry,
+                pjp -> Tags.of("invocation", Integer.toString(invocationNumber.incrementAndGet())));
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().block();
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").tag("invocation", "1").timer().count()).isEqualTo(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag("invocation", "2").timer().count()).isEqualTo(1);
+    }
+
     @Test
     void invocationIsNotTimedViaMonoUntilSubscription() {
         timedServiceProxy.lazyMonoWithSuccess();
@@ -223,6 +333,19 @@ class ReactorTimedAspectTest {
         assertThat(registry.getMeters()).isEmpty();
     }
 
+    private static Tags methodTags(String method) {
+        return Tags.of("class", TimedService.class.getName(), "method", method, "extra", "tag");
+    }
+
+    private static double stripedCount(RequiredSearch search) {
+        for (Measurement measurement : search.meter().measure()) {
+            if (measurement.getStatistic() == Statistic.COUNT) {
+                return measurement.getValue();
+            }
+        }
+        throw new AssertionError("No count published");
+    }
+
     @Test
     void invocationIsNotTimedViaFluxUntilSubscription() {
         timedServiceProxy.lazyFluxWithSuccess();
@@ -394,9 +517,775 @@ class ReactorTimedAspectTest {
         assertThatNoMeterIsCreated();
     }
 
+    @Test
+    void onlySampledInvocationsAreTimed() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .sampling(new AlternatingSampling(3))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        for (int i = 0; i < 4; i++) {
+            proxy.lazyMonoWithSuccess().block();
+        }
+
+        long timedCount = registry.get("lazyMonoWithSuccess")
+                .tag("exception", "none")
+                .timer().count();
+        assertThat(timedCount).isEqualTo(2);
+    }
+
+    @Test
+    void samplingAnnotationOverridesAspectSampling() {
+        Mono<String> mono = timedServiceProxy.rarelySampledMono();
+
+        assertThat(mono).isNotInstanceOf(MeteredMono.class);
+        assertThat(mono.block()).isEqualTo("ok");
+        assertThatNoMeterIsCreated();
+    }
+
+    @Test
+    void notSampledInvocationIsStillDeferredUntilSubscription() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .sampling(new AlternatingSampling(2))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService(exception, error));
+
+        Mono<String> mono = proxy.eagerMonoWithException();
+
+        assertThatThrownBy(mono::block).isEqualTo(exception);
+        assertThatNoMeterIsCreated();
+    }
+
+    @Test
+    void notSampledInvocationInvokesMethodOnEachSubscription() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .sampling(new AlternatingSampling(2))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService(exception, error));
+
+        String result = proxy.monoWithAttempts(new AtomicInteger(1)).retry(1).block();
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(registry.find("monoWithAttempts").timers()).isEmpty();
+    }
+
+    @Test
+    void invalidSamplingAnnotationFallsBackToTimingEachInvocation() {
+        String result = timedServiceProxy.invalidlySampledMono().block();
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(registry.get("invalidlySampledMono").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void longTasksAreNotSampled() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .sampling(new AlternatingSampling(2))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        proxy.lazyMonoWithSuccessLong().block();
+
+        assertThat(registry.get("lazyMonoWithSuccessLong").longTaskTimers()).hasSize(1);
+    }
+
+    @Test
+    void elementsAreMeteredWhenRequested() {
+        timedServiceProxy.fluxWithElements().blockLast();
+
+        DistributionSummary elements = registry.get("fluxWithElements.elements")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "fluxWithElements")
+                .tag("extra", "tag")
+                .summary();
+        assertThat(elements.count()).isEqualTo(1);
+        assertThat(elements.totalAmount()).isEqualTo(3);
+        assertThat(registry.get("fluxWithElements.element.gap").timer().count()).isEqualTo(2);
+        assertThat(registry.get("fluxWithElements.elements.emitted").counter().count()).isEqualTo(3);
+        assertThat(registry.get("fluxWithElements").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void elementsAreNotMeteredByDefault() {
+        timedServiceProxy.lazyFluxWithSuccess().blockLast();
+
+        assertThat(registry.find("lazyFluxWithSuccess.elements").summary()).isNull();
+    }
+
+    @Test
+    void gapsOneInBelowOneMetersAllGaps() {
+        assertThat(timedServiceProxy.fluxWithElementsAndNoGaps().collectList().block())
+                .containsExactly("a", "b", "c");
+
+        assertThat(registry.get("fluxWithElementsAndNoGaps.element.gap").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void fluxIsReturnedAsIsWhenElementMetersCannotBeRegistered() {
+        registry.counter("fluxWithElements.elements", methodTags("fluxWithElements"));
+
+        assertThat(timedServiceProxy.fluxWithElements().collectList().block()).containsExactly("a", "b", "c");
+
+        assertThat(registry.get("fluxWithElements").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void timeToFirstElementIsRecordedForMonoWhenRequested() {
+        timedServiceProxy.monoWithTimeToFirstElement().block();
+
+        long timedCount = registry.get("monoWithTimeToFirstElement.first.element")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "monoWithTimeToFirstElement")
+                .tag("extra", "tag")
+                .timer().count();
+        assertThat(timedCount).isEqualTo(1);
+        assertThat(registry.get("monoWithTimeToFirstElement").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void timeToFirstElementIsRecordedForFluxWhenRequested() {
+        timedServiceProxy.fluxWithTimeToFirstElement().blockLast();
+
+        long timedCount = registry.get("fluxWithTimeToFirstElement.first.element")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "fluxWithTimeToFirstElement")
+                .tag("extra", "tag")
+                .timer().count();
+        assertThat(timedCount).isEqualTo(1);
+    }
+
+    @Test
+    void timeToFirstElementIsNotRecordedUntilSubscription() {
+        timedServiceProxy.fluxWithTimeToFirstElement();
+
+        assertThatNoMeterIsCreated();
+    }
+
+    @Test
+    void demandIsMeteredWhenRequested() {
+        timedServiceProxy.fluxWithDemand().limitRate(2).blockLast();
+
+        double requested = registry.get("fluxWithDemand.requested")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "fluxWithDemand")
+                .tag("extra", "tag")
+                .counter().count();
+        assertThat(requested).isGreaterThanOrEqualTo(3);
+        assertThat(registry.get("fluxWithDemand.requests.unbounded").counter().count()).isZero();
+        assertThat(registry.get("fluxWithDemand.demand.outstanding").gauge().value()).isZero();
+    }
+
+    @Test
+    void demandMetersAreSharedBetweenInvocationsWithSameCustomTags() {
+        aspect = new ReactorTimedAspect(registry, pjp -> Tags.of("custom", "tag"));
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        proxy.fluxWithDemand().blockLast();
+        proxy.fluxWithDemand().blockLast();
+
+        assertThat(registry.get("fluxWithDemand.requests.unbounded").counter().count()).isEqualTo(2);
+        assertThat(registry.get("fluxWithDemand.demand.outstanding").gauges()).hasSize(1);
+    }
+
+    @Test
+    void activeSubscriptionsAreTrackedWhenRequested() {
+        Disposable first = timedServiceProxy.monoWithActiveSubscriptions().subscribe();
+        Disposable second = timedServiceProxy.monoWithActiveSubscriptions().subscribe();
+
+        double active = registry.get("monoWithActiveSubscriptions.active")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "monoWithActiveSubscriptions")
+                .tag("extra", "tag")
+                .gauge().value();
+        assertThat(active).isEqualTo(2);
+
+        first.dispose();
+        second.dispose();
+        assertThat(registry.get("monoWithActiveSubscriptions.active").gauge().value()).isZero();
+        assertThat(registry.get("monoWithActiveSubscriptions").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void timersAreUpdatedThroughBufferedRecorder() {
+        try (BufferedRecorder recorder = BufferedRecorder.builder(registry).drainInterval(Duration.ofHours(1)).build()) {
+            aspect = ReactorTimedAspect.builder(registry)
+                    .bufferedRecorder(recorder)
+                    .build();
+            TimedService proxy = wrapWithAspect(new TimedService());
+
+            proxy.lazyMonoWithSuccess().block();
+            Timer timer = registry.get("lazyMonoWithSuccess").tag("exception", "none").timer();
+            assertThat(timer.count()).isZero();
+
+            recorder.flush();
+            assertThat(timer.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void stripedTimerIsUsedWhenRequested() {
+        timedServiceProxy.stripedMono().block();
+        timedServiceProxy.stripedMono().block();
+
+        double timedCount = stripedCount(registry.get("stripedMono")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "stripedMono")
+                .tag("extra", "tag")
+                .tag("exception", "none"));
+        assertThat(timedCount).isEqualTo(2);
+    }
+
+    @Test
+    void stripedTimerIsTaggedWithException() {
+        assertThatThrownBy(() -> timedServiceProxy.stripedMonoWithException().block())
+                .isEqualTo(exception);
+
+        double timedCount = stripedCount(registry.get("stripedMonoWithException")
+                .tag("exception", "RuntimeException"));
+        assertThat(timedCount).isEqualTo(1);
+    }
+
+    @Test
+    void stripedTimerIgnoresHistogram() {
+        String result = timedServiceProxy.stripedMonoWithHistogram().block();
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(stripedCount(registry.get("stripedMonoWithHistogram"))).isEqualTo(1);
+    }
+
+    @Test
+    void stripedTimerIsRecordedSynchronouslyEvenWithBufferedRecorder() {
+        try (BufferedRecorder recorder = BufferedRecorder.builder(registry).drainInterval(Duration.ofHours(1)).build()) {
+            aspect = ReactorTimedAspect.builder(registry)
+                    .bufferedRecorder(recorder)
+                    .build();
+            TimedService proxy = wrapWithAspect(new TimedService());
+
+            proxy.stripedMono().block();
+
+            assertThat(stripedCount(registry.get("stripedMono"))).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void stripedTimerIsSharedBetweenInvocationsWithSameCustomTags() {
+        aspect = new ReactorTimedAspect(registry, pjp -> Tags.of("custom", "tag"));
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        proxy.stripedMono().block();
+        proxy.stripedMono().block();
+
+        assertThat(stripedCount(registry.get("stripedMono").tag("custom", "tag"))).isEqualTo(2);
+    }
+
+    @Test
+    void timersAreTaggedWithContextValues() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnContext(ContextTags.of("tenant"))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        proxy.lazyMonoWithSuccess().contextWrite(Context.of("tenant", "a")).block();
+        proxy.lazyMonoWithSuccess().contextWrite(Context.of("tenant", "a")).block();
+        proxy.lazyFluxWithSuccess().contextWrite(Context.of("tenant", "b")).blockLast();
+        proxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").tag("tenant", "a").timer().count()).isEqualTo(2);
+        assertThat(registry.get("lazyFluxWithSuccess").tag("tenant", "b").timer().count()).isEqualTo(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag("tenant", ContextTags.MISSING_VALUE).timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void stripedTimersAreTaggedWithContextValues() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnContext(ContextTags.of("tenant"))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        proxy.stripedMono().contextWrite(Context.of("tenant", "a")).block();
+        proxy.stripedMono().contextWrite(Context.of("tenant", "b")).block();
+
+        assertThat(stripedCount(registry.get("stripedMono").tag("tenant", "a"))).isEqualTo(1);
+        assertThat(stripedCount(registry.get("stripedMono").tag("tenant", "b"))).isEqualTo(1);
+    }
+
+    @Test
+    void timerTagCombinationsPastTheLimitCollapseIntoOverflowTimer() {
+        AtomicInteger calls = new AtomicInteger();
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("call", String.valueOf(calls.incrementAndGet())))
+                .cardinalityLimiter(CardinalityLimiter.create(registry, 2))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        for (int i = 0; i < 4; i++) {
+            proxy.lazyMonoWithSuccess().block();
+        }
+
+        assertThat(registry.find("lazyMonoWithSuccess").timers()).hasSize(3);
+        assertThat(registry.get("lazyMonoWithSuccess")
+                .tag("call", CardinalityLimiter.OVERFLOW_TAG_VALUE)
+                .tag("exception", CardinalityLimiter.OVERFLOW_TAG_VALUE)
+                .tag("method", "lazyMonoWithSuccess")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME)
+                .tag("name", "lazyMonoWithSuccess")
+                .counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedlyRejectedTagCombinationIsCountedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("call", String.valueOf(calls.incrementAndGet() % 3)))
+                .cardinalityLimiter(CardinalityLimiter.create(registry, 2))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        for (int i = 0; i < 6; i++) {
+            proxy.lazyMonoWithSuccess().block();
+        }
+
+        assertThat(registry.get(CardinalityLimiter.REJECTED_METRIC_NAME)
+                .tag("name", "lazyMonoWithSuccess")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void stripedTimerTagCombinationsPastTheLimitShareOverflowTimer() {
+        AtomicInteger calls = new AtomicInteger();
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("call", String.valueOf(calls.incrementAndGet())))
+                .cardinalityLimiter(CardinalityLimiter.create(registry, 1))
+                .build();
+        TimedService proxy = wrapWithAspect(new TimedService());
+
+        for (int i = 0; i < 3; i++) {
+            proxy.stripedMono().block();
+        }
+
+        assertThat(stripedCount(registry.get("stripedMono").tag("call", "1"))).isEqualTo(1);
+        assertThat(stripedCount(registry.get("stripedMono").tag("call", CardinalityLimiter.OVERFLOW_TAG_VALUE))).isEqualTo(2);
+    }
+
+    @Test
+    void parallelFluxIsTimedAcrossRails() {
+        timedServiceProxy.parallelFlux().runOn(Schedulers.parallel()).sequential().blockLast();
+
+        Timer timer = registry.get("parallelFlux")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "parallelFlux")
+                .tag("extra", "tag")
+                .tag("exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelFluxErrorIsTimedOnce() {
+        assertThatThrownBy(() -> timedServiceProxy.parallelFluxWithException().sequential().blockLast())
+                .isEqualTo(exception);
+
+        assertThat(registry.get("parallelFluxWithException").tag("exception", "RuntimeException").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void eagerParallelFluxExceptionIsTimedAndThrown() {
+        assertThatThrownBy(() -> timedServiceProxy.eagerParallelFluxWithException())
+                .isEqualTo(exception);
+
+        assertThat(registry.get("eagerParallelFluxWithException")
+                .tag("exception", "RuntimeException")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void railsAreMeteredWhenRequested() {
+        timedServiceProxy.parallelFluxWithRails().sequential().blockLast();
+        timedServiceProxy.parallelFluxWithRails().sequential().blockLast();
+
+        assertThat(registry.get("parallelFluxWithRails.rail.elements")
+                .tag("method", "parallelFluxWithRails")
+                .tag("rail", "0")
+                .counter().count()).isEqualTo(10);
+        assertThat(registry.get("parallelFluxWithRails.rail.duration").tag("rail", "1").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.find("parallelFlux.rail.elements").counters()).isEmpty();
+    }
+
+    @Test
+    void parallelFluxIsReturnedAsIsWhenRailMetersCannotBeRegistered() {
+        registry.timer("parallelFluxWithRails.rail.elements",
+                methodTags("parallelFluxWithRails").and("rail", "0"));
+
+        assertThat(timedServiceProxy.parallelFluxWithRails().sequential().collectList().block()).hasSize(10);
+
+        assertThat(registry.find("parallelFluxWithRails.rail.duration").timers()).isEmpty();
+    }
+
+    @Test
+    void publisherIsTimedOnSubscription() {
+        Publisher<String> publisher = timedServiceProxy.publisher();
+        assertThatNoMeterIsCreated();
+
+        assertThat(Flux.from(publisher).collectList().block()).containsExactly("a", "b");
+
+        Timer timer = registry.get("publisher")
+                .tag("method", "publisher")
+                .tag("exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void monoReturnedAsPublisherStaysMonoAndIsTimed() {
+        Publisher<String> publisher = timedServiceProxy.publisherOfMono();
+
+        assertThat(publisher).isInstanceOf(Mono.class);
+        assertThat(((Mono<String>) publisher).block()).isEqualTo("ok");
+        assertThat(registry.get("publisherOfMono").tag("exception", "none").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void exceptionThrownByPublisherMethodIsSignalledOnSubscription() {
+        Publisher<String> publisher = timedServiceProxy.publisherWithException();
+
+        assertThatThrownBy(() -> Flux.from(publisher).blockLast()).isEqualTo(exception);
+        assertThat(registry.get("publisherWithException").tag("exception", "RuntimeException").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void completionStageIsTimedUntilCompletion() {
+        CompletionStage<String> stage = timedServiceProxy.completionStage();
+
+        assertThat(stage.toCompletableFuture().join()).isEqualTo("ok");
+        Timer timer = registry.get("completionStage")
+                .tag("method", "completionStage")
+                .tag("exception", "none")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCompletionStageIsTimedWithException() {
+        CompletableFuture<String> future = timedServiceProxy.completableFutureWithException();
+
+        assertThat(future).isCompletedExceptionally();
+        assertThat(registry.get("completableFutureWithException")
+                .tag("exception", "RuntimeException")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void exceptionThrownInsteadOfCompletionStageIsTimedAndThrown() {
+        assertThatThrownBy(() -> timedServiceProxy.eagerCompletionStageWithException())
+                .isEqualTo(exception);
+
+        assertThat(registry.get("eagerCompletionStageWithException")
+                .tag("exception", "RuntimeException")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completionStageIsTimedWithLongTaskTimerUntilCompletion() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        timedServiceProxy.longCompletionStage(future);
+
+        LongTaskTimer timer = registry.get("longCompletionStage").longTaskTimer();
+        assertThat(timer.activeTasks()).isEqualTo(1);
+
+        future.complete("ok");
+        assertThat(timer.activeTasks()).isZero();
+    }
+
+    @Test
+    void payloadIsMeteredWhenRequested() {
+        timedServiceProxy.fluxWithPayload().blockLast();
+
+        DistributionSummary payload = registry.get("fluxWithPayload.payload")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "fluxWithPayload")
+                .tag("extra", "tag")
+                .summary();
+        assertThat(payload.count()).isEqualTo(1);
+        assertThat(payload.totalAmount()).isEqualTo(30);
+        assertThat(registry.get("fluxWithPayload.payload.bytes").counter().count()).isEqualTo(30);
+    }
+
+    @Test
+    void payloadIsSizedWithConfiguredPayloadSize() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .payloadSize(PayloadSize.defaults().with(byte[].class, bytes -> 1))
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.fluxWithPayload().blockLast();
+
+        assertThat(registry.get("fluxWithPayload.payload").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void payloadMetersAreNotCreatedBeforeSubscription() {
+        timedServiceProxy.fluxWithPayload();
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    void activeLongTasksShareTheLongTaskTimerOfTheMethod() {
+        Disposable first = timedServiceProxy.neverLong().subscribe();
+        Disposable second = timedServiceProxy.neverLong().subscribe();
+
+        LongTaskTimer longTaskTimer = registry.get("neverLong")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "neverLong")
+                .tag("extra", "tag")
+                .longTaskTimer();
+        assertThat(longTaskTimer.activeTasks()).isEqualTo(2);
+
+        first.dispose();
+        second.dispose();
+        assertThat(longTaskTimer.activeTasks()).isZero();
+    }
+
+    @Test
+    void stripedLongTasksAreTrackedWithoutLongTaskTimer() {
+        Disposable first = timedServiceProxy.stripedNeverLong().subscribe();
+        Disposable second = timedServiceProxy.stripedNeverLong().subscribe();
+
+        double active = registry.get("stripedNeverLong.active.tasks")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "stripedNeverLong")
+                .tag("extra", "tag")
+                .gauge().value();
+        assertThat(active).isEqualTo(2);
+        assertThat(registry.find("stripedNeverLong").longTaskTimers()).isEmpty();
+
+        first.dispose();
+        second.dispose();
+        assertThat(registry.get("stripedNeverLong.active.tasks").gauge().value()).isZero();
+    }
+
+    @Test
+    void stripedLongTaskMetersAreNotCreatedBeforeSubscription() {
+        timedServiceProxy.stripedNeverLong();
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    void attemptsOfLogicalCallsAreMeteredWhenRequested() {
+        timedServiceProxy.monoWithAttempts(new AtomicInteger(2))
+                .retry(5)
+                .transform(ReactorMetrics.logicalCall())
+                .block();
+
+        assertThat(registry.get("monoWithAttempts").tag("exception", "IllegalStateException").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.get("monoWithAttempts").tag("exception", "none").timer().count()).isEqualTo(1);
+        DistributionSummary attempts = registry.get("monoWithAttempts.attempts")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "monoWithAttempts")
+                .tag("extra", "tag")
+                .summary();
+        assertThat(attempts.count()).isEqualTo(1);
+        assertThat(attempts.totalAmount()).isEqualTo(3);
+        assertThat(registry.get("monoWithAttempts.logical").tag("exception", "none").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void attemptMetersAreNotCreatedBeforeSubscription() {
+        timedServiceProxy.monoWithAttempts(new AtomicInteger());
+
+        assertThat(registry.find("monoWithAttempts.attempts").summaries()).isEmpty();
+    }
+
     @Test
     void classIsAnnotatedWithAspect() {
         assertThat(ReactorTimedAspect.class.getAnnotation(Aspect.class))
                 .isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void slowSubscriptionsAreCapturedAsOutliers() {
+        OutlierRecorder outlierRecorder = OutlierRecorder.builder()
+                .threshold(Duration.ZERO)
+                .contextKeys("tenant")
+                .build();
+        aspect = ReactorTimedAspect.builder(registry).outlierRecorder(outlierRecorder).build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess()
+                .delayElement(Duration.ofMillis(1))
+                .contextWrite(Context.of("tenant", "acme"))
+                .block();
+
+        assertThat(outlierRecorder.outliers()).hasSize(1);
+        Outlier outlier = outlierRecorder.outliers().get(0);
+        assertThat(outlier.method()).isEqualTo(TimedService.class.getName() + ".lazyMonoWithSuccess");
+        assertThat(outlier.signal()).isEqualTo(SignalType.ON_COMPLETE);
+        assertThat(outlier.error()).isNull();
+        assertThat(outlier.context()).containsOnly(entry("tenant", "acme"));
+        assertThat(registry.get("lazyMonoWithSuccess").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedSubscriptionsAreCapturedWithTheirError() {
+        OutlierRecorder outlierRecorder = OutlierRecorder.builder().threshold(Duration.ZERO).build();
+        aspect = ReactorTimedAspect.builder(registry).outlierRecorder(outlierRecorder).build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        assertThatThrownBy(() -> timedServiceProxy.lazyFluxWithException().blockLast());
+
+        assertThat(outlierRecorder.outliers()).hasSize(1);
+        Outlier outlier = outlierRecorder.outliers().get(0);
+        assertThat(outlier.signal()).isEqualTo(SignalType.ON_ERROR);
+        assertThat(outlier.error()).isEqualTo(RuntimeException.class.getName());
+    }
+
+    @Test
+    void subscriptionsFasterThanThresholdAreNotCaptured() {
+        OutlierRecorder outlierRecorder = OutlierRecorder.builder().threshold(Duration.ofMinutes(1)).build();
+        aspect = ReactorTimedAspect.builder(registry).outlierRecorder(outlierRecorder).build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(outlierRecorder.outliers()).isEmpty();
+        assertThat(registry.get("lazyMonoWithSuccess").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void outliersOfThreadTypeTaggedTimersAreCaptured() {
+        OutlierRecorder outlierRecorder = OutlierRecorder.builder().threshold(Duration.ZERO).build();
+        aspect = ReactorTimedAspect.builder(registry)
+                .threadTypeTag(true)
+                .outlierRecorder(outlierRecorder)
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().subscribeOn(Schedulers.parallel()).block();
+
+        assertThat(outlierRecorder.outliers()).hasSize(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag(ThreadType.TAG, "non-blocking").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void assemblyTraceIsCapturedWhenRequested() {
+        OutlierRecorder outlierRecorder = OutlierRecorder.builder()
+                .threshold(Duration.ZERO)
+                .captureAssemblyTrace(true)
+                .build();
+        aspect = ReactorTimedAspect.builder(registry).outlierRecorder(outlierRecorder).build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().delayElement(Duration.ofMillis(1)).block();
+
+        assertThat(outlierRecorder.outliers().get(0).assemblyTrace())
+                .anyMatch(element -> element.getMethodName().equals("assemblyTraceIsCapturedWhenRequested"));
+    }
+
+    @Test
+    void assemblyIsTimedSeparatelyWhenRequested() throws Exception {
+        timedServiceProxy.monoWithSlowAssembly().block();
+
+        Timer assembly = registry.get("monoWithSlowAssembly.assembly")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "monoWithSlowAssembly")
+                .tag("extra", "tag")
+                .timer();
+        assertThat(assembly.count()).isEqualTo(1);
+        assertThat(assembly.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        assertThat(registry.get("monoWithSlowAssembly").tag("exception", "none").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void assemblyIsTimedOnEachSubscription() {
+        Flux<String> flux = timedServiceProxy.fluxWithAssembly();
+
+        flux.blockLast();
+        flux.blockLast();
+
+        assertThat(registry.get("fluxWithAssembly.assembly").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void assemblyIsNotTimedBeforeSubscription() throws Exception {
+        timedServiceProxy.monoWithSlowAssembly();
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    void assemblyIsNotTimedWithoutAnnotation() {
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.find("lazyMonoWithSuccess.assembly").timer()).isNull();
+    }
+
+    @Test
+    void timersAreTaggedWithThreadTypeWhenRequested() {
+        aspect = ReactorTimedAspect.builder(registry).threadTypeTag(true).build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess().subscribeOn(Schedulers.parallel()).block();
+        timedServiceProxy.lazyMonoWithSuccess().subscribeOn(Schedulers.boundedElastic()).block();
+
+        assertThat(registry.get("lazyMonoWithSuccess")
+                .tag("class", TimedService.class.getName())
+                .tag("method", "lazyMonoWithSuccess")
+                .tag("extra", "tag")
+                .tag("exception", "none")
+                .tag(ThreadType.TAG, "non-blocking")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("lazyMonoWithSuccess").tag(ThreadType.TAG, "elastic").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void threadTypeTagIsCombinedWithContextTags() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .threadTypeTag(true)
+                .tagsBasedOnContext(ContextTags.of("tenant"))
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyMonoWithSuccess()
+                .subscribeOn(Schedulers.parallel())
+                .contextWrite(Context.of("tenant", "acme"))
+                .block();
+
+        assertThat(registry.get("lazyMonoWithSuccess")
+                .tag("tenant", "acme")
+                .tag(ThreadType.TAG, "non-blocking")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void threadTypeTagIsAddedToJoinPointBasedTimers() {
+        aspect = ReactorTimedAspect.builder(registry)
+                .tagsBasedOnJoinPoint(pjp -> Tags.of("custom", "value"))
+                .threadTypeTag(true)
+                .build();
+        timedServiceProxy = wrapWithAspect(new TimedService(exception, error));
+
+        timedServiceProxy.lazyFluxWithSuccess().subscribeOn(Schedulers.boundedElastic()).blockLast();
+
+        assertThat(registry.get("lazyFluxWithSuccess")
+                .tag("custom", "value")
+                .tag(ThreadType.TAG, "elastic")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void timersAreNotTaggedWithThreadTypeByDefault() {
+        timedServiceProxy.lazyMonoWithSuccess().block();
+
+        assertThat(registry.get("lazyMonoWithSuccess").timer().getId().getTag(ThreadType.TAG)).isNull();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+class ReturnTypesTest {
+    @Test
+    void monoFluxAndParallelFluxAreReactorTypes() {
+        assertThat(ReturnTypes.isReactorType(Mono.class)).isTrue();
+        assertThat(ReturnTypes.isReactorType(Flux.class)).isTrue();
+        assertThat(ReturnTypes.isReactorType(ParallelFlux.class)).isTrue();
+    }
+
+    @Test
+    void subclassesOfMonoAndFluxAreReactorTypes() {
+        assertThat(ReturnTypes.isReactorType(CustomMono.class)).isTrue();
+    }
+
+    @Test
+    void publisherAndCompletionStagesAreReactorTypes() {
+        assertThat(ReturnTypes.isReactorType(Publisher.class)).isTrue();
+        assertThat(ReturnTypes.isReactorType(CompletionStage.class)).isTrue();
+        assertThat(ReturnTypes.isReactorType(CompletableFuture.class)).isTrue();
+    }
+
+    @Test
+    void publishersAreClassifiedByInstanceOnlyIfFluxMayBeReturnedForThem() {
+        assertThat(ReturnTypes.kind(Publisher.class)).isEqualTo(ReturnTypes.Kind.PUBLISHER);
+        assertThat(ReturnTypes.kind(CustomPublisher.class)).isEqualTo(ReturnTypes.Kind.OTHER);
+    }
+
+    @Test
+    void otherTypesAreNotReactorTypes() {
+        assertThat(ReturnTypes.isReactorType(String.class)).isFalse();
+        assertThat(ReturnTypes.isReactorType(void.class)).isFalse();
+    }
+
+    private static class CustomMono extends Mono<String> {
+        @Override
+        public void subscribe(CoreSubscriber<? super String> actual) {
+        }
+    }
+
+    private static class CustomPublisher implements Publisher<String> {
+        @Override
+        public void subscribe(Subscriber<? super String> subscriber) {
+        }
+    }
+}
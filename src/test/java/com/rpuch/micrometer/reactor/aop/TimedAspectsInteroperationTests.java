@@ -64,4 +64,14 @@ class TimedAspectsInteroperationTests {
         long invocationCount = registry.get("lazyFluxWithSuccess").timer().count();
         assertThat(invocationCount).isEqualTo(1);
     }
+
+    @Test
+    void timedCompletionStageMethodIsTimedOnce_whenBothReactiveAndNonReactorAspectsAreInContext() {
+        TimedService timedServiceProxy = wrapInAspects(timedService, nonReactorTimedAspect, reactorTimedAspect);
+
+        timedServiceProxy.completionStage().toCompletableFuture().join();
+
+        long invocationCount = registry.get("completionStage").timer().count();
+        assertThat(invocationCount).isEqualTo(1);
+    }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2021 micrometer-reactor contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rpuch.micrometer.reactor.aop;
+
+import io.micrometer.core.annotation.Timed;
+import reactor.core.publisher.Mono;
+
+/**
+ * @author Roman Puchkovskiy
+ */
+public class TimedInterfaceImplementation implements TimedInterface {
+    @Override
+    @Timed(value = "timedOnImplementation", extraTags = {"extra", "tag"})
+    public Mono<String> timedOnImplementation() {
+        return Mono.just("ok");
+    }
+}
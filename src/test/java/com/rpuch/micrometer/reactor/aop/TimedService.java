@@ -15,9 +15,25 @@
  */
 package com.rpuch.micrometer.reactor.aop;
 
+import com.rpuch.micrometer.reactor.annotation.MeterActiveSubscriptions;
+import com.rpuch.micrometer.reactor.annotation.MeterAttempts;
+import com.rpuch.micrometer.reactor.annotation.MeterDemand;
+import com.rpuch.micrometer.reactor.annotation.MeterElements;
+import com.rpuch.micrometer.reactor.annotation.MeterPayload;
+import com.rpuch.micrometer.reactor.annotation.MeterRails;
+import com.rpuch.micrometer.reactor.annotation.Sampled;
+import com.rpuch.micrometer.reactor.annotation.Striped;
+import com.rpuch.micrometer.reactor.annotation.TimeAssembly;
+import com.rpuch.micrometer.reactor.annotation.TimeToFirstElement;
 import io.micrometer.core.annotation.Timed;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Roman Puchkovskiy
@@ -114,4 +130,169 @@ public class TimedService {
     public Flux<String> eagerFluxWithErrorLong() {
         throw error;
     }
+
+    @Timed(value = "rarelySampledMono", extraTags = {"extra", "tag"})
+    @Sampled(oneIn = Integer.MAX_VALUE)
+    public Mono<String> rarelySampledMono() {
+        return Mono.fromCallable(() -> "ok");
+    }
+
+    @Timed(value = "stripedMonoWithHistogram", histogram = true)
+    @Striped
+    public Mono<String> stripedMonoWithHistogram() {
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "invalidlySampledMono", extraTags = {"extra", "tag"})
+    @Sampled(oneIn = 0)
+    public Mono<String> invalidlySampledMono() {
+        return Mono.fromCallable(() -> "ok");
+    }
+
+    @Timed(value = "fluxWithElements", extraTags = {"extra", "tag"})
+    @MeterElements
+    public Flux<String> fluxWithElements() {
+        return Flux.just("a", "b", "c");
+    }
+
+    @Timed(value = "fluxWithElementsAndNoGaps", extraTags = {"extra", "tag"})
+    @MeterElements(gapsOneIn = 0)
+    public Flux<String> fluxWithElementsAndNoGaps() {
+        return Flux.just("a", "b", "c");
+    }
+
+    @Timed(value = "monoWithTimeToFirstElement", extraTags = {"extra", "tag"})
+    @TimeToFirstElement
+    public Mono<String> monoWithTimeToFirstElement() {
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "fluxWithTimeToFirstElement", extraTags = {"extra", "tag"})
+    @TimeToFirstElement
+    public Flux<String> fluxWithTimeToFirstElement() {
+        return Flux.just("a", "b", "c");
+    }
+
+    @Timed(value = "fluxWithDemand", extraTags = {"extra", "tag"})
+    @MeterDemand
+    public Flux<String> fluxWithDemand() {
+        return Flux.just("a", "b", "c");
+    }
+
+    @Timed(value = "monoWithActiveSubscriptions", extraTags = {"extra", "tag"})
+    @MeterActiveSubscriptions
+    public Mono<String> monoWithActiveSubscriptions() {
+        return Mono.never();
+    }
+
+    @Timed(value = "fluxWithPayload", extraTags = {"extra", "tag"})
+    @MeterPayload
+    public Flux<byte[]> fluxWithPayload() {
+        return Flux.just(new byte[10], new byte[20]);
+    }
+
+    @Timed(value = "monoWithSlowAssembly", extraTags = {"extra", "tag"})
+    @TimeAssembly
+    public Mono<String> monoWithSlowAssembly() throws InterruptedException {
+        Thread.sleep(20);
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "fluxWithAssembly", extraTags = {"extra", "tag"})
+    @TimeAssembly
+    public Flux<String> fluxWithAssembly() {
+        return Flux.just("a", "b");
+    }
+
+    @Timed(value = "neverLong", extraTags = {"extra", "tag"}, longTask = true)
+    public Mono<String> neverLong() {
+        return Mono.never();
+    }
+
+    @Timed(value = "stripedNeverLong", extraTags = {"extra", "tag"}, longTask = true)
+    @Striped
+    public Flux<String> stripedNeverLong() {
+        return Flux.never();
+    }
+
+    @Timed(value = "monoWithAttempts", extraTags = {"extra", "tag"})
+    @MeterAttempts
+    public Mono<String> monoWithAttempts(AtomicInteger remainingFailures) {
+        if (remainingFailures.getAndDecrement() > 0) {
+            return Mono.error(new IllegalStateException("Oops"));
+        }
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "stripedMono", extraTags = {"extra", "tag"})
+    @Striped
+    public Mono<String> stripedMono() {
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "stripedMonoWithException", extraTags = {"extra", "tag"})
+    @Striped
+    public Mono<String> stripedMonoWithException() {
+        return Mono.error(exception);
+    }
+
+    @Timed(value = "parallelFlux", extraTags = {"extra", "tag"})
+    public ParallelFlux<Integer> parallelFlux() {
+        return Flux.range(0, 10).parallel(2);
+    }
+
+    @Timed(value = "parallelFluxWithException", extraTags = {"extra", "tag"})
+    public ParallelFlux<Integer> parallelFluxWithException() {
+        return Flux.range(0, 10).parallel(2).map(i -> {
+            throw exception;
+        });
+    }
+
+    @Timed(value = "eagerParallelFluxWithException", extraTags = {"extra", "tag"})
+    public ParallelFlux<Integer> eagerParallelFluxWithException() {
+        throw exception;
+    }
+
+    @Timed(value = "parallelFluxWithRails", extraTags = {"extra", "tag"})
+    @MeterRails
+    public ParallelFlux<Integer> parallelFluxWithRails() {
+        return Flux.range(0, 10).parallel(2);
+    }
+
+    @Timed(value = "publisher", extraTags = {"extra", "tag"})
+    public Publisher<String> publisher() {
+        return Flux.just("a", "b");
+    }
+
+    @Timed(value = "publisherOfMono", extraTags = {"extra", "tag"})
+    public Publisher<String> publisherOfMono() {
+        return Mono.just("ok");
+    }
+
+    @Timed(value = "publisherWithException", extraTags = {"extra", "tag"})
+    public Publisher<String> publisherWithException() {
+        throw exception;
+    }
+
+    @Timed(value = "completionStage", extraTags = {"extra", "tag"})
+    public CompletionStage<String> completionStage() {
+        return CompletableFuture.completedFuture("ok");
+    }
+
+    @Timed(value = "completableFutureWithException", extraTags = {"extra", "tag"})
+    public CompletableFuture<String> completableFutureWithException() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    @Timed(value = "eagerCompletionStageWithException", extraTags = {"extra", "tag"})
+    public CompletionStage<String> eagerCompletionStageWithException() {
+        throw exception;
+    }
+
+    @Timed(value = "longCompletionStage", extraTags = {"extra", "tag"}, longTask = true)
+    public CompletableFuture<String> longCompletionStage(CompletableFuture<String> future) {
+        return future;
+    }
 }